@@ -1,8 +1,20 @@
 package cn.icexmoon.activitiutil;
 
+import cn.icexmoon.activitiutil.archive.ArchiveReader;
+import cn.icexmoon.activitiutil.archive.ArchivedProcessInstance;
+import cn.icexmoon.activitiutil.dto.ProcessInstanceTasks;
+import cn.icexmoon.activitiutil.identity.GroupMembershipIndex;
+import cn.icexmoon.activitiutil.index.OpenTaskIndex;
+import cn.icexmoon.activitiutil.index.OpenTaskRef;
+import cn.icexmoon.activitiutil.reassign.BulkReassigner;
+import cn.icexmoon.activitiutil.reassign.ReassignCriteria;
+import cn.icexmoon.activitiutil.reassign.ReassignReport;
+import cn.icexmoon.activitiutil.routing.ReadReplicaRouter;
+import cn.icexmoon.activitiutil.variable.VariableDirtyChecker;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.activiti.engine.HistoryService;
+import org.activiti.engine.ManagementService;
 import org.activiti.engine.ProcessEngine;
 import org.activiti.engine.RuntimeService;
 import org.activiti.engine.TaskService;
@@ -10,12 +22,19 @@ import org.activiti.engine.history.HistoricProcessInstance;
 import org.activiti.engine.history.HistoricTaskInstance;
 import org.activiti.engine.history.HistoricTaskInstanceQuery;
 import org.activiti.engine.history.HistoricVariableInstance;
+import org.activiti.engine.impl.interceptor.Command;
+import org.activiti.engine.query.NativeQuery;
+import org.activiti.engine.repository.ProcessDefinition;
 import org.activiti.engine.runtime.ProcessInstance;
 import org.activiti.engine.task.IdentityLink;
+import org.activiti.engine.task.NativeTaskQuery;
 import org.activiti.engine.task.Task;
 import org.activiti.engine.task.TaskInfo;
+import org.activiti.engine.task.TaskQuery;
 
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -27,12 +46,85 @@ import java.util.stream.Collectors;
  */
 @Slf4j
 public class ActivitiUtils {
+    /**
+     * 批量查询时 IN 列表的最大长度（Oracle 限制为 1000）
+     */
+    private static final int IN_CHUNK_SIZE = 500;
     private final ProcessEngine processEngine;
+    /**
+     * 历史归档读取器，设置后历史查询会合并已归档的数据
+     */
+    private ArchiveReader archiveReader;
+    /**
+     * 用户所属组的索引，设置后权限检查和待办查询会考虑候选组
+     */
+    private GroupMembershipIndex groupMembershipIndex;
+    /**
+     * 开放任务的内存索引，设置后 listCompletableTaskRefs 不再访问数据库
+     */
+    private OpenTaskIndex openTaskIndex;
+    /**
+     * 读写分离路由，设置后历史查询读只读副本
+     */
+    private ReadReplicaRouter readReplicaRouter;
+    /**
+     * 变量脏检查，设置后审批和拒绝任务时只写入有变化的变量
+     */
+    private VariableDirtyChecker variableDirtyChecker;
 
     public ActivitiUtils(ProcessEngine processEngine) {
         this.processEngine = processEngine;
     }
 
+    /**
+     * 设置历史归档读取器，之后 listHistoricProcessInstances、listHistoryTasks、getTaskVariables
+     * 会透明地合并已归档（已从 ACT_HI_* 表中删除）的数据
+     *
+     * @param archiveReader 归档读取器，为 null 时只查询历史表
+     */
+    public void setArchiveReader(ArchiveReader archiveReader) {
+        this.archiveReader = archiveReader;
+    }
+
+    /**
+     * 设置用户所属组的索引，之后 canApprovalTask、completeTaskWithCheck、rejectTask 和 listCompletableTask
+     * 会把用户所属组作为候选组的任务也视为该用户可以审批的任务
+     *
+     * @param groupMembershipIndex 用户所属组的索引，为 null 时只考虑候选人
+     */
+    public void setGroupMembershipIndex(GroupMembershipIndex groupMembershipIndex) {
+        this.groupMembershipIndex = groupMembershipIndex;
+    }
+
+    /**
+     * 设置开放任务的内存索引（需要先调用 OpenTaskIndex.register），之后 listCompletableTaskRefs 直接在内存中查询
+     *
+     * @param openTaskIndex 开放任务索引，为 null 时查询数据库
+     */
+    public void setOpenTaskIndex(OpenTaskIndex openTaskIndex) {
+        this.openTaskIndex = openTaskIndex;
+    }
+
+    /**
+     * 设置读写分离路由，之后 listHistoricProcessInstances、listHistoryTasks、getTaskVariables、printProcessInstance
+     * 会读只读副本；本类的写操作会记录涉及的用户、任务和流程实例，读己之写窗口内的相关读取仍读主库
+     *
+     * @param readReplicaRouter 读写分离路由，为 null 时全部读主库
+     */
+    public void setReadReplicaRouter(ReadReplicaRouter readReplicaRouter) {
+        this.readReplicaRouter = readReplicaRouter;
+    }
+
+    /**
+     * 设置变量脏检查，之后 completeTaskWithCheck、rejectTask 会先与任务当前的局部变量比较，
+     * 只写入新增或值有变化的变量，每次调用的结果（少写的字节数、行数）通过检查器的回调和统计获取
+     *
+     * @param variableDirtyChecker 变量脏检查，为 null 时写入全部变量
+     */
+    public void setVariableDirtyChecker(VariableDirtyChecker variableDirtyChecker) {
+        this.variableDirtyChecker = variableDirtyChecker;
+    }
+
     /**
      * 获取指定进程实例的最近一条待审批任务
      *
@@ -95,7 +187,9 @@ public class ActivitiUtils {
      */
     public ProcessInstance start(final String processDefinitionKey, String businessKey, Map<String, Object> variables) {
         RuntimeService runtimeService = processEngine.getRuntimeService();
-        return runtimeService.startProcessInstanceByKey(processDefinitionKey, businessKey, variables);
+        ProcessInstance instance = runtimeService.startProcessInstanceByKey(processDefinitionKey, businessKey, variables);
+        recordWrite(instance.getId());
+        return instance;
     }
 
     public ProcessInstance start(final String processDefinitionKey, Long businessKey, Map<String, Object> variables) {
@@ -117,6 +211,7 @@ public class ActivitiUtils {
                 variables);
         Task lastTask = getLastTask(instance.getId());
         processEngine.getTaskService().complete(lastTask.getId());
+        recordWrite(instance.getId(), lastTask.getId(), lastTask.getAssignee());
         log.info("流程实例[%s]已启动".formatted(instance.getId()));
         return instance;
     }
@@ -139,6 +234,7 @@ public class ActivitiUtils {
                 variables);
         Task lastTask = getLastTask(instance.getId());
         processEngine.getTaskService().complete(lastTask.getId());
+        recordWrite(instance.getId(), lastTask.getId(), lastTask.getAssignee());
         log.info("流程实例[%s]已启动".formatted(instance.getId()));
         return instance;
     }
@@ -173,6 +269,24 @@ public class ActivitiUtils {
         return candidates;
     }
 
+    /**
+     * 返回指定任务实例的候选组列表
+     *
+     * @param taskId 任务实例id
+     * @return 候选组列表
+     */
+    public List<String> listCandidateGroups(String taskId) {
+        TaskService taskService = processEngine.getTaskService();
+        List<IdentityLink> identityLinksForTask = taskService.getIdentityLinksForTask(taskId);
+        List<String> candidateGroups = new ArrayList<>();
+        for (IdentityLink identityLink : identityLinksForTask) {
+            if ("candidate".equals(identityLink.getType()) && identityLink.getGroupId() != null) {
+                candidateGroups.add(identityLink.getGroupId());
+            }
+        }
+        return candidateGroups;
+    }
+
     /**
      * 列出指定用户可以完成的任务（包括个人任务和作为候选人的任务）
      *
@@ -183,8 +297,7 @@ public class ActivitiUtils {
     public List<Task> listCompletableTask(String userId, String processDefinitionKey) {
         // 获取个人任务
         TaskService taskService = processEngine.getTaskService();
-        return taskService.createTaskQuery()
-                .taskCandidateOrAssigned(userId)
+        return candidateOrAssignedQuery(taskService, userId)
                 .processDefinitionKey(processDefinitionKey)
                 .list();
     }
@@ -198,11 +311,51 @@ public class ActivitiUtils {
     public List<Task> listCompletableTask(String userId) {
         // 获取个人任务
         TaskService taskService = processEngine.getTaskService();
-        return taskService.createTaskQuery()
-                .taskCandidateOrAssigned(userId)
+        return candidateOrAssignedQuery(taskService, userId)
                 .list();
     }
 
+    /**
+     * 列出指定用户可以完成的任务的摘要，设置了开放任务索引时完全在内存中查询
+     *
+     * @param userId               指定用户id
+     * @param processDefinitionKey 流程定义key，为 null 时不限制
+     * @return 任务摘要列表
+     */
+    public List<OpenTaskRef> listCompletableTaskRefs(String userId, String processDefinitionKey) {
+        if (openTaskIndex != null) {
+            return openTaskIndex.listTasks(userId, processDefinitionKey);
+        }
+        List<Task> tasks = processDefinitionKey == null ? listCompletableTask(userId) : listCompletableTask(userId, processDefinitionKey);
+        return tasks.stream()
+                .map(task -> new OpenTaskRef(task.getId(), task.getName(), task.getProcessInstanceId(),
+                        ProcessDefinitionIds.toProcessDefinitionKey(task.getProcessDefinitionId()), task.getAssignee()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 把一个用户的任务批量转交给代理人（比如审批人休假时），按块执行集合式更新，见 BulkReassigner
+     *
+     * @param criteria 转交条件，dryRun 为 true 时只统计
+     * @return 转交结果
+     */
+    public ReassignReport reassignTasks(ReassignCriteria criteria) {
+        ReassignReport report = new BulkReassigner(processEngine).reassign(criteria);
+        if (!criteria.isDryRun()) {
+            recordWrite(criteria.getFromUserId(), criteria.getToUserId());
+        }
+        return report;
+    }
+
+    private TaskQuery candidateOrAssignedQuery(TaskService taskService, String userId) {
+        if (groupMembershipIndex == null) {
+            return taskService.createTaskQuery().taskCandidateOrAssigned(userId);
+        }
+        // 引擎不再维护用户与组的关系，需要显式传入用户所属的组
+        return taskService.createTaskQuery()
+                .taskCandidateOrAssigned(userId, new ArrayList<>(groupMembershipIndex.getGroups(userId)));
+    }
+
     /**
      * 列出需要指定用户审批的流程实例
      *
@@ -261,7 +414,8 @@ public class ActivitiUtils {
             taskService.claim(taskId, userId);
         }
         // 完成任务
-        taskService.complete(taskId, variables, true);
+        withChangedVariables(taskId, variables, changed -> taskService.complete(taskId, changed, true));
+        recordWrite(userId, taskId, task.getProcessInstanceId());
     }
 
     /**
@@ -280,16 +434,24 @@ public class ActivitiUtils {
         if (task == null) {
             throw new RuntimeException(String.format("任务（%s）不存在！", taskId));
         }
-        if (!userId.equals(task.getAssignee())) {
-            // 指定用户不是任务的委托人
-            // 检查指定用户是否是任务的候选人
-            List<String> candidates = listCandidates(taskId);
-            if (candidates == null || candidates.isEmpty() || !candidates.contains(userId)) {
-                // 指定用户不是任务的候选人
-                return false;
+        if (userId.equals(task.getAssignee())) {
+            return true;
+        }
+        // 指定用户不是任务的委托人
+        // 检查指定用户是否是任务的候选人，或属于任务的候选组
+        List<String> candidateGroups = new ArrayList<>();
+        for (IdentityLink identityLink : taskService.getIdentityLinksForTask(taskId)) {
+            if (!"candidate".equals(identityLink.getType())) {
+                continue;
+            }
+            if (userId.equals(identityLink.getUserId())) {
+                return true;
+            }
+            if (identityLink.getGroupId() != null) {
+                candidateGroups.add(identityLink.getGroupId());
             }
         }
-        return true;
+        return groupMembershipIndex != null && groupMembershipIndex.isMemberOfAny(userId, candidateGroups);
     }
 
     /**
@@ -300,14 +462,18 @@ public class ActivitiUtils {
      */
     public Map<String, Object> getTaskVariables(String taskId) {
         // 从历史记录中获取任务的变量
-        HistoryService historyService = processEngine.getHistoryService();
         Map<String, Object> variablesLocal = new HashMap<>();
-        List<HistoricVariableInstance> historicVariableInstances = historyService.createHistoricVariableInstanceQuery()
+        List<HistoricVariableInstance> historicVariableInstances = read(engine -> engine.getHistoryService()
+                .createHistoricVariableInstanceQuery()
                 .taskId(taskId)
-                .list();
+                .list(), taskId);
         for (HistoricVariableInstance historicVariableInstance : historicVariableInstances) {
             variablesLocal.put(historicVariableInstance.getVariableName(), historicVariableInstance.getValue());
         }
+        if (variablesLocal.isEmpty() && archiveReader != null) {
+            // 任务可能已经归档
+            return archiveReader.getTaskVariables(taskId);
+        }
         return variablesLocal;
     }
 
@@ -365,13 +531,201 @@ public class ActivitiUtils {
                 .list();
     }
 
+    /**
+     * 按业务 key 批量查询流程实例及其当前任务
+     *
+     * @param businessKeys 业务 key 集合
+     * @return 业务 key -> 流程实例及当前任务，没有匹配实例的业务 key 不在结果中
+     */
+    public Map<String, ProcessInstanceTasks> listProcessInstancesByBusinessKeys(Collection<String> businessKeys) {
+        return listProcessInstancesByBusinessKeys(businessKeys, null);
+    }
+
+    /**
+     * 按业务 key 批量查询流程实例及其当前任务，没有运行中实例的业务 key 会查询已结束的实例，IN 列表会自动分块。
+     * 每 IN_CHUNK_SIZE 个业务 key 查询 3 次（实例 id、实例、当前任务），没有运行中实例的业务 key 每块再查询 2 次
+     *
+     * @param businessKeys         业务 key 集合
+     * @param processDefinitionKey 流程定义 key，为 null 时不限制
+     * @return 业务 key -> 流程实例及当前任务，没有匹配实例的业务 key 不在结果中。
+     * 同一业务 key 有运行中的实例时取最新启动的运行中实例，否则取最新启动的已结束实例
+     */
+    public Map<String, ProcessInstanceTasks> listProcessInstancesByBusinessKeys(Collection<String> businessKeys,
+                                                                              String processDefinitionKey) {
+        if (businessKeys == null || businessKeys.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        RuntimeService runtimeService = processEngine.getRuntimeService();
+        HistoryService historyService = processEngine.getHistoryService();
+        ManagementService managementService = processEngine.getManagementService();
+        List<String> keys = new ArrayList<>(new LinkedHashSet<>(businessKeys));
+        // 原生查询的结果没有关联流程定义（流程定义 key、名称为 null），只用来确定实例 id，再按 id 查询完整的实例
+        Map<String, ProcessInstance> instances = new HashMap<>();
+        String executionTable = managementService.getTableName(ProcessInstance.class);
+        for (List<String> chunk : chunk(keys)) {
+            Set<String> ids = listIdsByBusinessKeys(runtimeService.createNativeProcessInstanceQuery(), executionTable,
+                    "RES.PARENT_ID_ IS NULL", chunk, processDefinitionKey, ProcessInstance::getId);
+            if (!ids.isEmpty()) {
+                for (ProcessInstance instance : runtimeService.createProcessInstanceQuery().processInstanceIds(ids).list()) {
+                    instances.merge(instance.getBusinessKey(), instance,
+                            (a, b) -> laterStarted(a, b, ProcessInstance::getStartTime));
+                }
+            }
+        }
+        // 没有运行中实例的业务 key，查询已结束的实例
+        Map<String, HistoricProcessInstance> endedInstances = new HashMap<>();
+        List<String> missing = keys.stream().filter(key -> !instances.containsKey(key)).collect(Collectors.toList());
+        String historicTable = managementService.getTableName(HistoricProcessInstance.class);
+        for (List<String> chunk : chunk(missing)) {
+            Set<String> ids = listIdsByBusinessKeys(historyService.createNativeHistoricProcessInstanceQuery(), historicTable,
+                    "RES.END_TIME_ IS NOT NULL", chunk, processDefinitionKey, HistoricProcessInstance::getId);
+            if (!ids.isEmpty()) {
+                for (HistoricProcessInstance instance : historyService.createHistoricProcessInstanceQuery()
+                        .processInstanceIds(ids)
+                        .list()) {
+                    endedInstances.merge(instance.getBusinessKey(), instance,
+                            (a, b) -> laterStarted(a, b, HistoricProcessInstance::getStartTime));
+                }
+            }
+        }
+        Map<String, List<Task>> tasks = listCurrentTasks(instances.values().stream()
+                .map(ProcessInstance::getId)
+                .collect(Collectors.toList()));
+        Map<String, ProcessInstanceTasks> result = new HashMap<>();
+        for (Map.Entry<String, ProcessInstance> entry : instances.entrySet()) {
+            ProcessInstance instance = entry.getValue();
+            result.put(entry.getKey(), ProcessInstanceTasks.running(instance,
+                    tasks.getOrDefault(instance.getId(), Collections.emptyList())));
+        }
+        for (Map.Entry<String, HistoricProcessInstance> entry : endedInstances.entrySet()) {
+            result.put(entry.getKey(), ProcessInstanceTasks.ended(entry.getValue()));
+        }
+        return result;
+    }
+
+    /**
+     * 按业务 key 批量查询流程实例及其当前任务
+     *
+     * @param businessKeys 业务 key 集合
+     * @return 业务 key -> 流程实例及当前任务
+     */
+    public Map<Long, ProcessInstanceTasks> listProcessInstancesByLongBusinessKeys(Collection<Long> businessKeys) {
+        return listProcessInstancesByLongBusinessKeys(businessKeys, null);
+    }
+
+    /**
+     * 按业务 key 批量查询流程实例及其当前任务
+     *
+     * @param businessKeys         业务 key 集合
+     * @param processDefinitionKey 流程定义 key，为 null 时不限制
+     * @return 业务 key -> 流程实例及当前任务
+     */
+    public Map<Long, ProcessInstanceTasks> listProcessInstancesByLongBusinessKeys(Collection<Long> businessKeys,
+                                                                                String processDefinitionKey) {
+        if (businessKeys == null || businessKeys.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, ProcessInstanceTasks> byString = listProcessInstancesByBusinessKeys(
+                businessKeys.stream().map(Object::toString).collect(Collectors.toList()),
+                processDefinitionKey);
+        Map<Long, ProcessInstanceTasks> result = new HashMap<>();
+        for (Long businessKey : businessKeys) {
+            ProcessInstanceTasks instanceTasks = byString.get(businessKey.toString());
+            if (instanceTasks != null) {
+                result.put(businessKey, instanceTasks);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 用原生查询按业务 key 查询流程实例（运行时或历史表）的 id
+     *
+     * @param condition 额外的查询条件
+     */
+    private <Q extends NativeQuery<Q, U>, U> Set<String> listIdsByBusinessKeys(Q query, String table, String condition,
+                                                                               List<String> businessKeys,
+                                                                               String processDefinitionKey,
+                                                                               Function<U, String> getId) {
+        StringBuilder sql = new StringBuilder("SELECT RES.* FROM ")
+                .append(table)
+                .append(" RES WHERE ")
+                .append(condition)
+                .append(" AND RES.BUSINESS_KEY_ IN (")
+                .append(inParameters("bk", businessKeys.size()))
+                .append(")");
+        if (processDefinitionKey != null) {
+            sql.append(" AND RES.PROC_DEF_ID_ IN (SELECT ID_ FROM ")
+                    .append(processEngine.getManagementService().getTableName(ProcessDefinition.class))
+                    .append(" WHERE KEY_ = #{processDefinitionKey})");
+            query.parameter("processDefinitionKey", processDefinitionKey);
+        }
+        query.sql(sql.toString());
+        for (int i = 0; i < businessKeys.size(); i++) {
+            query.parameter("bk" + i, businessKeys.get(i));
+        }
+        return query.list().stream().map(getId).collect(Collectors.toSet());
+    }
+
+    /**
+     * 批量返回多个进程实例的任务列表
+     *
+     * @param processInstanceIds 进程实例id集合
+     * @return 进程实例id -> 任务列表（按创建时间升序）
+     */
+    public Map<String, List<Task>> listCurrentTasks(Collection<String> processInstanceIds) {
+        if (processInstanceIds == null || processInstanceIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        TaskService taskService = processEngine.getTaskService();
+        String taskTable = processEngine.getManagementService().getTableName(Task.class);
+        Map<String, List<Task>> result = new HashMap<>();
+        for (List<String> chunk : chunk(new ArrayList<>(new LinkedHashSet<>(processInstanceIds)))) {
+            String sql = "SELECT RES.* FROM %s RES WHERE RES.PROC_INST_ID_ IN (%s) ORDER BY RES.CREATE_TIME_ ASC"
+                    .formatted(taskTable, inParameters("pi", chunk.size()));
+            NativeTaskQuery query = taskService.createNativeTaskQuery().sql(sql);
+            for (int i = 0; i < chunk.size(); i++) {
+                query.parameter("pi" + i, chunk.get(i));
+            }
+            for (Task task : query.list()) {
+                result.computeIfAbsent(task.getProcessInstanceId(), k -> new ArrayList<>()).add(task);
+            }
+        }
+        return result;
+    }
+
+    private static <T> T laterStarted(T a, T b, Function<T, Date> getStartTime) {
+        if (getStartTime.apply(a) == null || getStartTime.apply(b) == null) {
+            return a;
+        }
+        return getStartTime.apply(b).after(getStartTime.apply(a)) ? b : a;
+    }
+
+    private static List<List<String>> chunk(List<String> values) {
+        List<List<String>> chunks = new ArrayList<>();
+        for (int i = 0; i < values.size(); i += IN_CHUNK_SIZE) {
+            chunks.add(values.subList(i, Math.min(i + IN_CHUNK_SIZE, values.size())));
+        }
+        return chunks;
+    }
+
+    private static String inParameters(String prefix, int size) {
+        StringJoiner joiner = new StringJoiner(", ");
+        for (int i = 0; i < size; i++) {
+            joiner.add("#{" + prefix + i + "}");
+        }
+        return joiner.toString();
+    }
+
     /**
      * 打印进程实例的当前任务
      *
      * @param processInstanceId 进程实例id
      */
     public void printCurrentTasks(String processInstanceId) {
-        List<Task> tasks = listCurrentTasks(processInstanceId);
+        List<Task> tasks = read(engine -> engine.getTaskService().createTaskQuery()
+                .processInstanceId(processInstanceId)
+                .list(), processInstanceId);
         for (Task task : tasks) {
             log.info(String.format("任务ID(%s)，任务名称(%s)，委托人(%s)", task.getId(), task.getName(), task.getAssignee()));
         }
@@ -403,11 +757,15 @@ public class ActivitiUtils {
      * @return 历史任务列表
      */
     public List<HistoricTaskInstance> listHistoryTasks(String processInstanceId) {
-        HistoryService historyService = processEngine.getHistoryService();
-        List<HistoricTaskInstance> taskInstances = historyService.createHistoricTaskInstanceQuery()
+        List<HistoricTaskInstance> taskInstances = read(engine -> engine.getHistoryService()
+                .createHistoricTaskInstanceQuery()
                 .processInstanceId(processInstanceId)
                 .orderByTaskCreateTime().asc()
-                .list();
+                .list(), processInstanceId);
+        if (taskInstances.isEmpty() && archiveReader != null) {
+            // 进程实例可能已经归档
+            return archiveReader.listHistoryTasks(processInstanceId);
+        }
         return taskInstances;
     }
 
@@ -459,6 +817,7 @@ public class ActivitiUtils {
             throw new RuntimeException("进程实例没有找到与任务名称匹配的当前任务");
         }
         processEngine.getTaskService().complete(currentTask.getId());
+        recordWrite(processInstanceId, currentTask.getId(), currentTask.getAssignee());
     }
 
     /**
@@ -477,7 +836,11 @@ public class ActivitiUtils {
         TaskService taskService = processEngine.getTaskService();
         RuntimeService runtimeService = processEngine.getRuntimeService();
         Task task = taskService.createTaskQuery().taskId(taskId).singleResult();
-        taskService.setVariablesLocal(taskId, variables);
+        withChangedVariables(taskId, variables, changed -> {
+            if (changed != null && !changed.isEmpty()) {
+                taskService.setVariablesLocal(taskId, changed);
+            }
+        });
         taskService.claim(taskId, userId);
         // 如果流程还没有结束，删除
         ProcessInstance processInstance = runtimeService.createProcessInstanceQuery()
@@ -486,6 +849,7 @@ public class ActivitiUtils {
         if (processInstance != null) {
             runtimeService.deleteProcessInstance(task.getProcessInstanceId(), reason);
         }
+        recordWrite(userId, taskId, task.getProcessInstanceId());
     }
 
     /**
@@ -499,7 +863,27 @@ public class ActivitiUtils {
     public List<HistoricProcessInstance> listHistoricProcessInstances(@NonNull String assignee,
                                                                       Date startTime,
                                                                       Date endTime) {
-        HistoryService historyService = processEngine.getHistoryService();
+        List<HistoricProcessInstance> processInstances = read(engine ->
+                listHistoricProcessInstances(engine.getHistoryService(), assignee, startTime, endTime), assignee);
+        if (archiveReader == null) {
+            return processInstances;
+        }
+        // 合并已归档的流程实例，同时存在于历史表和归档中的实例（删除历史记录前中断）以历史表为准
+        Set<String> liveIds = processInstances.stream().map(HistoricProcessInstance::getId).collect(Collectors.toSet());
+        for (ArchivedProcessInstance archived : archiveReader.listProcessInstancesByAssignee(assignee, startTime, endTime)) {
+            if (!liveIds.contains(archived.getId())) {
+                processInstances.add(archived.toHistoricProcessInstance());
+            }
+        }
+        processInstances.sort(Comparator.comparing(HistoricProcessInstance::getEndTime,
+                Comparator.nullsLast(Comparator.reverseOrder())));
+        return processInstances;
+    }
+
+    private static List<HistoricProcessInstance> listHistoricProcessInstances(HistoryService historyService,
+                                                                              String assignee,
+                                                                              Date startTime,
+                                                                              Date endTime) {
         HistoricTaskInstanceQuery historicTaskInstanceQuery = historyService.createHistoricTaskInstanceQuery()
                 .taskAssignee(assignee);
         if (startTime != null) {
@@ -510,17 +894,49 @@ public class ActivitiUtils {
         }
         List<HistoricTaskInstance> taskInstances = historicTaskInstanceQuery
                 .list();
-        if (taskInstances == null || taskInstances.isEmpty()) {
-            return Collections.emptyList();
-        }
-        Set<String> processInstanceIds = taskInstances.stream().map(TaskInfo::getProcessInstanceId).collect(Collectors.toSet());
-        if (processInstanceIds.isEmpty()) {
-            return Collections.emptyList();
+        List<HistoricProcessInstance> processInstances = new ArrayList<>();
+        Set<String> processInstanceIds = taskInstances == null ? Collections.emptySet()
+                : taskInstances.stream().map(TaskInfo::getProcessInstanceId).collect(Collectors.toSet());
+        if (!processInstanceIds.isEmpty()) {
+            processInstances.addAll(historyService.createHistoricProcessInstanceQuery()
+                    .processInstanceIds(processInstanceIds)
+                    .orderByProcessInstanceEndTime().desc()
+                    .list());
         }
-        List<HistoricProcessInstance> processInstances = historyService.createHistoricProcessInstanceQuery()
-                .processInstanceIds(processInstanceIds)
-                .orderByProcessInstanceEndTime().desc()
-                .list();
         return processInstances;
     }
+
+    /**
+     * 设置了变量脏检查时，只把新增或值有变化的变量交给 write 写入。
+     * 比较和写入在同一个命令（事务）中执行：写入复用比较时加载的变量实体，变量在比较后被其它事务修改时，
+     * 写入会因版本号冲突而失败（ActivitiOptimisticLockingException），不会基于过期的比较结果覆盖。
+     * 判定为未变化的变量不写入，比较后并发写入的值会保留，相当于本次写入发生在并发写入之前
+     */
+    private void withChangedVariables(String taskId, Map<String, Object> variables, Consumer<Map<String, Object>> write) {
+        if (variableDirtyChecker == null || variables == null || variables.isEmpty()) {
+            write.accept(variables);
+            return;
+        }
+        processEngine.getManagementService().executeCommand((Command<Void>) commandContext -> {
+            // 命令中调用服务会复用当前命令上下文
+            Map<String, Object> current = processEngine.getTaskService().getVariablesLocal(taskId, variables.keySet());
+            write.accept(variableDirtyChecker.check(taskId, current, variables).getChanged());
+            return null;
+        });
+    }
+
+    /**
+     * 执行纯读操作，设置了读写分离路由时可能读只读副本
+     *
+     * @param keys 读操作涉及的用户、任务或流程实例id
+     */
+    private <T> T read(Function<ProcessEngine, T> read, String... keys) {
+        return readReplicaRouter == null ? read.apply(processEngine) : readReplicaRouter.read(read, keys);
+    }
+
+    private void recordWrite(String... keys) {
+        if (readReplicaRouter != null) {
+            readReplicaRouter.recordWrite(keys);
+        }
+    }
 }
@@ -0,0 +1,28 @@
+package cn.icexmoon.activitiutil;
+
+/**
+ * @ClassName ProcessDefinitionIds
+ * @Description 流程定义id相关的工具方法
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/21 下午4:10
+ * @Version 1.0
+ */
+public final class ProcessDefinitionIds {
+
+    private ProcessDefinitionIds() {
+    }
+
+    /**
+     * 流程定义id的格式为 key:version:id，取出其中的 key（同一 key 的各个版本得到相同结果）
+     *
+     * @param processDefinitionId 流程定义id
+     * @return 流程定义 key，id 为 null 时为 null，不是上述格式时原样返回
+     */
+    public static String toProcessDefinitionKey(String processDefinitionId) {
+        if (processDefinitionId == null) {
+            return null;
+        }
+        int index = processDefinitionId.indexOf(':');
+        return index < 0 ? processDefinitionId : processDefinitionId.substring(0, index);
+    }
+}
@@ -0,0 +1,27 @@
+package cn.icexmoon.activitiutil.analytics;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * @ClassName AnalyticsSnapshot
+ * @Description 任务耗时统计的持久化快照，水位线与草图一起保存，保证重启后不重复也不遗漏
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 下午1:55
+ * @Version 1.0
+ */
+@Data
+@AllArgsConstructor
+public class AnalyticsSnapshot implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+    // 已消费的最大任务结束时间（毫秒时间戳）
+    private long watermark;
+    // 安全窗口（水位线 - 安全延迟）内已消费的任务id -> 结束时间，用于去重
+    private Map<String, Long> recentTaskIds;
+    private Map<TaskDurationKey, QuantileSketch> sketches;
+}
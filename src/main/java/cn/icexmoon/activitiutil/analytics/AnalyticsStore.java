@@ -0,0 +1,24 @@
+package cn.icexmoon.activitiutil.analytics;
+
+/**
+ * @ClassName AnalyticsStore
+ * @Description 任务耗时统计快照的存储
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 下午2:00
+ * @Version 1.0
+ */
+public interface AnalyticsStore {
+    /**
+     * 读取快照
+     *
+     * @return 快照，不存在时返回 null
+     */
+    AnalyticsSnapshot load();
+
+    /**
+     * 保存快照
+     *
+     * @param snapshot 快照
+     */
+    void save(AnalyticsSnapshot snapshot);
+}
@@ -0,0 +1,48 @@
+package cn.icexmoon.activitiutil.analytics;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * @ClassName FileAnalyticsStore
+ * @Description 以 Java 序列化格式把快照保存到本地文件，先写临时文件再原子替换
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 下午2:05
+ * @Version 1.0
+ */
+public class FileAnalyticsStore implements AnalyticsStore {
+    private final Path file;
+
+    public FileAnalyticsStore(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public AnalyticsSnapshot load() {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            return (AnalyticsSnapshot) in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new RuntimeException("读取统计快照[%s]失败".formatted(file), e);
+        }
+    }
+
+    @Override
+    public void save(AnalyticsSnapshot snapshot) {
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+            try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeObject(snapshot);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("保存统计快照[%s]失败".formatted(file), e);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package cn.icexmoon.activitiutil.analytics;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * @ClassName QuantileSketch
+ * @Description 相对误差有界、内存有界、可合并的分位数草图（对数分桶，思路同 DDSketch）
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 下午1:10
+ * @Version 1.0
+ */
+public class QuantileSketch implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+    public static final int DEFAULT_MAX_BUCKETS = 2048;
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+    private final int maxBuckets;
+    /**
+     * counts[i] 对应桶下标 offset + i
+     */
+    private long[] counts = new long[0];
+    private int offset;
+    // 值为 0 的样本单独计数
+    private long zeroCount;
+    private long count;
+    private double sum;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY, DEFAULT_MAX_BUCKETS);
+    }
+
+    /**
+     * @param relativeAccuracy 分位数的相对误差，比如 0.01 表示 1%
+     * @param maxBuckets       最多保留的桶数，超出时合并最小的桶（低分位精度下降，高分位不受影响）
+     */
+    public QuantileSketch(double relativeAccuracy, int maxBuckets) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new RuntimeException("相对误差必须在 (0, 1) 之间");
+        }
+        if (maxBuckets < 16) {
+            throw new RuntimeException("桶数不能小于 16");
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+        this.maxBuckets = maxBuckets;
+    }
+
+    /**
+     * 添加一个样本
+     *
+     * @param value 非负样本值
+     */
+    public synchronized void add(double value) {
+        if (value < 0 || Double.isNaN(value)) {
+            throw new RuntimeException("样本值必须为非负数：" + value);
+        }
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        if (value < 1) {
+            // 耗时以毫秒计，小于 1 的样本视为 0
+            zeroCount++;
+            return;
+        }
+        int index = (int) Math.ceil(Math.log(value) / logGamma);
+        increment(index, 1);
+    }
+
+    /**
+     * 合并另一个草图（两者的相对误差必须相同）
+     *
+     * @param other 另一个草图
+     */
+    public void merge(QuantileSketch other) {
+        if (other == this) {
+            throw new RuntimeException("不能与自身合并");
+        }
+        if (Double.compare(other.relativeAccuracy, relativeAccuracy) != 0) {
+            throw new RuntimeException("相对误差不同的草图不能合并");
+        }
+        long[] otherCounts;
+        int otherOffset;
+        long otherZero, otherCount;
+        double otherSum, otherMin, otherMax;
+        synchronized (other) {
+            otherCounts = other.counts.clone();
+            otherOffset = other.offset;
+            otherZero = other.zeroCount;
+            otherCount = other.count;
+            otherSum = other.sum;
+            otherMin = other.min;
+            otherMax = other.max;
+        }
+        synchronized (this) {
+            for (int i = 0; i < otherCounts.length; i++) {
+                if (otherCounts[i] != 0) {
+                    increment(otherOffset + i, otherCounts[i]);
+                }
+            }
+            zeroCount += otherZero;
+            count += otherCount;
+            sum += otherSum;
+            min = Math.min(min, otherMin);
+            max = Math.max(max, otherMax);
+        }
+    }
+
+    /**
+     * 查询分位数
+     *
+     * @param quantile 分位，取值 [0, 1]，比如 0.95
+     * @return 分位数，没有样本时返回 NaN
+     */
+    public synchronized double quantile(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new RuntimeException("分位必须在 [0, 1] 之间");
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (quantile == 0) {
+            return min;
+        }
+        if (quantile == 1) {
+            return max;
+        }
+        long rank = (long) (quantile * (count - 1));
+        if (rank < zeroCount) {
+            return 0;
+        }
+        long seen = zeroCount;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen > rank) {
+                // 取桶区间 (gamma^(k-1), gamma^k] 的中点估计，相对误差不超过 relativeAccuracy
+                double estimate = 2 * Math.pow(gamma, offset + i) / (gamma + 1);
+                return Math.max(min, Math.min(max, estimate));
+            }
+        }
+        return max;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized double getMean() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    public synchronized double getMin() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    public synchronized double getMax() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    /**
+     * @return 当前占用的桶数
+     */
+    public synchronized int getBucketCount() {
+        return counts.length;
+    }
+
+    private void increment(int index, long delta) {
+        if (counts.length == 0) {
+            counts = new long[1];
+            offset = index;
+        } else if (index < offset) {
+            if (offset + counts.length - index > maxBuckets) {
+                // 超出桶数上限，低位样本计入最小的桶
+                index = offset;
+            } else {
+                long[] grown = new long[offset + counts.length - index];
+                System.arraycopy(counts, 0, grown, offset - index, counts.length);
+                counts = grown;
+                offset = index;
+            }
+        } else if (index >= offset + counts.length) {
+            if (index - offset + 1 > maxBuckets) {
+                collapseBelow(index - maxBuckets + 1);
+            }
+            counts = Arrays.copyOf(counts, index - offset + 1);
+        }
+        counts[index - offset] += delta;
+    }
+
+    /**
+     * 把下标低于 newOffset 的桶全部合并进 newOffset 桶
+     */
+    private void collapseBelow(int newOffset) {
+        int length = Math.max(1, offset + counts.length - newOffset);
+        long[] shrunk = new long[length];
+        for (int i = 0; i < counts.length; i++) {
+            int target = Math.max(0, offset + i - newOffset);
+            shrunk[target] += counts[i];
+        }
+        counts = shrunk;
+        offset = newOffset;
+    }
+}
@@ -0,0 +1,159 @@
+package cn.icexmoon.activitiutil.analytics;
+
+import cn.icexmoon.activitiutil.ProcessDefinitionIds;
+import lombok.extern.slf4j.Slf4j;
+import org.activiti.engine.HistoryService;
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.history.HistoricTaskInstance;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @ClassName TaskDurationAnalytics
+ * @Description 增量消费已完成的历史任务，按（流程定义、任务名称、审批人）维护任务耗时的分位数草图，
+ * 分位数查询完全在内存中完成。事务提交顺序与结束时间不一定一致（结束时间早的任务可能更晚提交），
+ * 所以每次从“水位线 - 安全延迟”开始读取，并按窗口内已消费的任务id去重，提交晚于安全延迟的任务仍会遗漏
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 下午2:15
+ * @Version 1.0
+ */
+@Slf4j
+public class TaskDurationAnalytics {
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    public static final Duration DEFAULT_SAFETY_LAG = Duration.ofMinutes(1);
+    private final ProcessEngine processEngine;
+    private final AnalyticsStore store;
+    private final int batchSize;
+    private final long safetyLagMillis;
+    private final Map<TaskDurationKey, QuantileSketch> sketches = new ConcurrentHashMap<>();
+    private long watermark;
+    // 安全窗口内已消费的任务id -> 结束时间，窗口外的会被清理，大小取决于安全延迟内完成的任务数
+    private Map<String, Long> recentTaskIds = new HashMap<>();
+
+    public TaskDurationAnalytics(ProcessEngine processEngine, AnalyticsStore store) {
+        this(processEngine, store, DEFAULT_BATCH_SIZE);
+    }
+
+    public TaskDurationAnalytics(ProcessEngine processEngine, AnalyticsStore store, int batchSize) {
+        this(processEngine, store, batchSize, DEFAULT_SAFETY_LAG);
+    }
+
+    /**
+     * @param processEngine 流程引擎
+     * @param store         快照存储，为 null 时不持久化（每次启动都从头统计）
+     * @param batchSize     每次从历史表读取的行数
+     * @param safetyLag     安全延迟，应大于最长的事务耗时，结束时间早于已消费任务但在安全延迟内提交的任务不会遗漏
+     */
+    public TaskDurationAnalytics(ProcessEngine processEngine, AnalyticsStore store, int batchSize, Duration safetyLag) {
+        this.processEngine = processEngine;
+        this.store = store;
+        this.batchSize = batchSize;
+        this.safetyLagMillis = safetyLag.toMillis();
+        AnalyticsSnapshot snapshot = store == null ? null : store.load();
+        if (snapshot != null) {
+            this.watermark = snapshot.getWatermark();
+            this.recentTaskIds = new HashMap<>(snapshot.getRecentTaskIds());
+            this.sketches.putAll(snapshot.getSketches());
+            log.info("已加载任务耗时统计快照，水位线[%s]".formatted(new Date(watermark)));
+        }
+    }
+
+    /**
+     * 消费“水位线 - 安全延迟”之后完成、且还没有消费过的历史任务，并保存快照，应由调用方定时执行
+     *
+     * @return 本次消费的任务数
+     */
+    public synchronized int refresh() {
+        HistoryService historyService = processEngine.getHistoryService();
+        Date from = new Date(watermark - safetyLagMillis - 1);
+        int consumed = 0;
+        int first = 0;
+        while (true) {
+            // 分页期间新提交的任务可能让偏移量错位，重复的按任务id去重，错过的在下次刷新时仍在安全窗口内
+            List<HistoricTaskInstance> page = historyService.createHistoricTaskInstanceQuery()
+                    .finished()
+                    .taskCompletedAfter(from)
+                    .orderByHistoricTaskInstanceEndTime().asc()
+                    .orderByTaskId().asc()
+                    .listPage(first, batchSize);
+            for (HistoricTaskInstance task : page) {
+                if (task.getEndTime() == null || recentTaskIds.containsKey(task.getId())) {
+                    continue;
+                }
+                consumed++;
+                record(task);
+                long endTime = task.getEndTime().getTime();
+                watermark = Math.max(watermark, endTime);
+                recentTaskIds.put(task.getId(), endTime);
+            }
+            if (page.size() < batchSize) {
+                break;
+            }
+            first += page.size();
+        }
+        // 下次从 watermark - safetyLag 开始读取，更早结束的任务不会再读到，不需要再去重
+        long horizon = watermark - safetyLagMillis;
+        recentTaskIds.values().removeIf(endTime -> endTime < horizon);
+        if (consumed > 0 && store != null) {
+            store.save(new AnalyticsSnapshot(watermark, new HashMap<>(recentTaskIds), new HashMap<>(sketches)));
+        }
+        return consumed;
+    }
+
+    /**
+     * 查询任务耗时的分位数
+     *
+     * @param processDefinitionKey 流程定义 key
+     * @param taskName             任务名称，比如“经理审批”
+     * @param assignee             审批人，为 null 时统计该任务的全部审批人
+     * @param quantile             分位，比如 0.95
+     * @return 耗时（毫秒），没有样本时返回 NaN
+     */
+    public double quantile(String processDefinitionKey, String taskName, String assignee, double quantile) {
+        QuantileSketch sketch = sketches.get(new TaskDurationKey(processDefinitionKey, taskName, assignee));
+        return sketch == null ? Double.NaN : sketch.quantile(quantile);
+    }
+
+    /**
+     * 查询任务耗时的样本数
+     *
+     * @param processDefinitionKey 流程定义 key
+     * @param taskName             任务名称
+     * @param assignee             审批人，为 null 时统计该任务的全部审批人
+     * @return 样本数
+     */
+    public long count(String processDefinitionKey, String taskName, String assignee) {
+        QuantileSketch sketch = sketches.get(new TaskDurationKey(processDefinitionKey, taskName, assignee));
+        return sketch == null ? 0 : sketch.getCount();
+    }
+
+    /**
+     * @return 全部统计维度
+     */
+    public Set<TaskDurationKey> keys() {
+        return Collections.unmodifiableSet(sketches.keySet());
+    }
+
+    /**
+     * @return 已消费的最大任务结束时间
+     */
+    public synchronized Date getWatermark() {
+        return new Date(watermark);
+    }
+
+    private void record(HistoricTaskInstance task) {
+        Long duration = task.getDurationInMillis();
+        if (duration == null) {
+            return;
+        }
+        String processDefinitionKey = ProcessDefinitionIds.toProcessDefinitionKey(task.getProcessDefinitionId());
+        if (task.getAssignee() != null) {
+            sketches.computeIfAbsent(new TaskDurationKey(processDefinitionKey, task.getName(), task.getAssignee()),
+                    k -> new QuantileSketch()).add(duration);
+        }
+        sketches.computeIfAbsent(new TaskDurationKey(processDefinitionKey, task.getName(), null),
+                k -> new QuantileSketch()).add(duration);
+    }
+}
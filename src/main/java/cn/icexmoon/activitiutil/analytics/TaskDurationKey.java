@@ -0,0 +1,13 @@
+package cn.icexmoon.activitiutil.analytics;
+
+import java.io.Serializable;
+
+/**
+ * @ClassName TaskDurationKey
+ * @Description 任务耗时统计维度：流程定义 key + 任务名称 + 审批人，审批人为 null 表示该任务的全部审批人
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 下午1:50
+ * @Version 1.0
+ */
+public record TaskDurationKey(String processDefinitionKey, String taskName, String assignee) implements Serializable {
+}
@@ -0,0 +1,182 @@
+package cn.icexmoon.activitiutil.archive;
+
+import lombok.extern.slf4j.Slf4j;
+import org.activiti.engine.history.HistoricTaskInstance;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+/**
+ * @ClassName ArchiveReader
+ * @Description 读取归档目录中的段文件，通过内存映射的索引查找已归档的流程实例、任务和变量
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 下午4:20
+ * @Version 1.0
+ */
+@Slf4j
+public class ArchiveReader {
+    private final Path directory;
+    // 按段名称升序排列，段名称即写入顺序
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+
+    public ArchiveReader(Path directory) {
+        this.directory = directory;
+        refresh();
+    }
+
+    /**
+     * 加载归档目录中新出现的段
+     */
+    public synchronized void refresh() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        Set<String> loaded = segments.stream().map(Segment::getName).collect(Collectors.toSet());
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + Segment.DATA_SUFFIX)) {
+            for (Path path : stream) {
+                String fileName = path.getFileName().toString();
+                String name = fileName.substring(0, fileName.length() - Segment.DATA_SUFFIX.length());
+                if (!loaded.contains(name)) {
+                    names.add(name);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("读取归档目录[%s]失败".formatted(directory), e);
+        }
+        Collections.sort(names);
+        for (String name : names) {
+            try {
+                segments.add(Segment.open(directory, name));
+            } catch (IOException e) {
+                throw new RuntimeException("打开归档段[%s]失败".formatted(name), e);
+            }
+        }
+        if (!names.isEmpty()) {
+            log.info("已加载归档段%s".formatted(names));
+        }
+    }
+
+    /**
+     * 获取已归档的流程实例
+     *
+     * @param processInstanceId 流程实例id
+     * @return 流程实例，未归档时返回 null
+     */
+    public ArchivedProcessInstance getProcessInstance(String processInstanceId) {
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            ArchivedProcessInstance instance = segments.get(i).findByInstanceId(processInstanceId);
+            if (instance != null) {
+                return instance;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 获取已归档任务所属的流程实例
+     *
+     * @param taskId 任务id
+     * @return 流程实例，未归档时返回 null
+     */
+    public ArchivedProcessInstance getProcessInstanceByTaskId(String taskId) {
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            ArchivedProcessInstance instance = segments.get(i).findByTaskId(taskId);
+            if (instance != null) {
+                return instance;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 获取已归档流程实例的历史任务列表
+     *
+     * @param processInstanceId 流程实例id
+     * @return 按创建时间升序的历史任务列表，未归档时返回空列表
+     */
+    public List<HistoricTaskInstance> listHistoryTasks(String processInstanceId) {
+        ArchivedProcessInstance instance = getProcessInstance(processInstanceId);
+        if (instance == null) {
+            return Collections.emptyList();
+        }
+        return instance.getTasks().stream()
+                .sorted(Comparator.comparing(ArchivedTask::getStartTime, Comparator.nullsLast(Comparator.naturalOrder())))
+                .map(ArchivedTask::toHistoricTaskInstance)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 获取已归档任务的局部变量
+     *
+     * @param taskId 任务id
+     * @return 变量，未归档时返回空 Map
+     */
+    public Map<String, Object> getTaskVariables(String taskId) {
+        ArchivedProcessInstance instance = getProcessInstanceByTaskId(taskId);
+        Map<String, Object> variables = new HashMap<>();
+        if (instance == null) {
+            return variables;
+        }
+        for (ArchivedVariable variable : instance.getVariables()) {
+            if (taskId.equals(variable.getTaskId())) {
+                variables.put(variable.getName(), variable.getValue());
+            }
+        }
+        return variables;
+    }
+
+    /**
+     * 返回指定委托人审批过的已归档流程实例
+     *
+     * @param assignee  指定委托人
+     * @param startTime 任务完成时间下限，可以为 null
+     * @param endTime   任务完成时间上限，可以为 null
+     * @return 已归档的流程实例
+     */
+    public List<ArchivedProcessInstance> listProcessInstancesByAssignee(String assignee, Date startTime, Date endTime) {
+        Map<String, ArchivedProcessInstance> instances = new LinkedHashMap<>();
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            for (ArchivedProcessInstance instance : segments.get(i).findByAssignee(assignee)) {
+                if (instance.isApprovedBy(assignee, startTime, endTime)) {
+                    instances.putIfAbsent(instance.getId(), instance);
+                }
+            }
+        }
+        return new ArrayList<>(instances.values());
+    }
+
+    /**
+     * @return 已加载的段数
+     */
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * @return 已归档的流程实例数（重复归档的实例会重复计数）
+     */
+    public long getInstanceCount() {
+        return segments.stream().mapToLong(Segment::getInstanceCount).sum();
+    }
+
+    /**
+     * @return 数据文件总字节数（压缩后）
+     */
+    public long getDataBytes() {
+        return segments.stream().mapToLong(Segment::getDataBytes).sum();
+    }
+
+    Path getDirectory() {
+        return directory;
+    }
+
+    List<String> getSegmentNames() {
+        return segments.stream().map(Segment::getName).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,122 @@
+package cn.icexmoon.activitiutil.archive;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.activiti.engine.history.HistoricProcessInstance;
+import org.activiti.engine.impl.persistence.entity.HistoricProcessInstanceEntityImpl;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @ClassName ArchivedProcessInstance
+ * @Description 已归档的历史流程实例，包含其全部历史任务和历史变量，以及删除历史流程实例时一并删除的其他历史记录
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 下午3:25
+ * @Version 1.0
+ */
+@Data
+@NoArgsConstructor
+public class ArchivedProcessInstance implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+    private String id;
+    private String name;
+    private String businessKey;
+    private String processDefinitionId;
+    private String processDefinitionKey;
+    private String processDefinitionName;
+    private Integer processDefinitionVersion;
+    private String deploymentId;
+    private String startUserId;
+    private String startActivityId;
+    private String endActivityId;
+    private Date startTime;
+    private Date endTime;
+    private Long durationInMillis;
+    private String deleteReason;
+    private String superProcessInstanceId;
+    private String tenantId;
+    private List<ArchivedTask> tasks = new ArrayList<>();
+    private List<ArchivedVariable> variables = new ArrayList<>();
+    // 其他历史表的原始行：表名 -> 行（列名 -> 值），包括活动、身份关系、评论、附件、明细、变量及其引用的字节数组
+    private Map<String, List<Map<String, Object>>> historyRows = new LinkedHashMap<>();
+
+    public ArchivedProcessInstance(HistoricProcessInstance instance) {
+        this.id = instance.getId();
+        this.name = instance.getName();
+        this.businessKey = instance.getBusinessKey();
+        this.processDefinitionId = instance.getProcessDefinitionId();
+        this.processDefinitionKey = instance.getProcessDefinitionKey();
+        this.processDefinitionName = instance.getProcessDefinitionName();
+        this.processDefinitionVersion = instance.getProcessDefinitionVersion();
+        this.deploymentId = instance.getDeploymentId();
+        this.startUserId = instance.getStartUserId();
+        this.startActivityId = instance.getStartActivityId();
+        this.endActivityId = instance.getEndActivityId();
+        this.startTime = instance.getStartTime();
+        this.endTime = instance.getEndTime();
+        this.durationInMillis = instance.getDurationInMillis();
+        this.deleteReason = instance.getDeleteReason();
+        this.superProcessInstanceId = instance.getSuperProcessInstanceId();
+        this.tenantId = instance.getTenantId();
+    }
+
+    /**
+     * 还原为引擎的历史流程实例对象，以便与未归档的查询结果合并
+     *
+     * @return 历史流程实例
+     */
+    public HistoricProcessInstance toHistoricProcessInstance() {
+        HistoricProcessInstanceEntityImpl instance = new HistoricProcessInstanceEntityImpl();
+        instance.setId(id);
+        instance.setProcessInstanceId(id);
+        instance.setName(name);
+        instance.setBusinessKey(businessKey);
+        instance.setProcessDefinitionId(processDefinitionId);
+        instance.setProcessDefinitionKey(processDefinitionKey);
+        instance.setProcessDefinitionName(processDefinitionName);
+        instance.setProcessDefinitionVersion(processDefinitionVersion);
+        instance.setDeploymentId(deploymentId);
+        instance.setStartUserId(startUserId);
+        instance.setStartActivityId(startActivityId);
+        instance.setEndActivityId(endActivityId);
+        instance.setStartTime(startTime);
+        instance.setEndTime(endTime);
+        instance.setDurationInMillis(durationInMillis);
+        instance.setDeleteReason(deleteReason);
+        instance.setSuperProcessInstanceId(superProcessInstanceId);
+        instance.setTenantId(tenantId);
+        return instance;
+    }
+
+    /**
+     * 指定用户是否在时间范围内审批过该实例的任务
+     *
+     * @param assignee  审批人
+     * @param startTime 任务完成时间下限（不含），可以为 null
+     * @param endTime   任务完成时间上限（不含），可以为 null
+     * @return 是否审批过
+     */
+    public boolean isApprovedBy(String assignee, Date startTime, Date endTime) {
+        for (ArchivedTask task : tasks) {
+            if (!assignee.equals(task.getAssignee())) {
+                continue;
+            }
+            Date taskEndTime = task.getEndTime();
+            if (startTime != null && (taskEndTime == null || !taskEndTime.after(startTime))) {
+                continue;
+            }
+            if (endTime != null && (taskEndTime == null || !taskEndTime.before(endTime))) {
+                continue;
+            }
+            return true;
+        }
+        return false;
+    }
+}
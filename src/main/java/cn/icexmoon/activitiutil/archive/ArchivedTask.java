@@ -0,0 +1,79 @@
+package cn.icexmoon.activitiutil.archive;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.activiti.engine.history.HistoricTaskInstance;
+import org.activiti.engine.impl.persistence.entity.HistoricTaskInstanceEntityImpl;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * @ClassName ArchivedTask
+ * @Description 已归档的历史任务
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 下午3:22
+ * @Version 1.0
+ */
+@Data
+@NoArgsConstructor
+public class ArchivedTask implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+    private String id;
+    private String name;
+    private String taskDefinitionKey;
+    private String assignee;
+    private String owner;
+    private String processInstanceId;
+    private String processDefinitionId;
+    private String executionId;
+    private Date startTime;
+    private Date claimTime;
+    private Date endTime;
+    private Long durationInMillis;
+    private String deleteReason;
+    private String tenantId;
+
+    public ArchivedTask(HistoricTaskInstance task) {
+        this.id = task.getId();
+        this.name = task.getName();
+        this.taskDefinitionKey = task.getTaskDefinitionKey();
+        this.assignee = task.getAssignee();
+        this.owner = task.getOwner();
+        this.processInstanceId = task.getProcessInstanceId();
+        this.processDefinitionId = task.getProcessDefinitionId();
+        this.executionId = task.getExecutionId();
+        this.startTime = task.getStartTime();
+        this.claimTime = task.getClaimTime();
+        this.endTime = task.getEndTime();
+        this.durationInMillis = task.getDurationInMillis();
+        this.deleteReason = task.getDeleteReason();
+        this.tenantId = task.getTenantId();
+    }
+
+    /**
+     * 还原为引擎的历史任务对象，以便与未归档的查询结果合并
+     *
+     * @return 历史任务
+     */
+    public HistoricTaskInstance toHistoricTaskInstance() {
+        HistoricTaskInstanceEntityImpl task = new HistoricTaskInstanceEntityImpl();
+        task.setId(id);
+        task.setName(name);
+        task.setTaskDefinitionKey(taskDefinitionKey);
+        task.setAssignee(assignee);
+        task.setOwner(owner);
+        task.setProcessInstanceId(processInstanceId);
+        task.setProcessDefinitionId(processDefinitionId);
+        task.setExecutionId(executionId);
+        task.setStartTime(startTime);
+        task.setClaimTime(claimTime);
+        task.setEndTime(endTime);
+        task.setDurationInMillis(durationInMillis);
+        task.setDeleteReason(deleteReason);
+        task.setTenantId(tenantId);
+        return task;
+    }
+}
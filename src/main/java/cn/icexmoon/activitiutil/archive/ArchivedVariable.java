@@ -0,0 +1,28 @@
+package cn.icexmoon.activitiutil.archive;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * @ClassName ArchivedVariable
+ * @Description 已归档的历史变量
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 下午3:20
+ * @Version 1.0
+ */
+@Data
+@AllArgsConstructor
+public class ArchivedVariable implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+    private String name;
+    // 所属任务id，流程实例变量为 null
+    private String taskId;
+    // 引擎的变量类型名称，比如 string、serializable、json
+    private String typeName;
+    // 变量值，值不能 Java 序列化时为 null，原始数据在流程实例的 historyRows 中
+    private Object value;
+}
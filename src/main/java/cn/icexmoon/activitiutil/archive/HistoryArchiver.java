@@ -0,0 +1,328 @@
+package cn.icexmoon.activitiutil.archive;
+
+import lombok.extern.slf4j.Slf4j;
+import org.activiti.engine.HistoryService;
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.history.HistoricProcessInstance;
+import org.activiti.engine.history.HistoricTaskInstance;
+import org.activiti.engine.history.NativeHistoricTaskInstanceQuery;
+import org.activiti.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.activiti.engine.impl.interceptor.Command;
+import org.activiti.engine.impl.variable.ValueFields;
+import org.activiti.engine.impl.variable.VariableTypes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * @ClassName HistoryArchiver
+ * @Description 把结束时间早于截止时间的历史流程实例分块写入归档段，再从 ACT_HI_* 表中删除。
+ * 删除历史流程实例时引擎会一并删除的记录（活动、身份关系、评论、附件、明细、字节数组）都以原始行归档
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 下午4:45
+ * @Version 1.0
+ */
+@Slf4j
+public class HistoryArchiver {
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+    private static final int IN_CHUNK_SIZE = 500;
+    private final ProcessEngine processEngine;
+    private final ArchiveReader archiveReader;
+    private final HistoryRowReader historyRowReader;
+    private final int chunkSize;
+
+    public HistoryArchiver(ProcessEngine processEngine, ArchiveReader archiveReader) {
+        this(processEngine, archiveReader, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param processEngine 流程引擎
+     * @param archiveReader 归档读取器，决定归档目录，每写入一个段都会刷新
+     * @param chunkSize     每个段包含的流程实例数
+     */
+    public HistoryArchiver(ProcessEngine processEngine, ArchiveReader archiveReader, int chunkSize) {
+        this.processEngine = processEngine;
+        this.archiveReader = archiveReader;
+        this.historyRowReader = new HistoryRowReader(processEngine);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * 归档结束时间早于截止时间的历史流程实例。
+     * 每块先写段文件并落盘，再删除历史记录，中途失败时已删除的实例一定已经归档；
+     * 已归档但未删除的实例会在下次执行时再次归档，读取时按实例id去重。
+     * 无法归档的实例（比如读取或序列化失败）会记录错误日志并跳过，保留在历史表中，不影响其他实例
+     *
+     * @param cutoff 截止时间
+     * @return 归档的流程实例数
+     */
+    public synchronized int archive(Date cutoff) {
+        HistoryService historyService = processEngine.getHistoryService();
+        Path directory = archiveReader.getDirectory();
+        int archived = 0;
+        try {
+            Files.createDirectories(directory);
+            long segmentNumber = lastSegmentNumber(directory);
+            // 跳过的实例留在历史表中且排在最前面，从其后开始取下一块
+            int skipped = 0;
+            while (true) {
+                List<HistoricProcessInstance> chunk = historyService.createHistoricProcessInstanceQuery()
+                        .finished()
+                        .finishedBefore(cutoff)
+                        .orderByProcessInstanceEndTime().asc()
+                        .orderByProcessInstanceId().asc()
+                        .listPage(skipped, chunkSize);
+                if (chunk.isEmpty()) {
+                    break;
+                }
+                List<String> processInstanceIds = chunk.stream().map(HistoricProcessInstance::getId).toList();
+                // 整块一次读取，历史变量从原始行还原，不再按实例逐个查询
+                Map<String, Map<String, List<Map<String, Object>>>> historyRows = historyRowReader.read(processInstanceIds);
+                Map<String, List<HistoricTaskInstance>> tasks = listTasks(processInstanceIds);
+                List<Segment.Record> records = processEngine.getManagementService().executeCommand(
+                        (Command<List<Segment.Record>>) commandContext -> {
+                            List<Segment.Record> encoded = new ArrayList<>(chunk.size());
+                            for (HistoricProcessInstance historicProcessInstance : chunk) {
+                                String id = historicProcessInstance.getId();
+                                try {
+                                    Map<String, List<Map<String, Object>>> rows = historyRows.getOrDefault(id, new LinkedHashMap<>());
+                                    ArchivedProcessInstance instance = toArchived(historicProcessInstance,
+                                            tasks.getOrDefault(id, List.of()), rows);
+                                    instance.setHistoryRows(rows);
+                                    encoded.add(Segment.encode(instance));
+                                } catch (IOException | RuntimeException e) {
+                                    log.error("流程实例[%s]无法归档，已跳过".formatted(id), e);
+                                }
+                            }
+                            return encoded;
+                        });
+                skipped += chunk.size() - records.size();
+                if (!records.isEmpty()) {
+                    // 数据文件有大小上限，一块的数据过大时写成多个段
+                    for (List<Segment.Record> segment : Segment.split(records)) {
+                        long start = System.currentTimeMillis();
+                        String name = "%010d".formatted(++segmentNumber);
+                        long bytes = Segment.write(directory, name, segment);
+                        log.info("归档段[%s]已写入%d个流程实例，%d字节，耗时%dms".formatted(
+                                name, segment.size(), bytes, System.currentTimeMillis() - start));
+                    }
+                    archiveReader.refresh();
+                    deleteHistory(records);
+                    archived += records.size();
+                }
+                if (chunk.size() < chunkSize) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("写入归档目录[%s]失败".formatted(directory), e);
+        }
+        return archived;
+    }
+
+    /**
+     * 一块流程实例的历史任务，每 500 个流程实例查询一次
+     */
+    private Map<String, List<HistoricTaskInstance>> listTasks(List<String> processInstanceIds) {
+        HistoryService historyService = processEngine.getHistoryService();
+        String taskTable = processEngine.getManagementService().getTableName(HistoricTaskInstance.class);
+        Map<String, List<HistoricTaskInstance>> tasks = new HashMap<>();
+        for (int from = 0; from < processInstanceIds.size(); from += IN_CHUNK_SIZE) {
+            List<String> ids = processInstanceIds.subList(from, Math.min(from + IN_CHUNK_SIZE, processInstanceIds.size()));
+            StringJoiner parameters = new StringJoiner(", ");
+            for (int i = 0; i < ids.size(); i++) {
+                parameters.add("#{pi" + i + "}");
+            }
+            NativeHistoricTaskInstanceQuery query = historyService.createNativeHistoricTaskInstanceQuery()
+                    .sql("SELECT RES.* FROM %s RES WHERE RES.PROC_INST_ID_ IN (%s) ORDER BY RES.START_TIME_ ASC"
+                            .formatted(taskTable, parameters));
+            for (int i = 0; i < ids.size(); i++) {
+                query.parameter("pi" + i, ids.get(i));
+            }
+            for (HistoricTaskInstance task : query.list()) {
+                tasks.computeIfAbsent(task.getProcessInstanceId(), k -> new ArrayList<>()).add(task);
+            }
+        }
+        return tasks;
+    }
+
+    /**
+     * 在一个事务中删除一块流程实例的历史记录，中途失败时整块回滚，下次执行时重新归档
+     */
+    private void deleteHistory(List<Segment.Record> records) {
+        HistoryService historyService = processEngine.getHistoryService();
+        processEngine.getManagementService().executeCommand((Command<Void>) commandContext -> {
+            for (Segment.Record record : records) {
+                historyService.deleteHistoricProcessInstance(record.instance().getId());
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 需要在命令上下文中调用，变量类型反序列化时可能用到引擎配置
+     */
+    private ArchivedProcessInstance toArchived(HistoricProcessInstance historicProcessInstance, List<HistoricTaskInstance> tasks,
+                                               Map<String, List<Map<String, Object>>> historyRows) {
+        ArchivedProcessInstance instance = new ArchivedProcessInstance(historicProcessInstance);
+        for (HistoricTaskInstance task : tasks) {
+            instance.getTasks().add(new ArchivedTask(task));
+        }
+        Map<Object, byte[]> byteArrays = new HashMap<>();
+        for (Map<String, Object> row : historyRows.getOrDefault(historyRowReader.getByteArrayTable(), List.of())) {
+            byteArrays.put(column(row, "ID_"), (byte[]) column(row, "BYTES_"));
+        }
+        VariableTypes variableTypes = ((ProcessEngineConfigurationImpl) processEngine.getProcessEngineConfiguration())
+                .getVariableTypes();
+        for (Map<String, Object> row : historyRows.getOrDefault(historyRowReader.getHistoricVariableTable(), List.of())) {
+            String name = (String) column(row, "NAME_");
+            String typeName = (String) column(row, "VAR_TYPE_");
+            Object bytearrayId = column(row, "BYTEARRAY_ID_");
+            Object value = variableTypes.getVariableType(typeName)
+                    .getValue(new RowValueFields(row, bytearrayId == null ? null : byteArrays.get(bytearrayId)));
+            if (!isSerializable(value)) {
+                // 比如以 JSON 存储的普通对象，原始数据（TEXT_ 等列）在 historyRows 中
+                log.warn("流程实例[%s]的变量[%s]（%s）不能 Java 序列化，只归档原始数据".formatted(
+                        historicProcessInstance.getId(), name, typeName));
+                value = null;
+            }
+            instance.getVariables().add(new ArchivedVariable(name, (String) column(row, "TASK_ID_"), typeName, value));
+        }
+        return instance;
+    }
+
+    /**
+     * 按列名取值，有的数据库（比如 PostgreSQL）返回小写的列名
+     */
+    private static Object column(Map<String, Object> row, String name) {
+        Object value = row.get(name);
+        return value != null ? value : row.get(name.toLowerCase());
+    }
+
+    private static boolean isSerializable(Object value) {
+        if (value == null) {
+            return true;
+        }
+        try (ObjectOutputStream out = new ObjectOutputStream(new ByteArrayOutputStream())) {
+            out.writeObject(value);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static long lastSegmentNumber(Path directory) throws IOException {
+        long last = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + Segment.DATA_SUFFIX + "*")) {
+            for (Path path : stream) {
+                String fileName = path.getFileName().toString();
+                String number = fileName.substring(0, fileName.indexOf('.'));
+                try {
+                    last = Math.max(last, Long.parseLong(number));
+                } catch (NumberFormatException ignored) {
+                    // 非本归档器写入的文件
+                }
+            }
+        }
+        return last;
+    }
+
+    /**
+     * 以历史变量表的原始行作为变量类型的取值来源
+     */
+    private static class RowValueFields implements ValueFields {
+        private final Map<String, Object> row;
+        private byte[] bytes;
+        private Object cachedValue;
+
+        RowValueFields(Map<String, Object> row, byte[] bytes) {
+            this.row = row;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public String getName() {
+            return (String) column(row, "NAME_");
+        }
+
+        @Override
+        public String getProcessInstanceId() {
+            return (String) column(row, "PROC_INST_ID_");
+        }
+
+        @Override
+        public String getExecutionId() {
+            return (String) column(row, "EXECUTION_ID_");
+        }
+
+        @Override
+        public String getTaskId() {
+            return (String) column(row, "TASK_ID_");
+        }
+
+        @Override
+        public String getTextValue() {
+            return (String) column(row, "TEXT_");
+        }
+
+        @Override
+        public void setTextValue(String textValue) {
+            row.put("TEXT_", textValue);
+        }
+
+        @Override
+        public String getTextValue2() {
+            return (String) column(row, "TEXT2_");
+        }
+
+        @Override
+        public void setTextValue2(String textValue2) {
+            row.put("TEXT2_", textValue2);
+        }
+
+        @Override
+        public Long getLongValue() {
+            return column(row, "LONG_") instanceof Number number ? number.longValue() : null;
+        }
+
+        @Override
+        public void setLongValue(Long longValue) {
+            row.put("LONG_", longValue);
+        }
+
+        @Override
+        public Double getDoubleValue() {
+            return column(row, "DOUBLE_") instanceof Number number ? number.doubleValue() : null;
+        }
+
+        @Override
+        public void setDoubleValue(Double doubleValue) {
+            row.put("DOUBLE_", doubleValue);
+        }
+
+        @Override
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public void setBytes(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public Object getCachedValue() {
+            return cachedValue;
+        }
+
+        @Override
+        public void setCachedValue(Object cachedValue) {
+            this.cachedValue = cachedValue;
+        }
+    }
+}
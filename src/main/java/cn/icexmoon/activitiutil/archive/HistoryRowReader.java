@@ -0,0 +1,141 @@
+package cn.icexmoon.activitiutil.archive;
+
+import org.activiti.engine.ManagementService;
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.history.HistoricActivityInstance;
+import org.activiti.engine.history.HistoricDetail;
+import org.activiti.engine.history.HistoricTaskInstance;
+import org.activiti.engine.history.HistoricVariableInstance;
+import org.activiti.engine.impl.interceptor.Command;
+import org.activiti.engine.impl.persistence.entity.AttachmentEntity;
+import org.activiti.engine.impl.persistence.entity.ByteArrayEntity;
+import org.activiti.engine.impl.persistence.entity.CommentEntity;
+import org.activiti.engine.impl.persistence.entity.HistoricIdentityLinkEntity;
+
+import java.io.Serializable;
+import java.sql.*;
+import java.util.*;
+import java.util.Date;
+
+/**
+ * @ClassName HistoryRowReader
+ * @Description 按流程实例读取删除历史流程实例时会一并删除的历史表原始行：活动、身份关系、评论、附件、明细、变量，
+ * 以及变量、明细、附件引用的字节数组。每张表对一块流程实例只查询一次
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/21 上午9:30
+ * @Version 1.0
+ */
+class HistoryRowReader {
+    // 查询结果中标记所属流程实例的列，不写入归档
+    private static final String PROCESS_INSTANCE_COLUMN = "ARCHIVE_PI_";
+    private final ManagementService managementService;
+    private final String historicTask;
+    private final String historicActivity;
+    private final String historicIdentityLink;
+    private final String comment;
+    private final String attachment;
+    private final String historicDetail;
+    private final String historicVariable;
+    private final String byteArray;
+
+    HistoryRowReader(ProcessEngine processEngine) {
+        this.managementService = processEngine.getManagementService();
+        this.historicTask = managementService.getTableName(HistoricTaskInstance.class);
+        this.historicActivity = managementService.getTableName(HistoricActivityInstance.class);
+        this.historicIdentityLink = managementService.getTableName(HistoricIdentityLinkEntity.class);
+        this.comment = managementService.getTableName(CommentEntity.class);
+        this.attachment = managementService.getTableName(AttachmentEntity.class);
+        this.historicDetail = managementService.getTableName(HistoricDetail.class);
+        this.historicVariable = managementService.getTableName(HistoricVariableInstance.class);
+        this.byteArray = managementService.getTableName(ByteArrayEntity.class);
+    }
+
+    String getHistoricVariableTable() {
+        return historicVariable;
+    }
+
+    String getByteArrayTable() {
+        return byteArray;
+    }
+
+    /**
+     * @param processInstanceIds 流程实例id
+     * @return 流程实例id -> 表名 -> 行（列名 -> 值）
+     */
+    Map<String, Map<String, List<Map<String, Object>>>> read(List<String> processInstanceIds) {
+        return managementService.executeCommand((Command<Map<String, Map<String, List<Map<String, Object>>>>>) commandContext -> {
+            Connection connection = commandContext.getDbSqlSession().getSqlSession().getConnection();
+            Map<String, Map<String, List<Map<String, Object>>>> rows = new HashMap<>();
+            String in = String.join(", ", Collections.nCopies(processInstanceIds.size(), "?"));
+            try {
+                // 直接属于流程实例的行
+                for (String table : List.of(historicActivity, historicDetail, historicVariable)) {
+                    query(connection, rows, table, "SELECT RES.PROC_INST_ID_ AS %s, RES.* FROM %s RES WHERE RES.PROC_INST_ID_ IN (%s)"
+                            .formatted(PROCESS_INSTANCE_COLUMN, table, in), processInstanceIds, 1);
+                }
+                // 属于流程实例或其任务的行（任务的身份关系、评论、附件可能没有流程实例id）
+                for (String table : List.of(historicIdentityLink, comment, attachment)) {
+                    query(connection, rows, table, ("SELECT COALESCE(RES.PROC_INST_ID_, T.PROC_INST_ID_) AS %s, RES.* FROM %s RES " +
+                            "LEFT JOIN %s T ON RES.TASK_ID_ = T.ID_ WHERE RES.PROC_INST_ID_ IN (%s) OR T.PROC_INST_ID_ IN (%s)")
+                            .formatted(PROCESS_INSTANCE_COLUMN, table, historicTask, in, in), processInstanceIds, 2);
+                }
+                // 引用的字节数组
+                for (String table : List.of(historicVariable, historicDetail)) {
+                    query(connection, rows, byteArray, ("SELECT X.PROC_INST_ID_ AS %s, RES.* FROM %s RES " +
+                            "JOIN %s X ON X.BYTEARRAY_ID_ = RES.ID_ WHERE X.PROC_INST_ID_ IN (%s)")
+                            .formatted(PROCESS_INSTANCE_COLUMN, byteArray, table, in), processInstanceIds, 1);
+                }
+                query(connection, rows, byteArray, ("SELECT COALESCE(X.PROC_INST_ID_, T.PROC_INST_ID_) AS %s, RES.* FROM %s RES " +
+                        "JOIN %s X ON X.CONTENT_ID_ = RES.ID_ LEFT JOIN %s T ON X.TASK_ID_ = T.ID_ " +
+                        "WHERE X.PROC_INST_ID_ IN (%s) OR T.PROC_INST_ID_ IN (%s)")
+                        .formatted(PROCESS_INSTANCE_COLUMN, byteArray, attachment, historicTask, in, in), processInstanceIds, 2);
+            } catch (SQLException e) {
+                throw new RuntimeException("读取待归档的历史记录失败", e);
+            }
+            return rows;
+        });
+    }
+
+    private static void query(Connection connection, Map<String, Map<String, List<Map<String, Object>>>> rows,
+                              String table, String sql, List<String> processInstanceIds, int repeat) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            int index = 1;
+            for (int i = 0; i < repeat; i++) {
+                for (String processInstanceId : processInstanceIds) {
+                    statement.setString(index++, processInstanceId);
+                }
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                ResultSetMetaData metaData = resultSet.getMetaData();
+                while (resultSet.next()) {
+                    String processInstanceId = resultSet.getString(1);
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    for (int column = 2; column <= metaData.getColumnCount(); column++) {
+                        row.put(metaData.getColumnLabel(column), value(resultSet, metaData.getColumnType(column), column));
+                    }
+                    rows.computeIfAbsent(processInstanceId, k -> new LinkedHashMap<>())
+                            .computeIfAbsent(table, k -> new ArrayList<>())
+                            .add(row);
+                }
+            }
+        }
+    }
+
+    /**
+     * 转换为可序列化的值：二进制列读取为字节数组，大文本列读取为字符串，时间读取为 Date
+     */
+    private static Object value(ResultSet resultSet, int type, int column) throws SQLException {
+        Object value = switch (type) {
+            case Types.BLOB, Types.BINARY, Types.VARBINARY, Types.LONGVARBINARY -> resultSet.getBytes(column);
+            case Types.CLOB, Types.NCLOB -> resultSet.getString(column);
+            default -> resultSet.getObject(column);
+        };
+        if (value instanceof Timestamp timestamp) {
+            return new Date(timestamp.getTime());
+        }
+        if (value != null && !(value instanceof Serializable)) {
+            return value.toString();
+        }
+        return value;
+    }
+}
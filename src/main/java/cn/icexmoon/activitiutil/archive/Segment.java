@@ -0,0 +1,219 @@
+package cn.icexmoon.activitiutil.archive;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * @ClassName Segment
+ * @Description 归档段：一个数据文件（[int 长度][Deflate 压缩的实例记录] 依次追加）和三个索引文件
+ * （实例id、任务id、审批人）。段写入后不再修改，数据文件最后重命名，作为段完整的标志
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 下午3:55
+ * @Version 1.0
+ */
+class Segment {
+    static final String DATA_SUFFIX = ".dat";
+    private static final String INSTANCE_INDEX_SUFFIX = ".pi.idx";
+    private static final String TASK_INDEX_SUFFIX = ".task.idx";
+    private static final String ASSIGNEE_INDEX_SUFFIX = ".assignee.idx";
+    private static final String TMP_SUFFIX = ".tmp";
+    // 数据文件整体映射为一个 MappedByteBuffer，偏移按 int 读取，不能超过 2GB
+    static final long MAX_DATA_BYTES = Integer.MAX_VALUE;
+
+    private final String name;
+    private final MappedByteBuffer data;
+    private final SegmentIndex instanceIndex;
+    private final SegmentIndex taskIndex;
+    private final SegmentIndex assigneeIndex;
+
+    private Segment(String name, MappedByteBuffer data, SegmentIndex instanceIndex,
+                    SegmentIndex taskIndex, SegmentIndex assigneeIndex) {
+        this.name = name;
+        this.data = data;
+        this.instanceIndex = instanceIndex;
+        this.taskIndex = taskIndex;
+        this.assigneeIndex = assigneeIndex;
+    }
+
+    static Segment open(Path directory, String name) throws IOException {
+        MappedByteBuffer data;
+        try (FileChannel channel = FileChannel.open(directory.resolve(name + DATA_SUFFIX), StandardOpenOption.READ)) {
+            if (channel.size() > MAX_DATA_BYTES) {
+                throw new IOException("归档段[%s]的数据文件有%d字节，超过上限%d字节".formatted(name, channel.size(), MAX_DATA_BYTES));
+            }
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        return new Segment(name, data,
+                SegmentIndex.open(directory.resolve(name + INSTANCE_INDEX_SUFFIX)),
+                SegmentIndex.open(directory.resolve(name + TASK_INDEX_SUFFIX)),
+                SegmentIndex.open(directory.resolve(name + ASSIGNEE_INDEX_SUFFIX)));
+    }
+
+    /**
+     * 按数据文件的大小上限把记录分成多个段
+     *
+     * @param records 编码后的记录
+     * @return 每个段的记录，顺序不变
+     */
+    static List<List<Record>> split(List<Record> records) {
+        List<List<Record>> segments = new ArrayList<>();
+        List<Record> current = new ArrayList<>();
+        long bytes = 0;
+        for (Record record : records) {
+            long size = Integer.BYTES + (long) record.data().length;
+            if (!current.isEmpty() && bytes + size > MAX_DATA_BYTES) {
+                segments.add(current);
+                current = new ArrayList<>();
+                bytes = 0;
+            }
+            current.add(record);
+            bytes += size;
+        }
+        if (!current.isEmpty()) {
+            segments.add(current);
+        }
+        return segments;
+    }
+
+    /**
+     * 写入一个新段，数据超过 {@link #MAX_DATA_BYTES} 时失败，需要先用 {@link #split(List)} 分段
+     *
+     * @param directory 归档目录
+     * @param name      段名称
+     * @param records   归档的流程实例及其编码结果（{@link #encode(ArchivedProcessInstance)}）
+     * @return 写入的字节数（压缩后）
+     */
+    static long write(Path directory, String name, List<Record> records) throws IOException {
+        Path dataTmp = directory.resolve(name + DATA_SUFFIX + TMP_SUFFIX);
+        List<SegmentIndex.Entry> instanceEntries = new ArrayList<>();
+        List<SegmentIndex.Entry> taskEntries = new ArrayList<>();
+        List<SegmentIndex.Entry> assigneeEntries = new ArrayList<>();
+        long offset = 0;
+        try (FileChannel channel = FileChannel.open(dataTmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            for (Record entry : records) {
+                ArchivedProcessInstance instance = entry.instance();
+                byte[] record = entry.data();
+                if (offset + Integer.BYTES + record.length > MAX_DATA_BYTES) {
+                    throw new IOException("归档段[%s]的数据超过上限%d字节".formatted(name, MAX_DATA_BYTES));
+                }
+                ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + record.length);
+                buffer.putInt(record.length).put(record).flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                instanceEntries.add(new SegmentIndex.Entry(instance.getId(), offset));
+                List<String> assignees = new ArrayList<>();
+                for (ArchivedTask task : instance.getTasks()) {
+                    taskEntries.add(new SegmentIndex.Entry(task.getId(), offset));
+                    if (task.getAssignee() != null && !assignees.contains(task.getAssignee())) {
+                        assignees.add(task.getAssignee());
+                        assigneeEntries.add(new SegmentIndex.Entry(task.getAssignee(), offset));
+                    }
+                }
+                offset += Integer.BYTES + record.length;
+            }
+            channel.force(true);
+        }
+        String[] suffixes = {INSTANCE_INDEX_SUFFIX, TASK_INDEX_SUFFIX, ASSIGNEE_INDEX_SUFFIX};
+        List<List<SegmentIndex.Entry>> entries = List.of(instanceEntries, taskEntries, assigneeEntries);
+        for (int i = 0; i < suffixes.length; i++) {
+            Path tmp = directory.resolve(name + suffixes[i] + TMP_SUFFIX);
+            SegmentIndex.write(tmp, entries.get(i));
+            Files.move(tmp, directory.resolve(name + suffixes[i]), StandardCopyOption.ATOMIC_MOVE);
+        }
+        // 数据文件最后就位，读取方只加载数据文件存在的段
+        Files.move(dataTmp, directory.resolve(name + DATA_SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+        return offset;
+    }
+
+    ArchivedProcessInstance findByInstanceId(String processInstanceId) {
+        for (Long offset : instanceIndex.find(processInstanceId)) {
+            ArchivedProcessInstance instance = read(offset);
+            if (processInstanceId.equals(instance.getId())) {
+                return instance;
+            }
+        }
+        return null;
+    }
+
+    ArchivedProcessInstance findByTaskId(String taskId) {
+        for (Long offset : taskIndex.find(taskId)) {
+            ArchivedProcessInstance instance = read(offset);
+            for (ArchivedTask task : instance.getTasks()) {
+                if (taskId.equals(task.getId())) {
+                    return instance;
+                }
+            }
+        }
+        return null;
+    }
+
+    List<ArchivedProcessInstance> findByAssignee(String assignee) {
+        List<ArchivedProcessInstance> instances = new ArrayList<>();
+        for (Long offset : assigneeIndex.find(assignee)) {
+            instances.add(read(offset));
+        }
+        return instances;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    int getInstanceCount() {
+        return instanceIndex.size();
+    }
+
+    long getDataBytes() {
+        return data.capacity();
+    }
+
+    private ArchivedProcessInstance read(long offset) {
+        // 复制一个独立的视图，避免多线程读取时互相干扰 position
+        ByteBuffer view = data.duplicate();
+        if (offset < 0 || offset > view.capacity() - Integer.BYTES) {
+            throw new RuntimeException("归档段[%s]的偏移[%d]超出数据文件范围（%d字节）".formatted(name, offset, view.capacity()));
+        }
+        view.position((int) offset);
+        int length = view.getInt();
+        if (length < 0 || length > view.remaining()) {
+            throw new RuntimeException("归档段[%s]偏移[%d]处的记录长度[%d]超出数据文件范围".formatted(name, offset, length));
+        }
+        byte[] record = new byte[length];
+        view.get(record);
+        try (ObjectInputStream in = new ObjectInputStream(
+                new InflaterInputStream(new ByteArrayInputStream(record)))) {
+            return (ArchivedProcessInstance) in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new RuntimeException("读取归档段[%s]偏移[%d]失败".formatted(name, offset), e);
+        }
+    }
+
+    /**
+     * 编码一个流程实例，包含不能序列化的值时抛出 {@link NotSerializableException}
+     */
+    static Record encode(ArchivedProcessInstance instance) throws IOException {
+        return new Record(instance, compress(instance));
+    }
+
+    private static byte[] compress(ArchivedProcessInstance instance) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(new DeflaterOutputStream(bytes))) {
+            out.writeObject(instance);
+        }
+        return bytes.toByteArray();
+    }
+
+    record Record(ArchivedProcessInstance instance, byte[] data) {
+    }
+}
@@ -0,0 +1,122 @@
+package cn.icexmoon.activitiutil.archive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @ClassName SegmentIndex
+ * @Description 归档段的有序索引文件：定长条目（128 字节 key + 8 字节数据偏移），按 key 排序，
+ * 通过内存映射二分查找，允许重复 key
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 下午3:40
+ * @Version 1.0
+ */
+class SegmentIndex {
+    static final int KEY_BYTES = 128;
+    static final int ENTRY_BYTES = KEY_BYTES + Long.BYTES;
+    private final MappedByteBuffer buffer;
+    private final int size;
+
+    private SegmentIndex(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+        this.size = buffer.capacity() / ENTRY_BYTES;
+    }
+
+    static SegmentIndex open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new SegmentIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * 把索引条目排序后写入文件
+     *
+     * @param file    索引文件
+     * @param entries 索引条目
+     */
+    static void write(Path file, List<Entry> entries) throws IOException {
+        Entry[] sorted = entries.toArray(new Entry[0]);
+        Arrays.sort(sorted, (a, b) -> Arrays.compareUnsigned(a.key, b.key));
+        ByteBuffer buffer = ByteBuffer.allocate(sorted.length * ENTRY_BYTES);
+        for (Entry entry : sorted) {
+            buffer.put(entry.key).putLong(entry.offset);
+        }
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+    }
+
+    /**
+     * 查找 key 对应的全部数据偏移
+     *
+     * @param key key
+     * @return 数据偏移列表
+     */
+    List<Long> find(String key) {
+        byte[] target = encode(key);
+        List<Long> offsets = new ArrayList<>();
+        for (int i = lowerBound(target); i < size && compareAt(i, target) == 0; i++) {
+            offsets.add(buffer.getLong(i * ENTRY_BYTES + KEY_BYTES));
+        }
+        return offsets;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int lowerBound(byte[] target) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareAt(mid, target) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int compareAt(int index, byte[] target) {
+        int base = index * ENTRY_BYTES;
+        for (int i = 0; i < KEY_BYTES; i++) {
+            int cmp = Byte.compareUnsigned(buffer.get(base + i), target[i]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * key 以 UTF-8 编码，超长截断（截断可能产生冲突，调用方需要校验记录内容），不足补零
+     */
+    static byte[] encode(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        return Arrays.copyOf(bytes, KEY_BYTES);
+    }
+
+    static class Entry {
+        private final byte[] key;
+        private final long offset;
+
+        Entry(String key, long offset) {
+            this.key = encode(key);
+            this.offset = offset;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package cn.icexmoon.activitiutil.diagram;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @ClassName DiagramCache
+ * @Description 按字节数限制容量的 LRU 缓存，超出容量时淘汰最久未使用的流程图
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/20 下午4:20
+ * @Version 1.0
+ */
+class DiagramCache {
+    private final long maxBytes;
+    // 访问顺序，最久未使用的在最前面
+    private final LinkedHashMap<DiagramKey, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    DiagramCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 查找缓存，不计入命中统计，由调用方根据是否需要渲染调用 recordHit 或 recordMiss
+     */
+    synchronized byte[] peek(DiagramKey key) {
+        return entries.get(key);
+    }
+
+    /**
+     * 放入缓存，单个流程图超过容量时不缓存
+     */
+    synchronized void put(DiagramKey key, byte[] image) {
+        long size = sizeOf(key, image);
+        if (size > maxBytes) {
+            return;
+        }
+        byte[] old = entries.put(key, image);
+        if (old != null) {
+            bytes -= sizeOf(key, old);
+        }
+        bytes += size;
+        Iterator<Map.Entry<DiagramKey, byte[]>> iterator = entries.entrySet().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<DiagramKey, byte[]> eldest = iterator.next();
+            bytes -= sizeOf(eldest.getKey(), eldest.getValue());
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * 记录一次不需要渲染的请求（缓存中已有，或合并到进行中的渲染）
+     */
+    synchronized void recordHit() {
+        hits++;
+    }
+
+    /**
+     * 记录一次由当前线程渲染的请求
+     */
+    synchronized void recordMiss() {
+        misses++;
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    synchronized DiagramCacheStats stats(long renderMillis) {
+        return new DiagramCacheStats(hits, misses, evictions, entries.size(), bytes, maxBytes, renderMillis);
+    }
+
+    private static long sizeOf(DiagramKey key, byte[] image) {
+        return key.estimateBytes() + 16 + image.length;
+    }
+}
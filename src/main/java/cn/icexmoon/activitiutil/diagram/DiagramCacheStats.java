@@ -0,0 +1,27 @@
+package cn.icexmoon.activitiutil.diagram;
+
+import lombok.Value;
+
+/**
+ * @ClassName DiagramCacheStats
+ * @Description 流程图缓存的统计
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/20 下午4:15
+ * @Version 1.0
+ */
+@Value
+public class DiagramCacheStats {
+    long hits;
+    long misses;
+    long evictions;
+    int entries;
+    long bytes;
+    long maxBytes;
+    // 渲染流程图的累计耗时（毫秒）
+    long renderMillis;
+
+    public double getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
@@ -0,0 +1,27 @@
+package cn.icexmoon.activitiutil.diagram;
+
+import java.util.List;
+
+/**
+ * @ClassName DiagramKey
+ * @Description 流程图缓存的键：流程定义id、已完成的活动id、当前的活动id和经过的连线id（均升序、去重）
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/20 下午4:10
+ * @Version 1.0
+ */
+record DiagramKey(String processDefinitionId, List<String> completedActivityIds, List<String> currentActivityIds,
+                  List<String> flowIds) {
+
+    /**
+     * 粗略估计键占用的内存（字节）
+     */
+    long estimateBytes() {
+        long bytes = 64 + processDefinitionId.length() * 2L;
+        for (List<String> ids : List.of(completedActivityIds, currentActivityIds, flowIds)) {
+            for (String id : ids) {
+                bytes += 48 + id.length() * 2L;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,253 @@
+package cn.icexmoon.activitiutil.diagram;
+
+import org.activiti.bpmn.model.BpmnModel;
+import org.activiti.bpmn.model.FlowNode;
+import org.activiti.bpmn.model.SequenceFlow;
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.history.HistoricActivityInstance;
+import org.activiti.engine.history.HistoricProcessInstance;
+import org.activiti.engine.runtime.ProcessInstance;
+import org.activiti.image.ProcessDiagramGenerator;
+import org.activiti.image.impl.DefaultProcessDiagramGenerator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @ClassName ProcessDiagramRenderer
+ * @Description 渲染高亮了已完成活动、当前活动和经过的连线的流程实例图。同一流程定义下处于相同状态的实例共用一张图，
+ * 按（流程定义id，已完成活动，当前活动，经过的连线）缓存渲染结果，缓存按字节数限制容量
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/20 下午4:30
+ * @Version 1.0
+ */
+public class ProcessDiagramRenderer {
+    public static final long DEFAULT_MAX_CACHE_BYTES = 64L * 1024 * 1024;
+    private final ProcessEngine processEngine;
+    private final ProcessDiagramGenerator generator = new DefaultProcessDiagramGenerator();
+    private final String fontName;
+    private final DiagramCache cache;
+    // 进行中的渲染，相同键的并发请求只渲染一次
+    private final ConcurrentHashMap<DiagramKey, CompletableFuture<byte[]>> rendering = new ConcurrentHashMap<>();
+    private final AtomicLong renderMillis = new AtomicLong();
+
+    public ProcessDiagramRenderer(ProcessEngine processEngine) {
+        this(processEngine, DEFAULT_MAX_CACHE_BYTES, null);
+    }
+
+    /**
+     * @param processEngine 流程引擎
+     * @param maxCacheBytes 缓存的最大字节数
+     * @param fontName      活动、标签和注释使用的字体，中文名称需要指定系统中存在的中文字体（比如“宋体”），为 null 时使用默认字体
+     */
+    public ProcessDiagramRenderer(ProcessEngine processEngine, long maxCacheBytes, String fontName) {
+        this.processEngine = processEngine;
+        this.cache = new DiagramCache(maxCacheBytes);
+        this.fontName = fontName;
+    }
+
+    /**
+     * 渲染流程实例图，分别高亮已完成和当前的活动，以及实际经过的连线，已结束的实例也可以渲染
+     *
+     * @param processInstanceId 流程实例id
+     * @return 图片内容（SVG）
+     */
+    public byte[] render(String processInstanceId) {
+        HistoricProcessInstance historicProcessInstance = processEngine.getHistoryService()
+                .createHistoricProcessInstanceQuery()
+                .processInstanceId(processInstanceId)
+                .singleResult();
+        String processDefinitionId;
+        if (historicProcessInstance != null) {
+            processDefinitionId = historicProcessInstance.getProcessDefinitionId();
+        } else {
+            ProcessInstance processInstance = processEngine.getRuntimeService().createProcessInstanceQuery()
+                    .processInstanceId(processInstanceId)
+                    .singleResult();
+            if (processInstance == null) {
+                throw new RuntimeException("流程实例（%s）不存在！".formatted(processInstanceId));
+            }
+            processDefinitionId = processInstance.getProcessDefinitionId();
+        }
+        List<HistoricActivityInstance> activityInstances = listActivityInstances(processInstanceId);
+        Set<String> completedActivityIds = new TreeSet<>();
+        for (HistoricActivityInstance activityInstance : activityInstances) {
+            if (activityInstance.getEndTime() != null) {
+                completedActivityIds.add(activityInstance.getActivityId());
+            }
+        }
+        Set<String> currentActivityIds = new TreeSet<>();
+        ProcessInstance processInstance = processEngine.getRuntimeService().createProcessInstanceQuery()
+                .processInstanceId(processInstanceId)
+                .singleResult();
+        if (processInstance != null) {
+            // 历史级别低于 activity 时没有活动历史，至少高亮当前活动
+            currentActivityIds.addAll(processEngine.getRuntimeService().getActiveActivityIds(processInstanceId));
+        }
+        List<String> flowIds = activityInstances.isEmpty() ? List.of()
+                : takenFlows(bpmnModel(processDefinitionId), activityInstances);
+        return render(processDefinitionId, completedActivityIds, currentActivityIds, flowIds);
+    }
+
+    /**
+     * 渲染流程定义图，高亮的活动都按已完成显示，不高亮连线
+     *
+     * @param processDefinitionId    流程定义id
+     * @param highlightedActivityIds 高亮的活动id
+     * @return 图片内容（SVG）
+     */
+    public byte[] render(String processDefinitionId, Collection<String> highlightedActivityIds) {
+        return render(processDefinitionId, highlightedActivityIds, List.of(), List.of());
+    }
+
+    /**
+     * 渲染流程定义图
+     *
+     * @param processDefinitionId  流程定义id
+     * @param completedActivityIds 已完成的活动id
+     * @param currentActivityIds   当前的活动id，与已完成的活动区分显示
+     * @param flowIds              高亮的连线id
+     * @return 图片内容（SVG）
+     */
+    public byte[] render(String processDefinitionId, Collection<String> completedActivityIds,
+                         Collection<String> currentActivityIds, Collection<String> flowIds) {
+        DiagramKey key = new DiagramKey(processDefinitionId, sorted(completedActivityIds), sorted(currentActivityIds),
+                sorted(flowIds));
+        byte[] image = cache.peek(key);
+        if (image != null) {
+            cache.recordHit();
+            return image.clone();
+        }
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        CompletableFuture<byte[]> inProgress = rendering.putIfAbsent(key, future);
+        if (inProgress != null) {
+            cache.recordHit();
+            try {
+                return inProgress.join().clone();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        try {
+            // 查缓存之后、登记渲染之前，其它线程可能刚好渲染完成并移除了登记
+            image = cache.peek(key);
+            if (image != null) {
+                cache.recordHit();
+                future.complete(image);
+                return image.clone();
+            }
+            cache.recordMiss();
+            image = generate(key);
+            cache.put(key, image);
+            future.complete(image);
+            return image.clone();
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            rendering.remove(key, future);
+        }
+    }
+
+    public DiagramCacheStats getStats() {
+        return cache.stats(renderMillis.get());
+    }
+
+    /**
+     * 清空缓存（比如重新部署了同一 id 的流程定义，通常不需要）
+     */
+    public void clearCache() {
+        cache.clear();
+    }
+
+    /**
+     * 流程实例的活动历史，按开始时间升序，时间相同时按 id 的生成顺序
+     */
+    private List<HistoricActivityInstance> listActivityInstances(String processInstanceId) {
+        List<HistoricActivityInstance> activityInstances = new ArrayList<>(processEngine.getHistoryService()
+                .createHistoricActivityInstanceQuery()
+                .processInstanceId(processInstanceId)
+                .list());
+        activityInstances.sort(Comparator.comparing(HistoricActivityInstance::getStartTime)
+                .thenComparing(HistoricActivityInstance::getId, ProcessDiagramRenderer::compareIds));
+        return activityInstances;
+    }
+
+    private BpmnModel bpmnModel(String processDefinitionId) {
+        BpmnModel bpmnModel = processEngine.getRepositoryService().getBpmnModel(processDefinitionId);
+        if (bpmnModel == null) {
+            throw new RuntimeException("流程定义（%s）不存在！".formatted(processDefinitionId));
+        }
+        return bpmnModel;
+    }
+
+    private byte[] generate(DiagramKey key) {
+        long start = System.currentTimeMillis();
+        BpmnModel bpmnModel = bpmnModel(key.processDefinitionId());
+        // 已完成的活动再次成为当前活动时（比如退回重做）按当前活动显示
+        Set<String> highlighted = new TreeSet<>(key.completedActivityIds());
+        highlighted.addAll(key.currentActivityIds());
+        String activityFont = fontName == null ? generator.getDefaultActivityFontName() : fontName;
+        String labelFont = fontName == null ? generator.getDefaultLabelFontName() : fontName;
+        String annotationFont = fontName == null ? generator.getDefaultAnnotationFontName() : fontName;
+        try (InputStream inputStream = generator.generateDiagram(bpmnModel, new ArrayList<>(highlighted),
+                key.flowIds(), key.currentActivityIds(), List.of(), activityFont, labelFont, annotationFont, false, null)) {
+            return inputStream.readAllBytes();
+        } catch (IOException e) {
+            throw new RuntimeException("渲染流程图失败", e);
+        } finally {
+            renderMillis.addAndGet(System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * 实际经过的连线。活动历史不记录经过的连线，对每个活动实例，在其进入连线的源活动中，
+     * 找排在它之前、且在它开始前已结束的最近一个源活动实例，这两个实例之间的连线就是经过的连线。
+     * 两端都执行过但没有经过的连线（比如排它网关未选中的分支，没有退回过的回退连线）不会高亮
+     */
+    private static List<String> takenFlows(BpmnModel bpmnModel, List<HistoricActivityInstance> activityInstances) {
+        Set<String> flows = new TreeSet<>();
+        for (int i = 0; i < activityInstances.size(); i++) {
+            HistoricActivityInstance target = activityInstances.get(i);
+            if (!(bpmnModel.getFlowElement(target.getActivityId()) instanceof FlowNode node)) {
+                continue;
+            }
+            SequenceFlow taken = null;
+            int takenIndex = -1;
+            for (SequenceFlow flow : node.getIncomingFlows()) {
+                for (int j = i - 1; j > takenIndex; j--) {
+                    HistoricActivityInstance source = activityInstances.get(j);
+                    if (flow.getSourceRef().equals(source.getActivityId()) && source.getEndTime() != null
+                            && !source.getEndTime().after(target.getStartTime())) {
+                        taken = flow;
+                        takenIndex = j;
+                        break;
+                    }
+                }
+            }
+            if (taken != null) {
+                flows.add(taken.getId());
+            }
+        }
+        return new ArrayList<>(flows);
+    }
+
+    private static List<String> sorted(Collection<String> values) {
+        return List.copyOf(new TreeSet<>(values));
+    }
+
+    /**
+     * 数据库号段和雪花算法生成的 id 都是递增的数字，按数值比较；其它 id 按字符串比较
+     */
+    private static int compareIds(String a, String b) {
+        if (a.length() != b.length() && a.chars().allMatch(Character::isDigit) && b.chars().allMatch(Character::isDigit)) {
+            return Integer.compare(a.length(), b.length());
+        }
+        return a.compareTo(b);
+    }
+}
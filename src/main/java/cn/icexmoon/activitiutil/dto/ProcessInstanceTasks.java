@@ -0,0 +1,47 @@
+package cn.icexmoon.activitiutil.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.activiti.engine.history.HistoricProcessInstance;
+import org.activiti.engine.runtime.ProcessInstance;
+import org.activiti.engine.task.Task;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @ClassName ProcessInstanceTasks
+ * @Description 流程实例及其当前任务，流程实例可能运行中，也可能已结束
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 上午11:02
+ * @Version 1.0
+ */
+@Data
+@AllArgsConstructor
+public class ProcessInstanceTasks {
+    // 运行中的流程实例，已结束时为 null
+    private ProcessInstance processInstance;
+    // 已结束的流程实例，运行中时为 null
+    private HistoricProcessInstance historicProcessInstance;
+    // 当前任务（按创建时间升序），已结束时为空
+    private List<Task> currentTasks;
+
+    public static ProcessInstanceTasks running(ProcessInstance processInstance, List<Task> currentTasks) {
+        return new ProcessInstanceTasks(processInstance, null, currentTasks);
+    }
+
+    public static ProcessInstanceTasks ended(HistoricProcessInstance historicProcessInstance) {
+        return new ProcessInstanceTasks(null, historicProcessInstance, Collections.emptyList());
+    }
+
+    /**
+     * @return 流程实例是否已结束（包括被删除、拒绝）
+     */
+    public boolean isEnded() {
+        return processInstance == null;
+    }
+
+    public String getProcessInstanceId() {
+        return isEnded() ? historicProcessInstance.getId() : processInstance.getId();
+    }
+}
@@ -0,0 +1,17 @@
+package cn.icexmoon.activitiutil.event;
+
+/**
+ * @ClassName OverflowPolicy
+ * @Description 订阅者落后超过环形缓冲区容量时的处理策略
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 下午5:45
+ * @Version 1.0
+ */
+public enum OverflowPolicy {
+    // 丢弃被覆盖的旧事件，订阅者跳到仍然有效的最旧事件，并记录丢弃数
+    DROP_OLDEST,
+    // 发布方最多等待 maxPublishWait 让订阅者追上，超时后按 DROP_OLDEST 处理。
+    // 引擎事件在提交事务的业务线程上发布，等待会增加 completeTask、start 等写操作的耗时；
+    // 同一订阅者的一次落后期间，所有发布方合计最多等待 maxPublishWait，超时后不再等待，直到订阅者追上
+    BACKPRESSURE
+}
@@ -0,0 +1,253 @@
+package cn.icexmoon.activitiutil.event;
+
+import lombok.extern.slf4j.Slf4j;
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.delegate.event.ActivitiEntityEvent;
+import org.activiti.engine.delegate.event.ActivitiEvent;
+import org.activiti.engine.delegate.event.ActivitiEventListener;
+import org.activiti.engine.delegate.event.ActivitiEventType;
+import org.activiti.engine.impl.cfg.TransactionContext;
+import org.activiti.engine.impl.cfg.TransactionState;
+import org.activiti.engine.impl.context.Context;
+import org.activiti.engine.task.IdentityLink;
+import org.activiti.engine.task.Task;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+
+/**
+ * @ClassName TaskEventBus
+ * @Description 进程内的任务生命周期事件总线。监听引擎事件，在事务提交后发布到有界、无锁的环形缓冲区，
+ * 每个订阅者持有独立的游标，可以按用户或流程定义过滤，用于替代轮询 listCompletableTask
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 下午6:10
+ * @Version 1.0
+ */
+@Slf4j
+public class TaskEventBus implements ActivitiEventListener {
+    public static final int DEFAULT_CAPACITY = 8192;
+    private static final ActivitiEventType[] EVENT_TYPES = {
+            ActivitiEventType.TASK_CREATED,
+            ActivitiEventType.TASK_ASSIGNED,
+            ActivitiEventType.TASK_COMPLETED,
+            ActivitiEventType.ENTITY_CREATED,
+            ActivitiEventType.PROCESS_CANCELLED
+    };
+
+    private final int mask;
+    private final AtomicReferenceArray<TaskLifecycleEvent> slots;
+    // 下一个待分配的事件序号
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final long maxPublishWaitNanos;
+    private final List<TaskEventSubscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    public TaskEventBus() {
+        this(DEFAULT_CAPACITY, 50, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param capacity       环形缓冲区容量，会向上取整为 2 的幂
+     * @param maxPublishWait BACKPRESSURE 订阅者落后时发布方的最长等待时间。发布方通常是提交事务的业务线程，
+     *                       同一订阅者的一次落后期间，所有发布方合计最多等待这么久，之后不再等待直到订阅者追上
+     * @param unit           时间单位
+     */
+    public TaskEventBus(int capacity, long maxPublishWait, TimeUnit unit) {
+        if (capacity < 2) {
+            throw new RuntimeException("环形缓冲区容量不能小于 2");
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.maxPublishWaitNanos = unit.toNanos(maxPublishWait);
+    }
+
+    /**
+     * 把事件总线注册为引擎的事件监听器
+     *
+     * @param processEngine 流程引擎
+     * @return 事件总线本身
+     */
+    public TaskEventBus register(ProcessEngine processEngine) {
+        processEngine.getRuntimeService().addEventListener(this, EVENT_TYPES);
+        return this;
+    }
+
+    /**
+     * 从引擎注销事件总线
+     *
+     * @param processEngine 流程引擎
+     */
+    public void unregister(ProcessEngine processEngine) {
+        processEngine.getRuntimeService().removeEventListener(this);
+    }
+
+    /**
+     * 订阅事件，只能收到订阅之后发布的事件
+     *
+     * @param filter         过滤条件，为 null 时接收全部事件，见 TaskEventFilters
+     * @param overflowPolicy 落后超过缓冲区容量时的处理策略
+     * @return 订阅
+     */
+    public TaskEventSubscription subscribe(Predicate<TaskLifecycleEvent> filter, OverflowPolicy overflowPolicy) {
+        TaskEventSubscription subscription = new TaskEventSubscription(this, filter, overflowPolicy, nextSequence.get());
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    public TaskEventSubscription subscribe(Predicate<TaskLifecycleEvent> filter) {
+        return subscribe(filter, OverflowPolicy.DROP_OLDEST);
+    }
+
+    @Override
+    public void onEvent(ActivitiEvent event) {
+        TaskLifecycleEvent taskEvent = convert(event);
+        if (taskEvent == null) {
+            return;
+        }
+        TransactionContext transactionContext = Context.getTransactionContext();
+        if (transactionContext == null) {
+            publish(taskEvent);
+        } else {
+            // 事务回滚时不发布，避免订阅者看到不存在的任务
+            transactionContext.addTransactionListener(TransactionState.COMMITTED, commandContext -> publish(taskEvent));
+        }
+    }
+
+    @Override
+    public boolean isFailOnException() {
+        // 事件总线故障不应影响流程执行
+        return false;
+    }
+
+    /**
+     * 发布事件
+     *
+     * @param event 事件，序号会被重新分配
+     */
+    public void publish(TaskLifecycleEvent event) {
+        long sequence = nextSequence.getAndIncrement();
+        awaitBackpressureSubscribers(sequence);
+        TaskLifecycleEvent published = event.toBuilder().sequence(sequence).build();
+        int index = (int) (sequence & mask);
+        while (true) {
+            TaskLifecycleEvent current = slots.get(index);
+            if (current != null && current.getSequence() > sequence) {
+                // 发布方停顿期间，同一槽位已被绕环一圈后的新事件写入，不能用旧事件覆盖，本事件视为已丢弃
+                return;
+            }
+            if (slots.compareAndSet(index, current, published)) {
+                break;
+            }
+        }
+        for (TaskEventSubscription subscription : subscriptions) {
+            subscription.signal();
+        }
+    }
+
+    /**
+     * @return 已分配的事件数（即下一个事件的序号）
+     */
+    public long getPublished() {
+        return nextSequence.get();
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    TaskLifecycleEvent read(long sequence) {
+        TaskLifecycleEvent event = slots.get((int) (sequence & mask));
+        if (event == null || event.getSequence() < sequence) {
+            return null;
+        }
+        return event;
+    }
+
+    long oldestAvailable() {
+        return Math.max(0, nextSequence.get() - getCapacity());
+    }
+
+    void unsubscribe(TaskEventSubscription subscription) {
+        subscriptions.remove(subscription);
+    }
+
+    /**
+     * 等待落后的 BACKPRESSURE 订阅者。每个订阅者的一次落后期间只有一个共享的截止时间，超时后的发布不再等待，
+     * 避免慢订阅者让每次提交都阻塞 maxPublishWait
+     */
+    private void awaitBackpressureSubscribers(long sequence) {
+        for (TaskEventSubscription subscription : subscriptions) {
+            if (subscription.getOverflowPolicy() != OverflowPolicy.BACKPRESSURE) {
+                continue;
+            }
+            if (sequence - subscription.getCursor() < getCapacity()) {
+                // 已经追上，下次落后重新计时
+                subscription.resetBackpressureDeadline();
+                continue;
+            }
+            long deadline = subscription.backpressureDeadline(System.nanoTime() + maxPublishWaitNanos);
+            while (!subscription.isClosed() && sequence - subscription.getCursor() >= getCapacity()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    if (subscription.markBackpressureTimedOut()) {
+                        log.warn("事件订阅者落后超过%d个事件，等待超时，追上之前旧事件将被直接覆盖".formatted(getCapacity()));
+                    }
+                    break;
+                }
+                LockSupport.parkNanos(Math.min(remaining, TimeUnit.MICROSECONDS.toNanos(100)));
+            }
+        }
+    }
+
+    private static TaskLifecycleEvent convert(ActivitiEvent event) {
+        TaskLifecycleEvent.TaskLifecycleEventBuilder builder = TaskLifecycleEvent.builder()
+                .timestamp(System.currentTimeMillis())
+                .processInstanceId(event.getProcessInstanceId())
+                .processDefinitionId(event.getProcessDefinitionId());
+        switch (event.getType()) {
+            case TASK_CREATED:
+                return task(builder.type(TaskEventType.CREATED), event);
+            case TASK_ASSIGNED:
+                return task(builder.type(TaskEventType.ASSIGNED), event);
+            case TASK_COMPLETED:
+                return task(builder.type(TaskEventType.COMPLETED), event);
+            case ENTITY_CREATED:
+                if (event instanceof ActivitiEntityEvent entityEvent
+                        && entityEvent.getEntity() instanceof IdentityLink identityLink
+                        && identityLink.getTaskId() != null
+                        && "candidate".equals(identityLink.getType())) {
+                    return builder.type(TaskEventType.CANDIDATE_ADDED)
+                            .taskId(identityLink.getTaskId())
+                            .candidateUserId(identityLink.getUserId())
+                            .candidateGroupId(identityLink.getGroupId())
+                            .build();
+                }
+                return null;
+            case PROCESS_CANCELLED:
+                return builder.type(TaskEventType.INSTANCE_DELETED).build();
+            default:
+                return null;
+        }
+    }
+
+    private static TaskLifecycleEvent task(TaskLifecycleEvent.TaskLifecycleEventBuilder builder, ActivitiEvent event) {
+        if (!(event instanceof ActivitiEntityEvent entityEvent) || !(entityEvent.getEntity() instanceof Task task)) {
+            return null;
+        }
+        return builder.taskId(task.getId())
+                .taskName(task.getName())
+                .assignee(task.getAssignee())
+                .processInstanceId(task.getProcessInstanceId())
+                .processDefinitionId(task.getProcessDefinitionId())
+                .build();
+    }
+}
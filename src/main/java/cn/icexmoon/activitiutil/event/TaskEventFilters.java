@@ -0,0 +1,86 @@
+package cn.icexmoon.activitiutil.event;
+
+import cn.icexmoon.activitiutil.identity.GroupMembershipIndex;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * @ClassName TaskEventFilters
+ * @Description 常用的事件过滤条件
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 下午6:00
+ * @Version 1.0
+ */
+public class TaskEventFilters {
+
+    /**
+     * 与指定用户相关的事件，见 {@link #forUser(String, GroupMembershipIndex)}，不考虑候选组
+     *
+     * @param userId 用户id
+     * @return 过滤条件
+     */
+    public static Predicate<TaskLifecycleEvent> forUser(String userId) {
+        return forUser(userId, null);
+    }
+
+    /**
+     * 与指定用户相关的事件：用户是委托人、新增的候选人或属于新增的候选组；
+     * 已通过过滤的任务，之后的事件（被其他人签收、完成）也会通过，以便订阅方移除对应任务；
+     * 流程实例删除事件总是通过。过滤条件会记录已通过的任务，每个订阅应使用新的实例
+     *
+     * @param userId               用户id
+     * @param groupMembershipIndex 用户所属组的索引，为 null 时不考虑候选组
+     * @return 过滤条件
+     */
+    public static Predicate<TaskLifecycleEvent> forUser(String userId, GroupMembershipIndex groupMembershipIndex) {
+        return new UserFilter(userId, groupMembershipIndex);
+    }
+
+    /**
+     * 指定流程定义的事件
+     *
+     * @param processDefinitionKey 流程定义 key
+     * @return 过滤条件
+     */
+    public static Predicate<TaskLifecycleEvent> forProcessDefinition(String processDefinitionKey) {
+        return event -> processDefinitionKey.equals(event.getProcessDefinitionKey());
+    }
+
+    private static class UserFilter implements Predicate<TaskLifecycleEvent> {
+        private final String userId;
+        private final GroupMembershipIndex groupMembershipIndex;
+        // 已通过过滤、尚未结束的任务id -> 流程实例id
+        private final Map<String, String> seenTasks = new HashMap<>();
+
+        UserFilter(String userId, GroupMembershipIndex groupMembershipIndex) {
+            this.userId = userId;
+            this.groupMembershipIndex = groupMembershipIndex;
+        }
+
+        @Override
+        public synchronized boolean test(TaskLifecycleEvent event) {
+            if (event.getType() == TaskEventType.INSTANCE_DELETED) {
+                seenTasks.values().removeIf(processInstanceId -> Objects.equals(processInstanceId, event.getProcessInstanceId()));
+                return true;
+            }
+            String taskId = event.getTaskId();
+            boolean seen = taskId != null && seenTasks.containsKey(taskId);
+            if (event.getType() == TaskEventType.COMPLETED) {
+                seenTasks.remove(taskId);
+                return seen || userId.equals(event.getAssignee());
+            }
+            boolean relevant = userId.equals(event.getAssignee())
+                    || userId.equals(event.getCandidateUserId())
+                    || (event.getCandidateGroupId() != null && groupMembershipIndex != null
+                    && groupMembershipIndex.isMemberOfAny(userId, List.of(event.getCandidateGroupId())));
+            if (relevant && taskId != null) {
+                seenTasks.put(taskId, event.getProcessInstanceId());
+            }
+            return relevant || seen;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package cn.icexmoon.activitiutil.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+
+/**
+ * @ClassName TaskEventSubscription
+ * @Description 事件总线的订阅，持有独立的读取游标，同一订阅应由单个线程消费
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 下午5:50
+ * @Version 1.0
+ */
+public class TaskEventSubscription implements AutoCloseable {
+    private final TaskEventBus bus;
+    private final Predicate<TaskLifecycleEvent> filter;
+    private final OverflowPolicy overflowPolicy;
+    // 下一个要读取的事件序号
+    private volatile long cursor;
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean closed;
+    // 在 poll(maxEvents, timeout, unit) 中等待新事件的线程
+    private volatile Thread waiter;
+    // BACKPRESSURE 订阅者本次落后期间发布方等待的截止时间（System.nanoTime），0 表示没有落后
+    private final AtomicLong backpressureDeadline = new AtomicLong();
+    private volatile boolean backpressureTimedOut;
+
+    TaskEventSubscription(TaskEventBus bus, Predicate<TaskLifecycleEvent> filter,
+                          OverflowPolicy overflowPolicy, long cursor) {
+        this.bus = bus;
+        this.filter = filter;
+        this.overflowPolicy = overflowPolicy;
+        this.cursor = cursor;
+    }
+
+    /**
+     * 读取已发布的事件，不阻塞
+     *
+     * @param maxEvents 最多读取的事件数（只计算通过过滤的事件）
+     * @return 事件列表，没有新事件时返回空列表
+     */
+    public synchronized List<TaskLifecycleEvent> poll(int maxEvents) {
+        List<TaskLifecycleEvent> events = new ArrayList<>();
+        while (events.size() < maxEvents && !closed) {
+            TaskLifecycleEvent event = bus.read(cursor);
+            if (event == null) {
+                // 尚未发布
+                break;
+            }
+            if (event.getSequence() != cursor) {
+                // 已被覆盖，跳到仍然有效的最旧事件
+                long oldest = bus.oldestAvailable();
+                dropped.addAndGet(oldest - cursor);
+                cursor = oldest;
+                continue;
+            }
+            cursor++;
+            if (filter == null || filter.test(event)) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    /**
+     * 读取事件，没有新事件时最多等待指定时间
+     *
+     * @param maxEvents 最多读取的事件数
+     * @param timeout   等待时间
+     * @param unit      时间单位
+     * @return 事件列表，超时时返回空列表
+     */
+    public List<TaskLifecycleEvent> poll(int maxEvents, long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        List<TaskLifecycleEvent> events = poll(maxEvents);
+        if (!events.isEmpty()) {
+            return events;
+        }
+        waiter = Thread.currentThread();
+        try {
+            while (true) {
+                // 登记等待后再读一次，登记之前发布的事件不会漏掉；之后发布的事件会唤醒本线程
+                events = poll(maxEvents);
+                long remaining = deadline - System.nanoTime();
+                if (!events.isEmpty() || closed || remaining <= 0) {
+                    return events;
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+        } finally {
+            waiter = null;
+        }
+    }
+
+    /**
+     * @return 因落后过多而丢弃的事件数
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return 尚未读取的事件数（包括会被过滤掉的事件）
+     */
+    public long getLag() {
+        return Math.max(0, bus.getPublished() - cursor);
+    }
+
+    /**
+     * 有事件发布或订阅关闭时唤醒等待的线程
+     */
+    void signal() {
+        Thread thread = waiter;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * @param candidate 没有落后记录时使用的截止时间
+     * @return 本次落后期间共享的截止时间
+     */
+    long backpressureDeadline(long candidate) {
+        backpressureDeadline.compareAndSet(0, candidate);
+        return backpressureDeadline.get();
+    }
+
+    void resetBackpressureDeadline() {
+        if (backpressureDeadline.get() != 0) {
+            backpressureDeadline.set(0);
+            backpressureTimedOut = false;
+        }
+    }
+
+    /**
+     * @return 是否是本次落后期间第一次超时
+     */
+    boolean markBackpressureTimedOut() {
+        if (backpressureTimedOut) {
+            return false;
+        }
+        backpressureTimedOut = true;
+        return true;
+    }
+
+    long getCursor() {
+        return cursor;
+    }
+
+    OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        bus.unsubscribe(this);
+        signal();
+    }
+}
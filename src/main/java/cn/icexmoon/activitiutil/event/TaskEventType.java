@@ -0,0 +1,21 @@
+package cn.icexmoon.activitiutil.event;
+
+/**
+ * @ClassName TaskEventType
+ * @Description 任务生命周期事件类型
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 下午5:40
+ * @Version 1.0
+ */
+public enum TaskEventType {
+    // 任务已创建
+    CREATED,
+    // 任务已指定委托人
+    ASSIGNED,
+    // 任务已添加候选人（或候选组）
+    CANDIDATE_ADDED,
+    // 任务已完成
+    COMPLETED,
+    // 流程实例已删除（比如被拒绝），其全部任务随之删除
+    INSTANCE_DELETED
+}
@@ -0,0 +1,39 @@
+package cn.icexmoon.activitiutil.event;
+
+import cn.icexmoon.activitiutil.ProcessDefinitionIds;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * @ClassName TaskLifecycleEvent
+ * @Description 任务生命周期事件（不可变）
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 下午5:42
+ * @Version 1.0
+ */
+@Value
+@Builder(toBuilder = true)
+public class TaskLifecycleEvent {
+    // 事件在总线中的序号，发布时分配
+    long sequence;
+    TaskEventType type;
+    long timestamp;
+    // INSTANCE_DELETED 事件为 null
+    String taskId;
+    String taskName;
+    String processInstanceId;
+    String processDefinitionId;
+    // 当前委托人
+    String assignee;
+    // CANDIDATE_ADDED 事件的候选人
+    String candidateUserId;
+    // CANDIDATE_ADDED 事件的候选组
+    String candidateGroupId;
+
+    /**
+     * @return 流程定义 key
+     */
+    public String getProcessDefinitionKey() {
+        return ProcessDefinitionIds.toProcessDefinitionKey(processDefinitionId);
+    }
+}
@@ -0,0 +1,109 @@
+package cn.icexmoon.activitiutil.id;
+
+import org.activiti.engine.impl.cfg.IdGenerator;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @ClassName SnowflakeIdGenerator
+ * @Description 无锁、不访问数据库的 ID 生成器（时间戳 + 节点ID + 序列号），用于替换引擎默认的 DbIdGenerator
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 上午9:12
+ * @Version 1.0
+ */
+public class SnowflakeIdGenerator implements IdGenerator {
+    /**
+     * 时间戳起点：2025-01-01 00:00:00 UTC
+     */
+    public static final long DEFAULT_EPOCH = 1735689600000L;
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    public static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    /**
+     * Long.MAX_VALUE 的十进制位数，生成的 ID 左补零到该长度，保证字符串顺序与数值顺序一致
+     */
+    private static final int ID_LENGTH = 19;
+
+    private final long nodeId;
+    private final long epoch;
+    /**
+     * 高位为相对时间戳，低位为序列号，通过 CAS 整体推进
+     */
+    private final AtomicLong state = new AtomicLong();
+
+    public SnowflakeIdGenerator(long nodeId) {
+        this(nodeId, DEFAULT_EPOCH);
+    }
+
+    public SnowflakeIdGenerator(long nodeId, long epoch) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new RuntimeException("节点ID必须在 0~%d 之间，当前为 %d".formatted(MAX_NODE_ID, nodeId));
+        }
+        if (epoch > System.currentTimeMillis()) {
+            throw new RuntimeException("时间戳起点不能晚于当前时间");
+        }
+        this.nodeId = nodeId;
+        this.epoch = epoch;
+    }
+
+    @Override
+    public String getNextId() {
+        long id = nextLongId();
+        String str = Long.toString(id);
+        if (str.length() >= ID_LENGTH) {
+            return str;
+        }
+        return "0".repeat(ID_LENGTH - str.length()) + str;
+    }
+
+    /**
+     * 生成数值形式的 ID，同一节点内严格单调递增
+     *
+     * @return ID
+     */
+    public long nextLongId() {
+        while (true) {
+            long current = state.get();
+            long lastTimestamp = current >>> SEQUENCE_BITS;
+            long now = System.currentTimeMillis() - epoch;
+            long next;
+            if (now > lastTimestamp) {
+                next = now << SEQUENCE_BITS;
+            } else {
+                // 同一毫秒内或时钟回拨：沿用上次的时间戳继续递增，
+                // 序列号溢出时自然进位到下一毫秒，不等待、不加锁
+                next = current + 1;
+            }
+            if (state.compareAndSet(current, next)) {
+                long timestamp = next >>> SEQUENCE_BITS;
+                long sequence = next & SEQUENCE_MASK;
+                return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+            }
+        }
+    }
+
+    public long getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * 从 ID 中解析出生成时间
+     *
+     * @param id 由本生成器生成的 ID
+     * @return 生成时间（毫秒时间戳）
+     */
+    public long parseTimestamp(String id) {
+        return (Long.parseLong(id) >>> (NODE_BITS + SEQUENCE_BITS)) + epoch;
+    }
+
+    /**
+     * 从 ID 中解析出节点ID
+     *
+     * @param id 由本生成器生成的 ID
+     * @return 节点ID
+     */
+    public static long parseNodeId(String id) {
+        return (Long.parseLong(id) >>> SEQUENCE_BITS) & MAX_NODE_ID;
+    }
+}
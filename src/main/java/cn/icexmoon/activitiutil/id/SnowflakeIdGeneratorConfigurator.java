@@ -0,0 +1,58 @@
+package cn.icexmoon.activitiutil.id;
+
+import lombok.extern.slf4j.Slf4j;
+import org.activiti.engine.cfg.ProcessEngineConfigurator;
+import org.activiti.engine.impl.cfg.ProcessEngineConfigurationImpl;
+
+/**
+ * @ClassName SnowflakeIdGeneratorConfigurator
+ * @Description 在引擎初始化前安装 SnowflakeIdGenerator
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 上午9:40
+ * @Version 1.0
+ */
+@Slf4j
+public class SnowflakeIdGeneratorConfigurator implements ProcessEngineConfigurator {
+    private final SnowflakeIdGenerator idGenerator;
+
+    public SnowflakeIdGeneratorConfigurator(long nodeId) {
+        this(new SnowflakeIdGenerator(nodeId));
+    }
+
+    public SnowflakeIdGeneratorConfigurator(SnowflakeIdGenerator idGenerator) {
+        this.idGenerator = idGenerator;
+    }
+
+    /**
+     * 直接为引擎配置安装 ID 生成器，需要在构建引擎（buildProcessEngine）之前调用
+     *
+     * @param configuration 引擎配置
+     * @param nodeId        节点ID，集群中每个节点必须唯一
+     * @return 已安装的 ID 生成器
+     */
+    public static SnowflakeIdGenerator install(ProcessEngineConfigurationImpl configuration, long nodeId) {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(nodeId);
+        configuration.setIdGenerator(generator);
+        return generator;
+    }
+
+    @Override
+    public void beforeInit(ProcessEngineConfigurationImpl processEngineConfiguration) {
+        // 必须在 initIdGenerator 之前设置，否则引擎会使用默认的 DbIdGenerator
+        processEngineConfiguration.setIdGenerator(idGenerator);
+        log.info("已安装 SnowflakeIdGenerator，节点ID[%d]".formatted(idGenerator.getNodeId()));
+    }
+
+    @Override
+    public void configure(ProcessEngineConfigurationImpl processEngineConfiguration) {
+    }
+
+    @Override
+    public int getPriority() {
+        return 0;
+    }
+
+    public SnowflakeIdGenerator getIdGenerator() {
+        return idGenerator;
+    }
+}
@@ -0,0 +1,108 @@
+package cn.icexmoon.activitiutil.identity;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @ClassName GroupMembershipIndex
+ * @Description 用户 -> 所属组的内存索引，带过期时间和显式失效，使候选组的权限判断只需在内存中比较集合
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 下午9:15
+ * @Version 1.0
+ */
+public class GroupMembershipIndex {
+    public static final Duration DEFAULT_TTL = Duration.ofMinutes(5);
+    private final GroupMembershipProvider provider;
+    private final long ttlMillis;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public GroupMembershipIndex(GroupMembershipProvider provider) {
+        this(provider, DEFAULT_TTL);
+    }
+
+    /**
+     * @param provider 所属组的数据来源
+     * @param ttl      缓存有效期
+     */
+    public GroupMembershipIndex(GroupMembershipProvider provider, Duration ttl) {
+        this.provider = provider;
+        this.ttlMillis = ttl.toMillis();
+    }
+
+    /**
+     * 获取用户所属的组，缓存未命中或过期时从数据来源加载
+     *
+     * @param userId 用户id
+     * @return 不可修改的组id集合
+     */
+    public Set<String> getGroups(String userId) {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(userId);
+        if (entry != null && entry.expiresAt > now) {
+            hits.incrementAndGet();
+            return entry.groups;
+        }
+        misses.incrementAndGet();
+        Collection<String> groups = provider.getGroups(userId);
+        Set<String> copy = groups == null || groups.isEmpty() ? Collections.emptySet() : Set.copyOf(groups);
+        entries.put(userId, new Entry(copy, now + ttlMillis));
+        return copy;
+    }
+
+    /**
+     * 用户是否属于任意一个指定的组
+     *
+     * @param userId   用户id
+     * @param groupIds 组id集合
+     * @return 是否属于
+     */
+    public boolean isMemberOfAny(String userId, Collection<String> groupIds) {
+        if (groupIds == null || groupIds.isEmpty()) {
+            return false;
+        }
+        Set<String> groups = getGroups(userId);
+        for (String groupId : groupIds) {
+            if (groups.contains(groupId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 用户的所属组发生变化时调用
+     *
+     * @param userId 用户id
+     */
+    public void invalidate(String userId) {
+        entries.remove(userId);
+    }
+
+    /**
+     * 组织架构整体调整时调用
+     */
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private record Entry(Set<String> groups, long expiresAt) {
+    }
+}
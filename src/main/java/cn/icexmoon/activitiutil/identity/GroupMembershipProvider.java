@@ -0,0 +1,21 @@
+package cn.icexmoon.activitiutil.identity;
+
+import java.util.Collection;
+
+/**
+ * @ClassName GroupMembershipProvider
+ * @Description 用户所属组的数据来源，由使用方实现（比如组织架构服务、Spring Security 的 UserGroupManager）
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 下午9:10
+ * @Version 1.0
+ */
+@FunctionalInterface
+public interface GroupMembershipProvider {
+    /**
+     * 查询用户所属的组
+     *
+     * @param userId 用户id
+     * @return 组id集合，没有时返回空集合
+     */
+    Collection<String> getGroups(String userId);
+}
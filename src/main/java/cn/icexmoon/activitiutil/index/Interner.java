@@ -0,0 +1,57 @@
+package cn.icexmoon.activitiutil.index;
+
+import java.util.Arrays;
+
+/**
+ * @ClassName Interner
+ * @Description 把低基数的字符串（用户、组、任务名称、流程定义 key）映射为连续的 int，只增不减
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 下午10:15
+ * @Version 1.0
+ */
+class Interner {
+    private final StringIntMap ids = new StringIntMap(256);
+    private String[] values = new String[256];
+    private int size;
+
+    /**
+     * @return 字符串对应的 int，不存在时分配一个新的
+     */
+    int intern(String value) {
+        int id = ids.get(value);
+        if (id != StringIntMap.MISSING) {
+            return id;
+        }
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        id = size++;
+        values[id] = value;
+        ids.put(value, id);
+        return id;
+    }
+
+    /**
+     * @return 字符串对应的 int，不存在时返回 -1
+     */
+    int find(String value) {
+        return value == null ? StringIntMap.MISSING : ids.get(value);
+    }
+
+    String get(int id) {
+        return id < 0 ? null : values[id];
+    }
+
+    int size() {
+        return size;
+    }
+
+    long estimateBytes() {
+        long bytes = ids.estimateBytes() + (long) values.length * 4;
+        for (int i = 0; i < size; i++) {
+            // 字符串对象头 + 数组头 + 内容（按 Latin-1/UTF-16 粗略估计）
+            bytes += 40 + values[i].length() * 2L;
+        }
+        return bytes;
+    }
+}
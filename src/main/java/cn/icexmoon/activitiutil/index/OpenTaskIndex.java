@@ -0,0 +1,398 @@
+package cn.icexmoon.activitiutil.index;
+
+import cn.icexmoon.activitiutil.ProcessDefinitionIds;
+import cn.icexmoon.activitiutil.identity.GroupMembershipIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.activiti.engine.ManagementService;
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.delegate.event.ActivitiEntityEvent;
+import org.activiti.engine.delegate.event.ActivitiEvent;
+import org.activiti.engine.delegate.event.ActivitiEventListener;
+import org.activiti.engine.delegate.event.ActivitiEventType;
+import org.activiti.engine.impl.cfg.TransactionContext;
+import org.activiti.engine.impl.cfg.TransactionState;
+import org.activiti.engine.impl.context.Context;
+import org.activiti.engine.impl.persistence.entity.IdentityLinkEntity;
+import org.activiti.engine.task.IdentityLink;
+import org.activiti.engine.task.Task;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * @ClassName OpenTaskIndex
+ * @Description 开放任务的紧凑内存索引。监听引擎事件在事务提交后增量维护，定期与数据库对账，
+ * 使“用户可完成的任务”查询不再访问数据库
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 下午11:05
+ * @Version 1.0
+ */
+@Slf4j
+public class OpenTaskIndex implements ActivitiEventListener, AutoCloseable {
+    private static final ActivitiEventType[] EVENT_TYPES = {
+            ActivitiEventType.ENTITY_CREATED,
+            ActivitiEventType.ENTITY_UPDATED,
+            ActivitiEventType.ENTITY_DELETED,
+            ActivitiEventType.TASK_CREATED,
+            ActivitiEventType.TASK_ASSIGNED,
+            ActivitiEventType.TASK_COMPLETED
+    };
+
+    private final ProcessEngine processEngine;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private OpenTaskIndexState state = new OpenTaskIndexState();
+    // 对账期间到达的事件，对账结束时重放到新数据上
+    private List<Consumer<OpenTaskIndexState>> pending;
+    private GroupMembershipIndex groupMembershipIndex;
+    private ScheduledExecutorService scheduler;
+    private final AtomicLong appliedEvents = new AtomicLong();
+    private volatile long lastApplyLagMillis;
+    private volatile long maxApplyLagMillis;
+    private volatile Date lastReconcileTime;
+    private volatile int lastReconcileDrift;
+
+    public OpenTaskIndex(ProcessEngine processEngine) {
+        this.processEngine = processEngine;
+    }
+
+    /**
+     * 设置用户所属组的索引，设置后查询会包含候选组为用户所属组的任务
+     *
+     * @param groupMembershipIndex 组成员索引
+     */
+    public void setGroupMembershipIndex(GroupMembershipIndex groupMembershipIndex) {
+        this.groupMembershipIndex = groupMembershipIndex;
+    }
+
+    /**
+     * 注册为引擎的事件监听器，并从数据库加载全部开放任务
+     *
+     * @return 索引本身
+     */
+    public OpenTaskIndex register() {
+        // 先注册监听器再对账，加载期间提交的变更会被重放，不会丢失
+        processEngine.getRuntimeService().addEventListener(this, EVENT_TYPES);
+        reconcile();
+        return this;
+    }
+
+    /**
+     * 定期与数据库对账，修正因进程重启、监听器异常等原因产生的偏差
+     *
+     * @param period 对账周期
+     */
+    public synchronized void start(Duration period) {
+        if (scheduler != null) {
+            throw new RuntimeException("定期对账已经启动");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "open-task-index-reconcile");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = period.toMillis();
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                reconcile();
+            } catch (RuntimeException e) {
+                log.error("开放任务索引对账失败", e);
+            }
+        }, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        processEngine.getRuntimeService().removeEventListener(this);
+    }
+
+    /**
+     * 查询用户可以完成的任务，语义同 ActivitiUtils.listCompletableTask
+     *
+     * @param userId 用户id
+     * @return 任务列表
+     */
+    public List<OpenTaskRef> listTasks(String userId) {
+        return listTasks(userId, null);
+    }
+
+    /**
+     * 查询用户可以完成的任务，语义同 ActivitiUtils.listCompletableTask
+     *
+     * @param userId               用户id
+     * @param processDefinitionKey 流程定义 key，为 null 时不限制
+     * @return 任务列表
+     */
+    public List<OpenTaskRef> listTasks(String userId, String processDefinitionKey) {
+        Set<String> groups = groupMembershipIndex == null ? null : groupMembershipIndex.getGroups(userId);
+        lock.readLock().lock();
+        try {
+            int[] slots = state.query(userId, groups, processDefinitionKey);
+            List<OpenTaskRef> result = new ArrayList<>(slots.length);
+            for (int slot : slots) {
+                result.add(toRef(state, slot));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 从数据库重新加载全部开放任务并替换内存数据
+     *
+     * @return 偏差数，即索引与数据库不一致的任务数
+     */
+    public int reconcile() {
+        lock.writeLock().lock();
+        try {
+            if (pending != null) {
+                // 已有对账在进行
+                return 0;
+            }
+            pending = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        OpenTaskIndexState loaded;
+        try {
+            loaded = load();
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                pending = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+        lock.writeLock().lock();
+        try {
+            for (Consumer<OpenTaskIndexState> op : pending) {
+                op.accept(loaded);
+            }
+            pending = null;
+            int drift = drift(state, loaded);
+            state = loaded;
+            lastReconcileTime = new Date();
+            lastReconcileDrift = drift;
+            if (drift > 0) {
+                log.warn("开放任务索引与数据库存在%d个任务的偏差，已修正".formatted(drift));
+            }
+            return drift;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onEvent(ActivitiEvent event) {
+        Consumer<OpenTaskIndexState> op = convert(event);
+        if (op == null) {
+            return;
+        }
+        long firedAt = System.currentTimeMillis();
+        TransactionContext transactionContext = Context.getTransactionContext();
+        if (transactionContext == null) {
+            apply(op, firedAt);
+        } else {
+            // 事务回滚时不修改索引
+            transactionContext.addTransactionListener(TransactionState.COMMITTED, commandContext -> apply(op, firedAt));
+        }
+    }
+
+    @Override
+    public boolean isFailOnException() {
+        // 索引偏差由对账修正，不应影响流程执行
+        return false;
+    }
+
+    /**
+     * @return 开放任务数
+     */
+    public int getOpenTaskCount() {
+        lock.readLock().lock();
+        try {
+            return state.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return 粗略估计的堆内存占用（字节）
+     */
+    public long estimateMemoryBytes() {
+        lock.readLock().lock();
+        try {
+            return state.estimateBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return 已应用的事件数
+     */
+    public long getAppliedEvents() {
+        return appliedEvents.get();
+    }
+
+    /**
+     * @return 最近一个事件从触发到应用到索引的耗时（毫秒），主要是所在事务的剩余执行时间
+     */
+    public long getLastApplyLagMillis() {
+        return lastApplyLagMillis;
+    }
+
+    public long getMaxApplyLagMillis() {
+        return maxApplyLagMillis;
+    }
+
+    /**
+     * @return 最近一次对账完成的时间，尚未对账时返回 null
+     */
+    public Date getLastReconcileTime() {
+        return lastReconcileTime;
+    }
+
+    /**
+     * @return 最近一次对账发现的偏差任务数
+     */
+    public int getLastReconcileDrift() {
+        return lastReconcileDrift;
+    }
+
+    private void apply(Consumer<OpenTaskIndexState> op, long firedAt) {
+        lock.writeLock().lock();
+        try {
+            op.accept(state);
+            if (pending != null) {
+                pending.add(op);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        appliedEvents.incrementAndGet();
+        long lag = System.currentTimeMillis() - firedAt;
+        lastApplyLagMillis = lag;
+        if (lag > maxApplyLagMillis) {
+            maxApplyLagMillis = lag;
+        }
+    }
+
+    /**
+     * 把引擎事件转换为对索引的修改，事件中的实体在提交前可能还会变化，所以这里先取出需要的字段
+     */
+    private static Consumer<OpenTaskIndexState> convert(ActivitiEvent event) {
+        if (!(event instanceof ActivitiEntityEvent entityEvent)) {
+            return null;
+        }
+        Object entity = entityEvent.getEntity();
+        if (entity instanceof Task task) {
+            String taskId = task.getId();
+            switch (event.getType()) {
+                case ENTITY_CREATED:
+                case ENTITY_UPDATED:
+                case TASK_CREATED: {
+                    String name = task.getName();
+                    String processInstanceId = task.getProcessInstanceId();
+                    String processDefinitionKey = ProcessDefinitionIds.toProcessDefinitionKey(task.getProcessDefinitionId());
+                    String assignee = task.getAssignee();
+                    return s -> s.upsertTask(taskId, name, processInstanceId, processDefinitionKey, assignee);
+                }
+                case TASK_ASSIGNED: {
+                    String assignee = task.getAssignee();
+                    return s -> s.setAssignee(taskId, assignee);
+                }
+                case TASK_COMPLETED:
+                case ENTITY_DELETED:
+                    return s -> s.removeTask(taskId);
+                default:
+                    return null;
+            }
+        }
+        if (entity instanceof IdentityLink identityLink
+                && identityLink.getTaskId() != null
+                && "candidate".equals(identityLink.getType())) {
+            String taskId = identityLink.getTaskId();
+            String userId = identityLink.getUserId();
+            String groupId = identityLink.getGroupId();
+            switch (event.getType()) {
+                case ENTITY_CREATED:
+                    return s -> s.addCandidate(taskId, userId, groupId);
+                case ENTITY_DELETED:
+                    return s -> s.removeCandidate(taskId, userId, groupId);
+                default:
+                    return null;
+            }
+        }
+        return null;
+    }
+
+    private OpenTaskIndexState load() {
+        ManagementService managementService = processEngine.getManagementService();
+        String taskTable = managementService.getTableName(Task.class);
+        String identityLinkTable = managementService.getTableName(IdentityLinkEntity.class);
+        DataSource dataSource = processEngine.getProcessEngineConfiguration().getDataSource();
+        OpenTaskIndexState loaded = new OpenTaskIndexState();
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            // 只读取索引需要的列，不经过 MyBatis 构造完整的任务实体
+            try (ResultSet rs = statement.executeQuery(
+                    "SELECT ID_, NAME_, ASSIGNEE_, PROC_INST_ID_, PROC_DEF_ID_ FROM " + taskTable)) {
+                while (rs.next()) {
+                    loaded.upsertTask(rs.getString(1), rs.getString(2), rs.getString(4),
+                            ProcessDefinitionIds.toProcessDefinitionKey(rs.getString(5)), rs.getString(3));
+                }
+            }
+            try (ResultSet rs = statement.executeQuery("SELECT TASK_ID_, USER_ID_, GROUP_ID_ FROM " + identityLinkTable
+                    + " WHERE TASK_ID_ IS NOT NULL AND TYPE_ = 'candidate'")) {
+                while (rs.next()) {
+                    loaded.addCandidate(rs.getString(1), rs.getString(2), rs.getString(3));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("加载开放任务失败", e);
+        }
+        return loaded;
+    }
+
+    /**
+     * 比较两份数据，统计只在一方存在或委托人不同的任务数
+     */
+    private static int drift(OpenTaskIndexState current, OpenTaskIndexState loaded) {
+        int drift = 0;
+        for (int slot : current.allSlots()) {
+            String taskId = current.getTaskId(slot);
+            if (!loaded.hasTask(taskId) || !Objects.equals(current.getAssignee(slot), loaded.getAssignee(taskId))) {
+                drift++;
+            }
+        }
+        for (int slot : loaded.allSlots()) {
+            if (!current.hasTask(loaded.getTaskId(slot))) {
+                drift++;
+            }
+        }
+        return drift;
+    }
+
+    private static OpenTaskRef toRef(OpenTaskIndexState state, int slot) {
+        return new OpenTaskRef(state.getTaskId(slot), state.getTaskName(slot), state.getProcessInstanceId(slot),
+                state.getProcessDefinitionKey(slot), state.getAssignee(slot));
+    }
+}
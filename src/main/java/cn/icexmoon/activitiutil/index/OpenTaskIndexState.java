@@ -0,0 +1,378 @@
+package cn.icexmoon.activitiutil.index;
+
+import java.util.Arrays;
+
+/**
+ * @ClassName OpenTaskIndexState
+ * @Description 开放任务索引的数据部分：任务按槽位保存在并列的基本类型数组中，用户和组各有一组倒排列表（槽位的 int 数组）。
+ * 非线程安全，由 OpenTaskIndex 加锁访问
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 下午10:30
+ * @Version 1.0
+ */
+class OpenTaskIndexState {
+    private static final int NONE = -1;
+    private static final int[] EMPTY = new int[0];
+
+    private final Interner users = new Interner();
+    private final Interner groups = new Interner();
+    private final Interner names = new Interner();
+    private final Interner definitionKeys = new Interner();
+    // 任务id -> 槽位
+    private final StringIntMap slots = new StringIntMap(1024);
+
+    private String[] taskIds = new String[1024];
+    private String[] processInstanceIds = new String[1024];
+    private int[] taskNames = new int[1024];
+    private int[] taskDefinitionKeys = new int[1024];
+    private int[] assignees = new int[1024];
+    private int[][] candidateUsers = new int[1024][];
+    private int[] candidateUserCounts = new int[1024];
+    private int[][] candidateGroups = new int[1024][];
+    private int[] candidateGroupCounts = new int[1024];
+    // 已释放的槽位
+    private int[] freeSlots = new int[64];
+    private int freeCount;
+    // 从未使用过的最小槽位
+    private int highWater;
+
+    // 用户/组 -> 槽位列表
+    private int[][] userPostings = new int[256][];
+    private int[] userPostingSizes = new int[256];
+    private int[][] groupPostings = new int[64][];
+    private int[] groupPostingSizes = new int[64];
+
+    /**
+     * 新增或更新任务的基本信息（不影响候选人）
+     */
+    void upsertTask(String taskId, String name, String processInstanceId, String processDefinitionKey, String assignee) {
+        int slot = slots.get(taskId);
+        if (slot == StringIntMap.MISSING) {
+            slot = allocate();
+            slots.put(taskId, slot);
+            taskIds[slot] = taskId;
+            assignees[slot] = NONE;
+            candidateUsers[slot] = EMPTY;
+            candidateUserCounts[slot] = 0;
+            candidateGroups[slot] = EMPTY;
+            candidateGroupCounts[slot] = 0;
+        }
+        processInstanceIds[slot] = processInstanceId;
+        taskNames[slot] = name == null ? NONE : names.intern(name);
+        taskDefinitionKeys[slot] = processDefinitionKey == null ? NONE : definitionKeys.intern(processDefinitionKey);
+        setAssignee(slot, assignee == null ? NONE : users.intern(assignee));
+    }
+
+    /**
+     * 修改任务的委托人，任务不存在时忽略
+     */
+    void setAssignee(String taskId, String assignee) {
+        int slot = slots.get(taskId);
+        if (slot != StringIntMap.MISSING) {
+            setAssignee(slot, assignee == null ? NONE : users.intern(assignee));
+        }
+    }
+
+    void addCandidate(String taskId, String userId, String groupId) {
+        int slot = slots.get(taskId);
+        if (slot == StringIntMap.MISSING) {
+            return;
+        }
+        if (userId != null) {
+            int user = users.intern(userId);
+            if (!contains(candidateUsers[slot], candidateUserCounts[slot], user)) {
+                boolean linked = assignees[slot] == user;
+                candidateUsers[slot] = append(candidateUsers[slot], candidateUserCounts[slot]++, user);
+                if (!linked) {
+                    userPostings = addPosting(userPostings, user, slot, true);
+                }
+            }
+        }
+        if (groupId != null) {
+            int group = groups.intern(groupId);
+            if (!contains(candidateGroups[slot], candidateGroupCounts[slot], group)) {
+                candidateGroups[slot] = append(candidateGroups[slot], candidateGroupCounts[slot]++, group);
+                groupPostings = addPosting(groupPostings, group, slot, false);
+            }
+        }
+    }
+
+    void removeCandidate(String taskId, String userId, String groupId) {
+        int slot = slots.get(taskId);
+        if (slot == StringIntMap.MISSING) {
+            return;
+        }
+        int user = users.find(userId);
+        if (user != NONE && removeValue(candidateUsers[slot], candidateUserCounts[slot], user)) {
+            candidateUserCounts[slot]--;
+            if (assignees[slot] != user) {
+                removePosting(userPostings, userPostingSizes, user, slot);
+            }
+        }
+        int group = groups.find(groupId);
+        if (group != NONE && removeValue(candidateGroups[slot], candidateGroupCounts[slot], group)) {
+            candidateGroupCounts[slot]--;
+            removePosting(groupPostings, groupPostingSizes, group, slot);
+        }
+    }
+
+    void removeTask(String taskId) {
+        int slot = slots.remove(taskId);
+        if (slot == StringIntMap.MISSING) {
+            return;
+        }
+        setAssignee(slot, NONE);
+        for (int i = 0; i < candidateUserCounts[slot]; i++) {
+            removePosting(userPostings, userPostingSizes, candidateUsers[slot][i], slot);
+        }
+        for (int i = 0; i < candidateGroupCounts[slot]; i++) {
+            removePosting(groupPostings, groupPostingSizes, candidateGroups[slot][i], slot);
+        }
+        taskIds[slot] = null;
+        processInstanceIds[slot] = null;
+        candidateUsers[slot] = EMPTY;
+        candidateUserCounts[slot] = 0;
+        candidateGroups[slot] = EMPTY;
+        candidateGroupCounts[slot] = 0;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    /**
+     * 查询用户可以完成的任务，语义与 TaskQuery.taskCandidateOrAssigned 相同：
+     * 委托人是该用户，或者没有委托人且该用户（或其所属组）是候选人
+     *
+     * @param userId               用户id
+     * @param groupIds             用户所属的组，可以为 null
+     * @param processDefinitionKey 流程定义 key，为 null 时不限制
+     * @return 升序排列的槽位
+     */
+    int[] query(String userId, Iterable<String> groupIds, String processDefinitionKey) {
+        int definition = NONE;
+        if (processDefinitionKey != null) {
+            definition = definitionKeys.find(processDefinitionKey);
+            if (definition == NONE) {
+                return EMPTY;
+            }
+        }
+        int[] result = EMPTY;
+        int count = 0;
+        int user = users.find(userId);
+        if (user != NONE && user < userPostings.length && userPostings[user] != null) {
+            int[] postings = userPostings[user];
+            for (int i = 0; i < userPostingSizes[user]; i++) {
+                int slot = postings[i];
+                // 倒排列表中的任务要么由该用户委托，要么该用户是候选人
+                if ((assignees[slot] == user || assignees[slot] == NONE) && matches(slot, definition)) {
+                    result = append(result, count++, slot);
+                }
+            }
+        }
+        if (groupIds != null) {
+            for (String groupId : groupIds) {
+                int group = groups.find(groupId);
+                if (group == NONE || group >= groupPostings.length || groupPostings[group] == null) {
+                    continue;
+                }
+                int[] postings = groupPostings[group];
+                for (int i = 0; i < groupPostingSizes[group]; i++) {
+                    int slot = postings[i];
+                    if (assignees[slot] == NONE && matches(slot, definition)) {
+                        result = append(result, count++, slot);
+                    }
+                }
+            }
+        }
+        Arrays.sort(result, 0, count);
+        // 去重（同一任务可能同时通过候选人和候选组命中）
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || result[unique - 1] != result[i]) {
+                result[unique++] = result[i];
+            }
+        }
+        return Arrays.copyOf(result, unique);
+    }
+
+    boolean hasTask(String taskId) {
+        return slots.get(taskId) != StringIntMap.MISSING;
+    }
+
+    /**
+     * @return 任务的委托人，任务不存在时返回 null
+     */
+    String getAssignee(String taskId) {
+        int slot = slots.get(taskId);
+        return slot == StringIntMap.MISSING ? null : users.get(assignees[slot]);
+    }
+
+    String getTaskId(int slot) {
+        return taskIds[slot];
+    }
+
+    String getTaskName(int slot) {
+        return names.get(taskNames[slot]);
+    }
+
+    String getProcessInstanceId(int slot) {
+        return processInstanceIds[slot];
+    }
+
+    String getProcessDefinitionKey(int slot) {
+        return definitionKeys.get(taskDefinitionKeys[slot]);
+    }
+
+    String getAssignee(int slot) {
+        return users.get(assignees[slot]);
+    }
+
+    /**
+     * @return 全部开放任务的槽位
+     */
+    int[] allSlots() {
+        int[] result = new int[slots.size()];
+        int count = 0;
+        for (int slot = 0; slot < highWater; slot++) {
+            if (taskIds[slot] != null) {
+                result[count++] = slot;
+            }
+        }
+        return result;
+    }
+
+    int size() {
+        return slots.size();
+    }
+
+    /**
+     * 粗略估计占用的堆内存（字节）
+     */
+    long estimateBytes() {
+        long bytes = slots.estimateBytes() + users.estimateBytes() + groups.estimateBytes()
+                + names.estimateBytes() + definitionKeys.estimateBytes();
+        // 并列数组：2 个引用数组 + 6 个 int/引用数组
+        bytes += (long) taskIds.length * 4 * 8;
+        for (int slot = 0; slot < highWater; slot++) {
+            if (taskIds[slot] != null) {
+                // 任务id、流程实例id字符串
+                int instanceIdLength = processInstanceIds[slot] == null ? 0 : processInstanceIds[slot].length();
+                bytes += 80 + (taskIds[slot].length() + instanceIdLength) * 2L;
+            }
+            bytes += 16L * 2 + (candidateUsers[slot] == null ? 0 : candidateUsers[slot].length * 4L)
+                    + (candidateGroups[slot] == null ? 0 : candidateGroups[slot].length * 4L);
+        }
+        bytes += postingBytes(userPostings) + postingBytes(groupPostings) + freeSlots.length * 4L;
+        return bytes;
+    }
+
+    private boolean matches(int slot, int definition) {
+        return definition == NONE || taskDefinitionKeys[slot] == definition;
+    }
+
+    private void setAssignee(int slot, int user) {
+        int old = assignees[slot];
+        if (old == user) {
+            return;
+        }
+        boolean newUserLinked = user != NONE && contains(candidateUsers[slot], candidateUserCounts[slot], user);
+        assignees[slot] = user;
+        if (old != NONE && !contains(candidateUsers[slot], candidateUserCounts[slot], old)) {
+            removePosting(userPostings, userPostingSizes, old, slot);
+        }
+        if (user != NONE && !newUserLinked) {
+            userPostings = addPosting(userPostings, user, slot, true);
+        }
+    }
+
+    private int allocate() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (highWater == taskIds.length) {
+            int capacity = taskIds.length * 2;
+            taskIds = Arrays.copyOf(taskIds, capacity);
+            processInstanceIds = Arrays.copyOf(processInstanceIds, capacity);
+            taskNames = Arrays.copyOf(taskNames, capacity);
+            taskDefinitionKeys = Arrays.copyOf(taskDefinitionKeys, capacity);
+            assignees = Arrays.copyOf(assignees, capacity);
+            candidateUsers = Arrays.copyOf(candidateUsers, capacity);
+            candidateUserCounts = Arrays.copyOf(candidateUserCounts, capacity);
+            candidateGroups = Arrays.copyOf(candidateGroups, capacity);
+            candidateGroupCounts = Arrays.copyOf(candidateGroupCounts, capacity);
+        }
+        return highWater++;
+    }
+
+    private int[][] addPosting(int[][] postings, int key, int slot, boolean user) {
+        if (key >= postings.length) {
+            int capacity = Math.max(postings.length * 2, key + 1);
+            postings = Arrays.copyOf(postings, capacity);
+            if (user) {
+                userPostingSizes = Arrays.copyOf(userPostingSizes, capacity);
+            } else {
+                groupPostingSizes = Arrays.copyOf(groupPostingSizes, capacity);
+            }
+        }
+        int[] sizes = user ? userPostingSizes : groupPostingSizes;
+        if (postings[key] == null) {
+            postings[key] = new int[4];
+        }
+        postings[key] = append(postings[key], sizes[key]++, slot);
+        return postings;
+    }
+
+    private static void removePosting(int[][] postings, int[] sizes, int key, int slot) {
+        if (key >= postings.length || postings[key] == null) {
+            return;
+        }
+        int[] list = postings[key];
+        for (int i = 0; i < sizes[key]; i++) {
+            if (list[i] == slot) {
+                list[i] = list[--sizes[key]];
+                return;
+            }
+        }
+    }
+
+    private static int[] append(int[] array, int size, int value) {
+        if (size == array.length) {
+            array = Arrays.copyOf(array, Math.max(4, size * 2));
+        }
+        array[size] = value;
+        return array;
+    }
+
+    private static boolean contains(int[] array, int size, int value) {
+        for (int i = 0; i < size; i++) {
+            if (array[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 删除数组中的一个值（用最后一个元素填补），调用方负责减少计数
+     */
+    private static boolean removeValue(int[] array, int size, int value) {
+        for (int i = 0; i < size; i++) {
+            if (array[i] == value) {
+                array[i] = array[size - 1];
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long postingBytes(int[][] postings) {
+        long bytes = postings.length * 4L;
+        for (int[] list : postings) {
+            if (list != null) {
+                bytes += 16 + list.length * 4L;
+            }
+        }
+        return bytes;
+    }
+}
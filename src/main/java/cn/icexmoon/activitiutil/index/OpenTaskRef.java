@@ -0,0 +1,15 @@
+package cn.icexmoon.activitiutil.index;
+
+/**
+ * @ClassName OpenTaskRef
+ * @Description 开放任务索引中的任务摘要
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 下午11:00
+ * @Version 1.0
+ */
+public record OpenTaskRef(String taskId,
+                          String taskName,
+                          String processInstanceId,
+                          String processDefinitionKey,
+                          String assignee) {
+}
@@ -0,0 +1,103 @@
+package cn.icexmoon.activitiutil.index;
+
+/**
+ * @ClassName StringIntMap
+ * @Description String -> int 的开放寻址哈希表（线性探测，删除时后移），避免 HashMap 的装箱和 Entry 对象开销
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 下午10:05
+ * @Version 1.0
+ */
+class StringIntMap {
+    static final int MISSING = -1;
+    private String[] keys;
+    private int[] values;
+    private int size;
+
+    StringIntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2) - 1) << 1;
+        keys = new String[capacity];
+        values = new int[capacity];
+    }
+
+    int get(String key) {
+        int mask = keys.length - 1;
+        for (int i = hash(key) & mask; keys[i] != null; i = (i + 1) & mask) {
+            if (keys[i].equals(key)) {
+                return values[i];
+            }
+        }
+        return MISSING;
+    }
+
+    void put(String key, int value) {
+        if ((size + 1) * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        for (; keys[i] != null; i = (i + 1) & mask) {
+            if (keys[i].equals(key)) {
+                values[i] = value;
+                return;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        size++;
+    }
+
+    int remove(String key) {
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        for (; keys[i] != null; i = (i + 1) & mask) {
+            if (keys[i].equals(key)) {
+                break;
+            }
+        }
+        if (keys[i] == null) {
+            return MISSING;
+        }
+        int removed = values[i];
+        keys[i] = null;
+        size--;
+        // 把后续同一探测链上的元素前移，保持查找不中断
+        for (int j = (i + 1) & mask; keys[j] != null; j = (j + 1) & mask) {
+            int home = hash(keys[j]) & mask;
+            boolean movable = i <= j ? (home <= i || home > j) : (home <= i && home > j);
+            if (movable) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                keys[j] = null;
+                i = j;
+            }
+        }
+        return removed;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long estimateBytes() {
+        // 数组本身，字符串按引用计（字符串对象由任务数组共享）
+        return (long) keys.length * 4 + (long) values.length * 4;
+    }
+
+    private static int hash(String key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private void resize(int capacity) {
+        String[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new String[capacity];
+        values = new int[capacity];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,461 @@
+package cn.icexmoon.activitiutil.reassign;
+
+import lombok.extern.slf4j.Slf4j;
+import org.activiti.engine.ManagementService;
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.delegate.event.ActivitiEventDispatcher;
+import org.activiti.engine.delegate.event.ActivitiEventType;
+import org.activiti.engine.delegate.event.impl.ActivitiEventBuilder;
+import org.activiti.engine.history.HistoricActivityInstance;
+import org.activiti.engine.history.HistoricTaskInstance;
+import org.activiti.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.activiti.engine.impl.history.HistoryLevel;
+import org.activiti.engine.impl.interceptor.Command;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.impl.persistence.entity.HistoricIdentityLinkEntity;
+import org.activiti.engine.impl.persistence.entity.IdentityLinkEntity;
+import org.activiti.engine.repository.ProcessDefinition;
+import org.activiti.engine.task.IdentityLinkType;
+import org.activiti.engine.task.NativeTaskQuery;
+import org.activiti.engine.task.Task;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * @ClassName BulkReassigner
+ * @Description 把一个用户的全部任务（委托人、所有人和候选人身份）批量转交给代理人。
+ * 按块执行集合式的 UPDATE，每块一个事务，同时修正运行时身份关系、历史任务和历史活动，为代理人补充历史身份关系，
+ * 并为修改的任务和身份关系发布引擎事件
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/20 上午9:20
+ * @Version 1.0
+ */
+@Slf4j
+public class BulkReassigner {
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+    private final ProcessEngine processEngine;
+    private final int chunkSize;
+
+    public BulkReassigner(ProcessEngine processEngine) {
+        this(processEngine, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param processEngine 流程引擎
+     * @param chunkSize     每个事务处理的任务数，不能超过数据库 IN 列表的限制（Oracle 为 1000）
+     */
+    public BulkReassigner(ProcessEngine processEngine, int chunkSize) {
+        if (chunkSize < 1 || chunkSize > 1000) {
+            throw new RuntimeException("每块的任务数必须在 [1, 1000] 之间");
+        }
+        this.processEngine = processEngine;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * 批量转交任务。直接修改数据库，修改后为每个任务发布 TASK_ASSIGNED（转交了所有人的任务为 ENTITY_UPDATED）事件，
+     * 为候选人身份发布 ENTITY_DELETED/ENTITY_CREATED 事件，监听器在每块的事务提交后收到
+     *
+     * @param criteria 转交条件
+     * @return 转交结果
+     */
+    public ReassignReport reassign(ReassignCriteria criteria) {
+        if (criteria.getFromUserId().equals(criteria.getToUserId())) {
+            throw new RuntimeException("原审批人和代理人不能相同");
+        }
+        long start = System.currentTimeMillis();
+        Tables tables = new Tables(processEngine.getManagementService());
+        ManagementService managementService = processEngine.getManagementService();
+        List<String> assignedTaskIds = managementService.executeCommand(
+                command(connection -> selectTaskIds(connection, tables, criteria, "ASSIGNEE_")));
+        List<String> ownedTaskIds = managementService.executeCommand(
+                command(connection -> selectTaskIds(connection, tables, criteria, "OWNER_")));
+        List<String> candidateTaskIds = criteria.isIncludeCandidates()
+                ? managementService.executeCommand(command(connection -> selectTaskIds(connection, tables, criteria, null)))
+                : Collections.emptyList();
+        Set<String> taskIds = new TreeSet<>(assignedTaskIds);
+        taskIds.addAll(ownedTaskIds);
+        taskIds.addAll(candidateTaskIds);
+
+        ReassignReport report = new ReassignReport();
+        report.setDryRun(criteria.isDryRun());
+        report.setMatchedTasks(taskIds.size());
+        if (criteria.isDryRun()) {
+            report.setAssignedTasks(assignedTaskIds.size());
+            report.setOwnedTasks(ownedTaskIds.size());
+            report.setCandidateLinks(criteria.isIncludeCandidates()
+                    ? managementService.executeCommand(command(connection -> selectCandidateLinkIds(connection, tables, criteria))).size()
+                    : 0);
+        } else {
+            boolean recordHistory = ((ProcessEngineConfigurationImpl) processEngine.getProcessEngineConfiguration())
+                    .getHistoryLevel().isAtLeast(HistoryLevel.AUDIT);
+            Set<String> assigned = new HashSet<>(assignedTaskIds);
+            List<String> ids = new ArrayList<>(taskIds);
+            for (int i = 0; i < ids.size(); i += chunkSize) {
+                List<String> chunk = ids.subList(i, Math.min(i + chunkSize, ids.size()));
+                managementService.executeCommand(reassignChunk(tables, criteria, chunk, assigned, recordHistory, report));
+                report.setChunks(report.getChunks() + 1);
+            }
+        }
+        report.setElapsedMillis(System.currentTimeMillis() - start);
+        log.info("%s任务从[%s]转交给[%s]：涉及%d个任务，委托人%d个，所有人%d个，候选人%d个，%d个事务，耗时%dms（%.1f个/秒）".formatted(
+                criteria.isDryRun() ? "（试运行）" : "", criteria.getFromUserId(), criteria.getToUserId(),
+                report.getMatchedTasks(), report.getAssignedTasks(), report.getOwnedTasks(), report.getCandidateLinks(),
+                report.getChunks(), report.getElapsedMillis(), report.getTasksPerSecond()));
+        return report;
+    }
+
+    private Command<Void> reassignChunk(Tables tables, ReassignCriteria criteria, List<String> taskIds,
+                                        Set<String> assignedTaskIds, boolean recordHistory, ReassignReport report) {
+        String from = criteria.getFromUserId();
+        String to = criteria.getToUserId();
+        return command(connection -> {
+            // 条件中保留原委托人，并发修改过的任务不会被覆盖；增加版本号使引擎中持有旧版本的更新失败
+            int assigned = update(connection, "UPDATE %s SET ASSIGNEE_ = ?, REV_ = REV_ + 1 WHERE ASSIGNEE_ = ? AND ID_ IN (%s)"
+                    .formatted(tables.task, in(taskIds.size())), to, from, taskIds);
+            if (assigned > 0) {
+                update(connection, "UPDATE %s SET ASSIGNEE_ = ? WHERE ASSIGNEE_ = ? AND END_TIME_ IS NULL AND ID_ IN (%s)"
+                        .formatted(tables.historicTask, in(taskIds.size())), to, from, taskIds);
+                update(connection, "UPDATE %s SET ASSIGNEE_ = ? WHERE ASSIGNEE_ = ? AND END_TIME_ IS NULL AND TASK_ID_ IN (%s)"
+                        .formatted(tables.historicActivity, in(taskIds.size())), to, from, taskIds);
+            }
+            // 原审批人把任务委派给了别人（所有人是原审批人），委派处理完后任务应回到代理人而不是原审批人。
+            // 原审批人是被委派人时，委托人已在上面转交，处理完后仍回到所有人，委派状态不需要修改
+            int owned = update(connection, "UPDATE %s SET OWNER_ = ?, REV_ = REV_ + 1 WHERE OWNER_ = ? AND ID_ IN (%s)"
+                    .formatted(tables.task, in(taskIds.size())), to, from, taskIds);
+            if (owned > 0) {
+                update(connection, "UPDATE %s SET OWNER_ = ? WHERE OWNER_ = ? AND END_TIME_ IS NULL AND ID_ IN (%s)"
+                        .formatted(tables.historicTask, in(taskIds.size())), to, from, taskIds);
+            }
+            CandidateChanges candidates = criteria.isIncludeCandidates()
+                    ? reassignCandidates(connection, tables, from, to, taskIds, recordHistory)
+                    : CandidateChanges.NONE;
+            int participants = 0;
+            if (assigned > 0 || owned > 0 || !candidates.removed.isEmpty()) {
+                participants = addParticipants(connection, tables, to, taskIds, recordHistory);
+            }
+            if (assigned > 0 || owned > 0) {
+                dispatchTaskEvents(tables, taskIds, assignedTaskIds, to);
+            }
+            dispatchCandidateEvents(candidates);
+            report.setAssignedTasks(report.getAssignedTasks() + assigned);
+            report.setOwnedTasks(report.getOwnedTasks() + owned);
+            report.setCandidateLinks(report.getCandidateLinks() + candidates.removed.size());
+            report.setParticipantLinks(report.getParticipantLinks() + participants);
+            return null;
+        });
+    }
+
+    /**
+     * 删除原审批人的候选人身份，为代理人新增候选人身份（代理人已是候选人的任务不新增）。
+     * 历史身份关系是审计记录，原审批人的历史记录保留，代理人的身份作为新记录插入
+     */
+    private CandidateChanges reassignCandidates(Connection connection, Tables tables, String from, String to,
+                                                List<String> taskIds, boolean recordHistory) throws SQLException {
+        CandidateChanges changes = new CandidateChanges();
+        for (String[] row : queryRows(connection, "SELECT ID_, TASK_ID_, PROC_INST_ID_ FROM %s WHERE TYPE_ = 'candidate' AND USER_ID_ = ? AND TASK_ID_ IN (%s)"
+                .formatted(tables.identityLink, in(taskIds.size())), List.of(from), taskIds)) {
+            changes.removed.add(identityLink(row[0], from, row[1], row[2]));
+        }
+        if (changes.removed.isEmpty()) {
+            return changes;
+        }
+        update(connection, "DELETE FROM %s WHERE TYPE_ = 'candidate' AND USER_ID_ = ? AND TASK_ID_ IN (%s)"
+                .formatted(tables.identityLink, in(taskIds.size())), from, null, taskIds);
+        // 代理人已是候选人（或本次已为其新增）的任务
+        Set<String> candidateTasks = new HashSet<>(query(connection,
+                "SELECT TASK_ID_ FROM %s WHERE TYPE_ = 'candidate' AND USER_ID_ = ? AND TASK_ID_ IN (%s)"
+                        .formatted(tables.identityLink, in(taskIds.size())), List.of(to), taskIds));
+        ProcessEngineConfigurationImpl configuration = (ProcessEngineConfigurationImpl) processEngine.getProcessEngineConfiguration();
+        try (PreparedStatement runtime = connection.prepareStatement(
+                "INSERT INTO %s (ID_, REV_, TYPE_, USER_ID_, TASK_ID_, PROC_INST_ID_) VALUES (?, 1, 'candidate', ?, ?, ?)".formatted(tables.identityLink));
+             PreparedStatement history = connection.prepareStatement(
+                     "INSERT INTO %s (ID_, TYPE_, USER_ID_, TASK_ID_, PROC_INST_ID_) VALUES (?, 'candidate', ?, ?, ?)".formatted(tables.historicIdentityLink))) {
+            for (IdentityLinkEntity removed : changes.removed) {
+                if (!candidateTasks.add(removed.getTaskId())) {
+                    continue;
+                }
+                // 历史身份关系与运行时身份关系使用相同的id
+                IdentityLinkEntity added = identityLink(configuration.getIdGenerator().getNextId(), to,
+                        removed.getTaskId(), removed.getProcessInstanceId());
+                for (PreparedStatement statement : recordHistory ? List.of(runtime, history) : List.of(runtime)) {
+                    statement.setString(1, added.getId());
+                    statement.setString(2, to);
+                    statement.setString(3, added.getTaskId());
+                    statement.setString(4, added.getProcessInstanceId());
+                    statement.addBatch();
+                }
+                changes.added.add(added);
+            }
+            if (!changes.added.isEmpty()) {
+                runtime.executeBatch();
+                if (recordHistory) {
+                    history.executeBatch();
+                }
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * 与 TaskService.setAssignee、addCandidateUser 一样，把代理人登记为流程实例的参与者
+     */
+    private int addParticipants(Connection connection, Tables tables, String to, List<String> taskIds,
+                                boolean recordHistory) throws SQLException {
+        Set<String> processInstanceIds = new TreeSet<>(query(connection,
+                "SELECT PROC_INST_ID_ FROM %s WHERE PROC_INST_ID_ IS NOT NULL AND ID_ IN (%s)"
+                        .formatted(tables.task, in(taskIds.size())), List.of(), taskIds));
+        if (processInstanceIds.isEmpty()) {
+            return 0;
+        }
+        List<String> instances = new ArrayList<>(processInstanceIds);
+        processInstanceIds.removeAll(query(connection,
+                "SELECT PROC_INST_ID_ FROM %s WHERE TYPE_ = 'participant' AND USER_ID_ = ? AND PROC_INST_ID_ IN (%s)"
+                        .formatted(tables.identityLink, in(instances.size())), List.of(to), instances));
+        if (processInstanceIds.isEmpty()) {
+            return 0;
+        }
+        ProcessEngineConfigurationImpl configuration = (ProcessEngineConfigurationImpl) processEngine.getProcessEngineConfiguration();
+        try (PreparedStatement runtime = connection.prepareStatement(
+                "INSERT INTO %s (ID_, REV_, TYPE_, USER_ID_, PROC_INST_ID_) VALUES (?, 1, 'participant', ?, ?)".formatted(tables.identityLink));
+             PreparedStatement history = connection.prepareStatement(
+                     "INSERT INTO %s (ID_, TYPE_, USER_ID_, PROC_INST_ID_) VALUES (?, 'participant', ?, ?)".formatted(tables.historicIdentityLink))) {
+            for (String processInstanceId : processInstanceIds) {
+                // 历史身份关系与运行时身份关系使用相同的id
+                String id = configuration.getIdGenerator().getNextId();
+                for (PreparedStatement statement : recordHistory ? List.of(runtime, history) : List.of(runtime)) {
+                    statement.setString(1, id);
+                    statement.setString(2, to);
+                    statement.setString(3, processInstanceId);
+                    statement.addBatch();
+                }
+            }
+            runtime.executeBatch();
+            if (recordHistory) {
+                history.executeBatch();
+            }
+        }
+        return processInstanceIds.size();
+    }
+
+    /**
+     * 查询原审批人是委托人（ASSIGNEE_）、所有人（OWNER_）或候选人（column 为 null）的任务id
+     */
+    private static List<String> selectTaskIds(Connection connection, Tables tables, ReassignCriteria criteria, String column)
+            throws SQLException {
+        String sql = column == null
+                ? "SELECT DISTINCT T.ID_ FROM %s T JOIN %s L ON L.TASK_ID_ = T.ID_ WHERE L.TYPE_ = 'candidate' AND L.USER_ID_ = ?"
+                .formatted(tables.task, tables.identityLink)
+                : "SELECT T.ID_ FROM %s T WHERE T.%s = ?".formatted(tables.task, column);
+        return selectFiltered(connection, tables, criteria, sql);
+    }
+
+    /**
+     * 原审批人在匹配的任务上的候选人身份，试运行时统计数量，与实际转交时删除的身份一致
+     */
+    private static List<String> selectCandidateLinkIds(Connection connection, Tables tables, ReassignCriteria criteria)
+            throws SQLException {
+        return selectFiltered(connection, tables, criteria,
+                "SELECT L.ID_ FROM %s T JOIN %s L ON L.TASK_ID_ = T.ID_ WHERE L.TYPE_ = 'candidate' AND L.USER_ID_ = ?"
+                        .formatted(tables.task, tables.identityLink));
+    }
+
+    /**
+     * 在以原审批人为第一个参数的查询上追加流程定义和任务名称条件
+     */
+    private static List<String> selectFiltered(Connection connection, Tables tables, ReassignCriteria criteria, String select)
+            throws SQLException {
+        StringBuilder sql = new StringBuilder(select);
+        List<String> parameters = new ArrayList<>();
+        parameters.add(criteria.getFromUserId());
+        if (criteria.getProcessDefinitionKey() != null) {
+            sql.append(" AND T.PROC_DEF_ID_ IN (SELECT D.ID_ FROM %s D WHERE D.KEY_ = ?)".formatted(tables.processDefinition));
+            parameters.add(criteria.getProcessDefinitionKey());
+        }
+        if (criteria.getTaskName() != null) {
+            sql.append(" AND T.NAME_ = ?");
+            parameters.add(criteria.getTaskName());
+        }
+        return query(connection, sql.toString(), parameters, List.of());
+    }
+
+    /**
+     * 集合式更新不经过引擎，这里按引擎修改任务时的方式发布事件，OpenTaskIndex、TaskEventBus、SlaWatcher
+     * 等监听器据此更新（它们在块的事务提交后才处理）。任务在本块的事务中用一条查询重新加载
+     */
+    private void dispatchTaskEvents(Tables tables, List<String> taskIds, Set<String> assignedTaskIds, String to) {
+        ActivitiEventDispatcher dispatcher = eventDispatcher();
+        if (dispatcher == null) {
+            return;
+        }
+        NativeTaskQuery query = processEngine.getTaskService().createNativeTaskQuery();
+        StringJoiner parameters = new StringJoiner(", ");
+        for (int i = 0; i < taskIds.size(); i++) {
+            parameters.add("#{id" + i + "}");
+            query.parameter("id" + i, taskIds.get(i));
+        }
+        List<Task> tasks = query.sql("SELECT * FROM %s WHERE ID_ IN (%s)".formatted(tables.task, parameters)).list();
+        for (Task task : tasks) {
+            ActivitiEventType type = assignedTaskIds.contains(task.getId()) && to.equals(task.getAssignee())
+                    ? ActivitiEventType.TASK_ASSIGNED
+                    : ActivitiEventType.ENTITY_UPDATED;
+            dispatcher.dispatchEvent(ActivitiEventBuilder.createEntityEvent(type, task));
+        }
+    }
+
+    private void dispatchCandidateEvents(CandidateChanges changes) {
+        ActivitiEventDispatcher dispatcher = eventDispatcher();
+        if (dispatcher == null) {
+            return;
+        }
+        for (IdentityLinkEntity link : changes.removed) {
+            dispatcher.dispatchEvent(ActivitiEventBuilder.createEntityEvent(ActivitiEventType.ENTITY_DELETED, link));
+        }
+        for (IdentityLinkEntity link : changes.added) {
+            dispatcher.dispatchEvent(ActivitiEventBuilder.createEntityEvent(ActivitiEventType.ENTITY_CREATED, link));
+        }
+    }
+
+    private ActivitiEventDispatcher eventDispatcher() {
+        ActivitiEventDispatcher dispatcher = ((ProcessEngineConfigurationImpl) processEngine.getProcessEngineConfiguration())
+                .getEventDispatcher();
+        return dispatcher != null && dispatcher.isEnabled() ? dispatcher : null;
+    }
+
+    private IdentityLinkEntity identityLink(String id, String userId, String taskId, String processInstanceId) {
+        IdentityLinkEntity link = ((ProcessEngineConfigurationImpl) processEngine.getProcessEngineConfiguration())
+                .getIdentityLinkEntityManager().create();
+        link.setId(id);
+        link.setType(IdentityLinkType.CANDIDATE);
+        link.setUserId(userId);
+        link.setTaskId(taskId);
+        link.setProcessInstanceId(processInstanceId);
+        return link;
+    }
+
+    /**
+     * 在命令所在事务的连接上执行 SQL，块内的修改在同一个事务中提交或回滚
+     */
+    private static <T> Command<T> command(SqlWork<T> work) {
+        return commandContext -> {
+            try {
+                return work.run(connection(commandContext));
+            } catch (SQLException e) {
+                throw new RuntimeException("批量转交任务失败", e);
+            }
+        };
+    }
+
+    private static Connection connection(CommandContext commandContext) {
+        return commandContext.getDbSqlSession().getSqlSession().getConnection();
+    }
+
+    private static List<String> query(Connection connection, String sql, List<String> parameters, List<String> inValues)
+            throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            int index = 1;
+            for (String parameter : parameters) {
+                statement.setString(index++, parameter);
+            }
+            for (String value : inValues) {
+                statement.setString(index++, value);
+            }
+            List<String> result = new ArrayList<>();
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    result.add(rs.getString(1));
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 查询多列，每行按列的顺序返回
+     */
+    private static List<String[]> queryRows(Connection connection, String sql, List<String> parameters, List<String> inValues)
+            throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            int index = 1;
+            for (String parameter : parameters) {
+                statement.setString(index++, parameter);
+            }
+            for (String value : inValues) {
+                statement.setString(index++, value);
+            }
+            List<String[]> result = new ArrayList<>();
+            try (ResultSet rs = statement.executeQuery()) {
+                int columns = rs.getMetaData().getColumnCount();
+                while (rs.next()) {
+                    String[] row = new String[columns];
+                    for (int column = 0; column < columns; column++) {
+                        row[column] = rs.getString(column + 1);
+                    }
+                    result.add(row);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 执行更新，参数依次为 first、second（为 null 时省略）和 IN 列表的值
+     */
+    private static int update(Connection connection, String sql, String first, String second, List<String> inValues)
+            throws SQLException {
+        List<String> parameters = second == null ? List.of(first) : List.of(first, second);
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            int index = 1;
+            for (String parameter : parameters) {
+                statement.setString(index++, parameter);
+            }
+            for (String value : inValues) {
+                statement.setString(index++, value);
+            }
+            return statement.executeUpdate();
+        }
+    }
+
+    private static String in(int size) {
+        return String.join(", ", Collections.nCopies(size, "?"));
+    }
+
+    /**
+     * 一块任务中删除和新增的候选人身份
+     */
+    private static class CandidateChanges {
+        static final CandidateChanges NONE = new CandidateChanges();
+        final List<IdentityLinkEntity> removed = new ArrayList<>();
+        final List<IdentityLinkEntity> added = new ArrayList<>();
+    }
+
+    @FunctionalInterface
+    private interface SqlWork<T> {
+        T run(Connection connection) throws SQLException;
+    }
+
+    /**
+     * 带前缀的表名
+     */
+    private static class Tables {
+        final String task;
+        final String identityLink;
+        final String processDefinition;
+        final String historicTask;
+        final String historicActivity;
+        final String historicIdentityLink;
+
+        Tables(ManagementService managementService) {
+            task = managementService.getTableName(Task.class);
+            identityLink = managementService.getTableName(IdentityLinkEntity.class);
+            processDefinition = managementService.getTableName(ProcessDefinition.class);
+            historicTask = managementService.getTableName(HistoricTaskInstance.class);
+            historicActivity = managementService.getTableName(HistoricActivityInstance.class);
+            historicIdentityLink = managementService.getTableName(HistoricIdentityLinkEntity.class);
+        }
+    }
+}
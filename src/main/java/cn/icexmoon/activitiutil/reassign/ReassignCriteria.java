@@ -0,0 +1,32 @@
+package cn.icexmoon.activitiutil.reassign;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * @ClassName ReassignCriteria
+ * @Description 批量转交任务的条件
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/20 上午9:10
+ * @Version 1.0
+ */
+@Value
+@Builder(toBuilder = true)
+public class ReassignCriteria {
+    // 原审批人
+    @NonNull
+    String fromUserId;
+    // 代理人
+    @NonNull
+    String toUserId;
+    // 流程定义 key，为 null 时不限制
+    String processDefinitionKey;
+    // 任务名称，为 null 时不限制
+    String taskName;
+    // 是否同时转交候选人身份
+    @Builder.Default
+    boolean includeCandidates = true;
+    // 只统计不修改
+    boolean dryRun;
+}
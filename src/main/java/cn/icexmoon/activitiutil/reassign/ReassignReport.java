@@ -0,0 +1,35 @@
+package cn.icexmoon.activitiutil.reassign;
+
+import lombok.Data;
+
+/**
+ * @ClassName ReassignReport
+ * @Description 批量转交任务的结果
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/20 上午9:15
+ * @Version 1.0
+ */
+@Data
+public class ReassignReport {
+    private boolean dryRun;
+    // 涉及的任务数（委托人、所有人或候选人是原审批人）
+    private int matchedTasks;
+    // 转交了委托人的任务数
+    private int assignedTasks;
+    // 转交了所有人的任务数（原审批人委派出去的任务）
+    private int ownedTasks;
+    // 转交的候选人身份数（代理人已是候选人时只删除原审批人的身份）
+    private int candidateLinks;
+    // 为代理人新增的流程实例参与者身份数
+    private int participantLinks;
+    // 执行的事务数
+    private int chunks;
+    private long elapsedMillis;
+
+    /**
+     * @return 每秒处理的任务数
+     */
+    public double getTasksPerSecond() {
+        return matchedTasks * 1000.0 / Math.max(1, elapsedMillis);
+    }
+}
@@ -0,0 +1,189 @@
+package cn.icexmoon.activitiutil.routing;
+
+import lombok.extern.slf4j.Slf4j;
+import org.activiti.engine.ProcessEngine;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @ClassName HeartbeatLagProbe
+ * @Description 通过心跳检测复制延迟：定时把当前时间写入主库的心跳表，从副本读出后与当前时间比较。
+ * 得到的延迟包含心跳间隔，容忍度应大于心跳间隔。心跳表 ACTU_HEARTBEAT 独立于引擎的表，第一次写入心跳时创建，
+ * 每个探针按名称占一行，不修改引擎的 ACT_GE_PROPERTY
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/20 下午2:10
+ * @Version 1.0
+ */
+@Slf4j
+public class HeartbeatLagProbe implements ReplicaLagProbe, AutoCloseable {
+    public static final String TABLE_NAME = "ACTU_HEARTBEAT";
+    public static final String DEFAULT_NAME = "replica";
+    private final DataSource primary;
+    private final DataSource replica;
+    private final String name;
+    private volatile boolean tableCreated;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param primaryEngine 主库的流程引擎
+     * @param replicaEngine 副本的流程引擎
+     */
+    public HeartbeatLagProbe(ProcessEngine primaryEngine, ProcessEngine replicaEngine) {
+        this(primaryEngine, replicaEngine, DEFAULT_NAME);
+    }
+
+    /**
+     * @param primaryEngine 主库的流程引擎
+     * @param replicaEngine 副本的流程引擎
+     * @param name          心跳行的名称，多个探针共用一个主库时应各不相同
+     */
+    public HeartbeatLagProbe(ProcessEngine primaryEngine, ProcessEngine replicaEngine, String name) {
+        this.primary = primaryEngine.getProcessEngineConfiguration().getDataSource();
+        this.replica = replicaEngine.getProcessEngineConfiguration().getDataSource();
+        this.name = name;
+    }
+
+    /**
+     * 定时写入心跳
+     *
+     * @param interval 心跳间隔
+     * @return 探针本身
+     */
+    public synchronized HeartbeatLagProbe start(Duration interval) {
+        if (scheduler != null) {
+            throw new RuntimeException("心跳已经启动");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "replica-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                beat();
+            } catch (RuntimeException e) {
+                log.error("写入副本心跳失败", e);
+            }
+        }, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * 把当前时间写入主库，心跳表不存在时先创建
+     */
+    public void beat() {
+        long now = System.currentTimeMillis();
+        try (Connection connection = primary.getConnection()) {
+            createTableIfAbsent(connection);
+            int updated;
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "UPDATE %s SET TIME_ = ? WHERE NAME_ = ?".formatted(TABLE_NAME))) {
+                statement.setLong(1, now);
+                statement.setString(2, name);
+                updated = statement.executeUpdate();
+            }
+            if (updated == 0) {
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "INSERT INTO %s (NAME_, TIME_) VALUES (?, ?)".formatted(TABLE_NAME))) {
+                    statement.setString(1, name);
+                    statement.setLong(2, now);
+                    statement.executeUpdate();
+                }
+            }
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("写入副本心跳失败", e);
+        }
+    }
+
+    /**
+     * 删除本探针在主库心跳表中的行，不再使用该名称时调用。之后副本上的延迟未知，路由器会读主库
+     */
+    public void removeHeartbeat() {
+        try (Connection connection = primary.getConnection()) {
+            if (!tableExists(connection)) {
+                return;
+            }
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "DELETE FROM %s WHERE NAME_ = ?".formatted(TABLE_NAME))) {
+                statement.setString(1, name);
+                statement.executeUpdate();
+            }
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("删除副本心跳失败", e);
+        }
+    }
+
+    private void createTableIfAbsent(Connection connection) throws SQLException {
+        if (tableCreated) {
+            return;
+        }
+        if (!tableExists(connection)) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE %s (NAME_ VARCHAR(64) NOT NULL PRIMARY KEY, TIME_ BIGINT NOT NULL)"
+                        .formatted(TABLE_NAME));
+            } catch (SQLException e) {
+                // 其他节点可能同时建了表
+                if (!tableExists(connection)) {
+                    throw e;
+                }
+            }
+        }
+        tableCreated = true;
+    }
+
+    private static boolean tableExists(Connection connection) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        // 不同数据库保存的表名大小写不同
+        for (String tableName : new String[]{TABLE_NAME, TABLE_NAME.toLowerCase()}) {
+            try (ResultSet rs = metaData.getTables(null, null, tableName, new String[]{"TABLE"})) {
+                if (rs.next()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Duration getLag() {
+        try (Connection connection = replica.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "SELECT TIME_ FROM %s WHERE NAME_ = ?".formatted(TABLE_NAME))) {
+            statement.setString(1, name);
+            try (ResultSet rs = statement.executeQuery()) {
+                if (!rs.next()) {
+                    // 心跳还没有复制到副本
+                    return null;
+                }
+                return Duration.ofMillis(Math.max(0, System.currentTimeMillis() - rs.getLong(1)));
+            }
+        } catch (SQLException e) {
+            log.warn("读取副本心跳失败：%s".formatted(e.getMessage()));
+            return null;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package cn.icexmoon.activitiutil.routing;
+
+import lombok.extern.slf4j.Slf4j;
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.ProcessEngineConfiguration;
+import org.activiti.engine.cfg.ProcessEngineConfigurator;
+import org.activiti.engine.impl.cfg.ProcessEngineConfigurationImpl;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * @ClassName ReadReplicaRouter
+ * @Description 读写分离：纯读操作路由到只读副本的流程引擎。以下情况读主库：
+ * 副本的复制延迟超出容忍度；同一用户、任务或流程实例在读己之写窗口内有过写操作；副本读取失败
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/20 下午2:30
+ * @Version 1.0
+ */
+@Slf4j
+public class ReadReplicaRouter {
+    public static final Duration DEFAULT_MAX_STALENESS = Duration.ofSeconds(5);
+    public static final Duration DEFAULT_READ_YOUR_WRITES_WINDOW = Duration.ofSeconds(10);
+    // 复制延迟的检测结果缓存时间，避免每次读取都访问副本
+    private static final long LAG_CACHE_MILLIS = 1000;
+    // 写记录超过该数量时清理过期的记录
+    private static final int PURGE_THRESHOLD = 10_000;
+
+    private final ProcessEngine primary;
+    private final ProcessEngine replica;
+    private final long maxStalenessMillis;
+    private final long readYourWritesMillis;
+    private final ReplicaLagProbe lagProbe;
+    // 用户/任务/流程实例id -> 最近一次写操作的时间
+    private final ConcurrentHashMap<String, Long> lastWrites = new ConcurrentHashMap<>();
+    private volatile long lagCheckedAt;
+    private volatile boolean replicaFresh;
+    private final AtomicLong replicaReads = new AtomicLong();
+    private final AtomicLong primaryReads = new AtomicLong();
+    private final AtomicLong replicaFailures = new AtomicLong();
+
+    public ReadReplicaRouter(ProcessEngine primary, ProcessEngine replica, ReplicaLagProbe lagProbe) {
+        this(primary, replica, lagProbe, DEFAULT_MAX_STALENESS, DEFAULT_READ_YOUR_WRITES_WINDOW);
+    }
+
+    /**
+     * @param primary              主库的流程引擎
+     * @param replica              只读副本的流程引擎，见 buildReplicaEngine
+     * @param lagProbe             复制延迟的检测方式
+     * @param maxStaleness         可以容忍的复制延迟
+     * @param readYourWritesWindow 写操作之后，相关的读操作在该时间内读主库
+     */
+    public ReadReplicaRouter(ProcessEngine primary, ProcessEngine replica, ReplicaLagProbe lagProbe,
+                             Duration maxStaleness, Duration readYourWritesWindow) {
+        this.primary = primary;
+        this.replica = replica;
+        this.lagProbe = lagProbe == null ? ReplicaLagProbe.none() : lagProbe;
+        this.maxStalenessMillis = maxStaleness.toMillis();
+        this.readYourWritesMillis = readYourWritesWindow.toMillis();
+    }
+
+    /**
+     * 基于副本的数据源构建只读使用的流程引擎：不修改表结构，不启动异步执行器
+     *
+     * @param dataSource    副本的数据源
+     * @param engineName    引擎名称
+     * @param configurators 与主库引擎相同的配置器（比如自定义变量类型），保证读取结果一致
+     * @return 流程引擎
+     */
+    public static ProcessEngine buildReplicaEngine(DataSource dataSource, String engineName,
+                                                   ProcessEngineConfigurator... configurators) {
+        ProcessEngineConfigurationImpl configuration = (ProcessEngineConfigurationImpl) ProcessEngineConfiguration
+                .createStandaloneProcessEngineConfiguration();
+        configuration.setProcessEngineName(engineName);
+        configuration.setDataSource(dataSource);
+        configuration.setDatabaseSchemaUpdate(ProcessEngineConfiguration.DB_SCHEMA_UPDATE_FALSE);
+        configuration.setAsyncExecutorActivate(false);
+        if (configurators.length > 0) {
+            configuration.setConfigurators(List.of(configurators));
+        }
+        return configuration.buildProcessEngine();
+    }
+
+    /**
+     * 执行纯读操作
+     *
+     * @param read 读操作
+     * @param keys 读操作涉及的用户、任务或流程实例id，用于读己之写判断
+     * @return 读取结果
+     */
+    public <T> T read(Function<ProcessEngine, T> read, String... keys) {
+        if (!useReplica(keys)) {
+            primaryReads.incrementAndGet();
+            return read.apply(primary);
+        }
+        try {
+            T result = read.apply(replica);
+            replicaReads.incrementAndGet();
+            return result;
+        } catch (RuntimeException e) {
+            replicaFailures.incrementAndGet();
+            log.warn("副本读取失败，改为读主库：%s".formatted(e.getMessage()));
+            primaryReads.incrementAndGet();
+            return read.apply(primary);
+        }
+    }
+
+    /**
+     * 记录一次写操作，之后读己之写窗口内涉及这些 id 的读操作都读主库
+     *
+     * @param keys 写操作涉及的用户、任务或流程实例id
+     */
+    public void recordWrite(String... keys) {
+        long now = System.currentTimeMillis();
+        for (String key : keys) {
+            if (key != null) {
+                lastWrites.put(key, now);
+            }
+        }
+        if (lastWrites.size() > PURGE_THRESHOLD) {
+            lastWrites.values().removeIf(time -> now - time >= readYourWritesMillis);
+        }
+    }
+
+    public long getReplicaReads() {
+        return replicaReads.get();
+    }
+
+    public long getPrimaryReads() {
+        return primaryReads.get();
+    }
+
+    /**
+     * @return 副本读取失败后改读主库的次数
+     */
+    public long getReplicaFailures() {
+        return replicaFailures.get();
+    }
+
+    private boolean useReplica(String... keys) {
+        long now = System.currentTimeMillis();
+        for (String key : keys) {
+            Long lastWrite = key == null ? null : lastWrites.get(key);
+            if (lastWrite != null && now - lastWrite < readYourWritesMillis) {
+                return false;
+            }
+        }
+        return isReplicaFresh(now);
+    }
+
+    private boolean isReplicaFresh(long now) {
+        if (now - lagCheckedAt >= LAG_CACHE_MILLIS) {
+            Duration lag;
+            try {
+                lag = lagProbe.getLag();
+            } catch (RuntimeException e) {
+                lag = null;
+            }
+            replicaFresh = lag != null && lag.toMillis() <= maxStalenessMillis;
+            lagCheckedAt = now;
+        }
+        return replicaFresh;
+    }
+}
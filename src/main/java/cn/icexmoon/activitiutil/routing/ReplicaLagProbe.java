@@ -0,0 +1,25 @@
+package cn.icexmoon.activitiutil.routing;
+
+import java.time.Duration;
+
+/**
+ * @ClassName ReplicaLagProbe
+ * @Description 只读副本的复制延迟
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/20 下午2:00
+ * @Version 1.0
+ */
+@FunctionalInterface
+public interface ReplicaLagProbe {
+    /**
+     * @return 副本落后于主库的时间，无法确定时返回 null（视为超出容忍度）
+     */
+    Duration getLag();
+
+    /**
+     * 不检测复制延迟，总是认为副本足够新
+     */
+    static ReplicaLagProbe none() {
+        return () -> Duration.ZERO;
+    }
+}
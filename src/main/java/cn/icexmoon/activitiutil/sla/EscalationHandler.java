@@ -0,0 +1,19 @@
+package cn.icexmoon.activitiutil.sla;
+
+/**
+ * @ClassName EscalationHandler
+ * @Description 任务超时的处理（比如通知上级、转交任务）
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/20 上午11:00
+ * @Version 1.0
+ */
+@FunctionalInterface
+public interface EscalationHandler {
+    /**
+     * 在 SlaWatcher 的时间轮线程中调用，耗时的处理应交给其它线程。
+     * 同一任务在监控重启后可能再次回调，需要去重时使用 {@link OverdueTask#escalationKey()}
+     *
+     * @param task 超时的任务
+     */
+    void onOverdue(OverdueTask task);
+}
@@ -0,0 +1,203 @@
+package cn.icexmoon.activitiutil.sla;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * @ClassName HierarchicalTimingWheel
+ * @Description 分层时间轮：第 0 层每格一个 tick，第 n 层每格是第 n-1 层的一整圈。
+ * 添加和取消都是 O(1)，每个 tick 只处理到期的格子，上层格子到期时把其中的定时器下放到下层。
+ * 非线程安全，由 SlaWatcher 加锁访问
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/20 上午11:10
+ * @Version 1.0
+ */
+class HierarchicalTimingWheel<T> {
+    private final long tickMillis;
+    private final int wheelSize;
+    private final int mask;
+    private final List<Level> levels = new ArrayList<>();
+    // 已处理到的 tick 边界
+    private long currentTick;
+    private int size;
+
+    /**
+     * @param tickMillis 第 0 层每格的时长，即定时精度
+     * @param wheelSize  每层的格数，会向上取整为 2 的幂
+     * @param startTime  起始时间
+     */
+    HierarchicalTimingWheel(long tickMillis, int wheelSize, long startTime) {
+        if (tickMillis < 1 || wheelSize < 2) {
+            throw new RuntimeException("时间轮的 tick 不能小于 1ms，格数不能小于 2");
+        }
+        this.tickMillis = tickMillis;
+        this.wheelSize = Integer.highestOneBit(wheelSize - 1) << 1;
+        this.mask = this.wheelSize - 1;
+        this.currentTick = startTime - startTime % tickMillis;
+        levels.add(new Level(tickMillis));
+    }
+
+    /**
+     * 添加定时器
+     *
+     * @param payload  到期时传给回调的数据
+     * @param deadline 到期时间，不会早于该时间触发，最多晚一个 tick
+     * @return 定时器句柄，已到期时返回 null（由调用方立即处理）
+     */
+    Timeout<T> schedule(T payload, long deadline) {
+        Timeout<T> timeout = new Timeout<>(payload, deadline, ceilTick(deadline));
+        return place(timeout) ? timeout : null;
+    }
+
+    /**
+     * 推进时间到 now，依次处理经过的每个 tick
+     *
+     * @param now     当前时间
+     * @param expired 到期定时器的回调
+     */
+    void advance(long now, Consumer<Timeout<T>> expired) {
+        List<Timeout<T>> fired = new ArrayList<>();
+        while (currentTick + tickMillis <= now) {
+            currentTick += tickMillis;
+            // 从高层到低层处理，上层下放的定时器可能正好落在第 0 层当前的格子里
+            for (int i = levels.size() - 1; i >= 0; i--) {
+                Level level = levels.get(i);
+                if (currentTick % level.tickMillis != 0) {
+                    continue;
+                }
+                Bucket<T> bucket = level.bucket(currentTick);
+                Timeout<T> timeout = bucket.head;
+                bucket.head = null;
+                while (timeout != null) {
+                    Timeout<T> next = timeout.next;
+                    timeout.bucket = null;
+                    timeout.prev = null;
+                    timeout.next = null;
+                    size--;
+                    if (!place(timeout)) {
+                        fired.add(timeout);
+                    }
+                    timeout = next;
+                }
+            }
+            // 没有定时器时直接跳到当前时间
+            if (size == 0 && currentTick + tickMillis <= now) {
+                currentTick = now - now % tickMillis;
+            }
+        }
+        for (Timeout<T> timeout : fired) {
+            expired.accept(timeout);
+        }
+    }
+
+    /**
+     * 取消定时器，O(1)
+     *
+     * @param timeout 定时器句柄
+     * @return 是否在等待中并且被取消
+     */
+    boolean cancel(Timeout<T> timeout) {
+        Bucket<T> bucket = timeout.bucket;
+        if (bucket == null) {
+            return false;
+        }
+        if (timeout.prev == null) {
+            bucket.head = timeout.next;
+        } else {
+            timeout.prev.next = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.bucket = null;
+        timeout.prev = null;
+        timeout.next = null;
+        size--;
+        return true;
+    }
+
+    /**
+     * @return 等待中的定时器数
+     */
+    int size() {
+        return size;
+    }
+
+    int getLevelCount() {
+        return levels.size();
+    }
+
+    private boolean place(Timeout<T> timeout) {
+        if (timeout.tick <= currentTick) {
+            return false;
+        }
+        for (int i = 0; ; i++) {
+            if (i == levels.size()) {
+                levels.add(new Level(levels.get(i - 1).tickMillis * wheelSize));
+            }
+            Level level = levels.get(i);
+            long levelStart = currentTick - currentTick % level.tickMillis;
+            if (timeout.tick < levelStart + level.tickMillis * wheelSize) {
+                level.bucket(timeout.tick).add(timeout);
+                size++;
+                return true;
+            }
+        }
+    }
+
+    private long ceilTick(long time) {
+        long remainder = Math.floorMod(time, tickMillis);
+        return remainder == 0 ? time : time - remainder + tickMillis;
+    }
+
+    private class Level {
+        final long tickMillis;
+        final Bucket<T>[] buckets;
+
+        @SuppressWarnings("unchecked")
+        Level(long tickMillis) {
+            this.tickMillis = tickMillis;
+            this.buckets = new Bucket[wheelSize];
+            for (int i = 0; i < wheelSize; i++) {
+                buckets[i] = new Bucket<>();
+            }
+        }
+
+        Bucket<T> bucket(long time) {
+            return buckets[(int) ((time / tickMillis) & mask)];
+        }
+    }
+
+    /**
+     * 格子：定时器的双向链表
+     */
+    private static class Bucket<T> {
+        Timeout<T> head;
+
+        void add(Timeout<T> timeout) {
+            timeout.bucket = this;
+            timeout.next = head;
+            if (head != null) {
+                head.prev = timeout;
+            }
+            head = timeout;
+        }
+    }
+
+    static class Timeout<T> {
+        final T payload;
+        final long deadline;
+        // 向上取整到 tick 边界的到期时间
+        final long tick;
+        private Bucket<T> bucket;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+
+        Timeout(T payload, long deadline, long tick) {
+            this.payload = payload;
+            this.deadline = deadline;
+            this.tick = tick;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package cn.icexmoon.activitiutil.sla;
+
+import java.util.Date;
+
+/**
+ * @ClassName OverdueTask
+ * @Description 超时的任务
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/20 上午11:05
+ * @Version 1.0
+ */
+public record OverdueTask(String taskId,
+                          String taskName,
+                          String processInstanceId,
+                          String processDefinitionKey,
+                          String assignee,
+                          Date createTime,
+                          Date deadline) {
+
+    /**
+     * SlaWatcher 只在内存中记录已回调的任务，重启后已经超时的任务会再次回调。
+     * 同一任务的同一到期时间得到相同的键，重启后也不变，回调方可以用它去重（比如作为通知记录的唯一键）
+     *
+     * @return 超时回调的去重键
+     */
+    public String escalationKey() {
+        return taskId + "@" + deadline.getTime();
+    }
+}
@@ -0,0 +1,32 @@
+package cn.icexmoon.activitiutil.sla;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * @ClassName SlaPolicy
+ * @Description 任务的处理时限，任务设置了到期时间（dueDate）时以到期时间为准
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/20 上午11:00
+ * @Version 1.0
+ */
+@FunctionalInterface
+public interface SlaPolicy {
+    /**
+     * @param processDefinitionKey 流程定义 key
+     * @param taskName             任务名称
+     * @return 从任务创建开始计算的处理时限，为 null 时不监控该任务
+     */
+    Duration getSla(String processDefinitionKey, String taskName);
+
+    /**
+     * 按任务名称设置时限，不区分流程定义
+     *
+     * @param slaByTaskName 任务名称 -> 时限
+     * @return 时限策略
+     */
+    static SlaPolicy byTaskName(Map<String, Duration> slaByTaskName) {
+        Map<String, Duration> copy = Map.copyOf(slaByTaskName);
+        return (processDefinitionKey, taskName) -> taskName == null ? null : copy.get(taskName);
+    }
+}
@@ -0,0 +1,317 @@
+package cn.icexmoon.activitiutil.sla;
+
+import cn.icexmoon.activitiutil.ProcessDefinitionIds;
+import lombok.extern.slf4j.Slf4j;
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.delegate.event.ActivitiEntityEvent;
+import org.activiti.engine.delegate.event.ActivitiEvent;
+import org.activiti.engine.delegate.event.ActivitiEventListener;
+import org.activiti.engine.delegate.event.ActivitiEventType;
+import org.activiti.engine.impl.cfg.TransactionContext;
+import org.activiti.engine.impl.cfg.TransactionState;
+import org.activiti.engine.impl.context.Context;
+import org.activiti.engine.task.Task;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @ClassName SlaWatcher
+ * @Description 任务超时监控。启动时加载一次开放任务的到期时间，之后由任务创建、修改、完成事件维护分层时间轮，
+ * 到期时调用升级回调，不再定时扫描任务表
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/20 上午11:40
+ * @Version 1.0
+ */
+@Slf4j
+public class SlaWatcher implements ActivitiEventListener, AutoCloseable {
+    public static final Duration DEFAULT_TICK = Duration.ofSeconds(1);
+    private static final int WHEEL_SIZE = 64;
+    private static final int PAGE_SIZE = 1000;
+    private static final ActivitiEventType[] EVENT_TYPES = {
+            ActivitiEventType.TASK_CREATED,
+            ActivitiEventType.TASK_ASSIGNED,
+            ActivitiEventType.ENTITY_UPDATED,
+            ActivitiEventType.TASK_COMPLETED,
+            ActivitiEventType.ENTITY_DELETED
+    };
+
+    private final ProcessEngine processEngine;
+    private final SlaPolicy slaPolicy;
+    private final EscalationHandler escalationHandler;
+    private final long tickMillis;
+    private final HierarchicalTimingWheel<OverdueTask> wheel;
+    // 任务id -> 等待中的定时器
+    private final Map<String, HierarchicalTimingWheel.Timeout<OverdueTask>> timeouts = new HashMap<>();
+    // 任务id -> 已经超时、等待时间轮线程回调的任务
+    private final Map<String, OverdueTask> due = new LinkedHashMap<>();
+    // 任务id -> 已触发回调的到期时间，避免回调中修改任务（比如转交）引起的事件再次触发回调。
+    // 只保存在内存中，重启后已超时的任务会再次回调，见 OverdueTask.escalationKey
+    private final Map<String, Long> escalated = new HashMap<>();
+    // 加载期间收到过事件的任务id，事件中的数据比加载时查到的新，加载时跳过这些任务；不在加载时为 null
+    private Set<String> touchedWhileLoading;
+    private final AtomicLong fired = new AtomicLong();
+    private volatile long maxFireDelayMillis;
+    private Thread thread;
+    private volatile boolean running;
+
+    public SlaWatcher(ProcessEngine processEngine, SlaPolicy slaPolicy, EscalationHandler escalationHandler) {
+        this(processEngine, slaPolicy, escalationHandler, DEFAULT_TICK);
+    }
+
+    /**
+     * @param processEngine     流程引擎
+     * @param slaPolicy         任务的处理时限
+     * @param escalationHandler 超时回调
+     * @param tick              时间轮精度，回调最多比到期时间晚一个 tick
+     */
+    public SlaWatcher(ProcessEngine processEngine, SlaPolicy slaPolicy, EscalationHandler escalationHandler, Duration tick) {
+        this.processEngine = processEngine;
+        this.slaPolicy = slaPolicy;
+        this.escalationHandler = escalationHandler;
+        this.tickMillis = tick.toMillis();
+        this.wheel = new HierarchicalTimingWheel<>(tickMillis, WHEEL_SIZE, System.currentTimeMillis());
+    }
+
+    /**
+     * 注册事件监听器，加载开放任务并启动时间轮线程。已经超时的任务在时间轮线程的第一个 tick 回调
+     *
+     * @return 监控本身
+     */
+    public SlaWatcher start() {
+        synchronized (this) {
+            if (running || touchedWhileLoading != null) {
+                throw new RuntimeException("任务超时监控已经启动");
+            }
+            touchedWhileLoading = new HashSet<>();
+        }
+        // 先注册监听器再加载：加载期间完成或修改的任务由事件处理，加载时跳过，避免用查到的旧数据重新调度
+        processEngine.getRuntimeService().addEventListener(this, EVENT_TYPES);
+        String taskTable = processEngine.getManagementService().getTableName(Task.class);
+        int loaded = 0;
+        String lastId = "";
+        while (true) {
+            // 按id分页（keyset），不用偏移量：加载期间有任务完成时偏移分页会跳过任务，且深分页越来越慢
+            List<Task> page = processEngine.getTaskService().createNativeTaskQuery()
+                    .sql("SELECT * FROM %s WHERE ID_ > #{lastId} ORDER BY ID_".formatted(taskTable))
+                    .parameter("lastId", lastId)
+                    .listPage(0, PAGE_SIZE);
+            for (Task task : page) {
+                if (watch(toOverdueTask(task), true)) {
+                    loaded++;
+                }
+            }
+            if (page.size() < PAGE_SIZE) {
+                break;
+            }
+            lastId = page.get(page.size() - 1).getId();
+        }
+        log.info("任务超时监控已加载%d个任务".formatted(loaded));
+        synchronized (this) {
+            touchedWhileLoading = null;
+            running = true;
+            thread = new Thread(this::run, "sla-watcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return this;
+    }
+
+    @Override
+    public synchronized void close() {
+        running = false;
+        processEngine.getRuntimeService().removeEventListener(this);
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    @Override
+    public void onEvent(ActivitiEvent event) {
+        if (!(event instanceof ActivitiEntityEvent entityEvent) || !(entityEvent.getEntity() instanceof Task task)) {
+            return;
+        }
+        String taskId = task.getId();
+        Runnable action;
+        if (event.getType() == ActivitiEventType.TASK_COMPLETED || event.getType() == ActivitiEventType.ENTITY_DELETED) {
+            action = () -> unwatch(taskId, true);
+        } else {
+            // 事件中的实体在提交前可能还会变化，先取出需要的字段
+            OverdueTask overdueTask = toOverdueTask(task);
+            action = overdueTask == null ? () -> unwatch(taskId, false) : () -> watch(overdueTask, false);
+        }
+        TransactionContext transactionContext = Context.getTransactionContext();
+        if (transactionContext == null) {
+            action.run();
+        } else {
+            transactionContext.addTransactionListener(TransactionState.COMMITTED, commandContext -> action.run());
+        }
+    }
+
+    @Override
+    public boolean isFailOnException() {
+        return false;
+    }
+
+    /**
+     * @return 等待超时（包括已超时、等待回调）的任务数
+     */
+    public synchronized int getWatchedCount() {
+        return wheel.size() + due.size();
+    }
+
+    /**
+     * @return 已触发的超时回调数
+     */
+    public long getFired() {
+        return fired.get();
+    }
+
+    /**
+     * @return 回调时间比到期时间晚的最大值（毫秒）
+     */
+    public long getMaxFireDelayMillis() {
+        return maxFireDelayMillis;
+    }
+
+    /**
+     * 调度或重新调度任务，O(1)。已经超时的任务交给时间轮线程在下一个 tick 回调，
+     * 不在调用方（启动线程或事务提交监听器）中回调
+     *
+     * @param loaded 是否是启动时加载的任务
+     * @return 是否在等待超时
+     */
+    private synchronized boolean watch(OverdueTask task, boolean loaded) {
+        if (task == null) {
+            return false;
+        }
+        if (!touch(task.taskId(), loaded)) {
+            return false;
+        }
+        cancel(task.taskId());
+        long deadline = task.deadline().getTime();
+        Long escalatedDeadline = escalated.get(task.taskId());
+        if (escalatedDeadline != null && escalatedDeadline == deadline) {
+            return false;
+        }
+        HierarchicalTimingWheel.Timeout<OverdueTask> timeout = wheel.schedule(task, deadline);
+        if (timeout != null) {
+            timeouts.put(task.taskId(), timeout);
+        } else {
+            due.put(task.taskId(), task);
+        }
+        return true;
+    }
+
+    /**
+     * @param ended 任务是否已结束，结束的任务不再需要记录已触发的回调
+     */
+    private synchronized void unwatch(String taskId, boolean ended) {
+        touch(taskId, false);
+        cancel(taskId);
+        if (ended) {
+            escalated.remove(taskId);
+        }
+    }
+
+    /**
+     * 加载期间记录收到事件的任务
+     *
+     * @return 是否需要处理：加载的任务在加载期间收到过事件时不需要
+     */
+    private boolean touch(String taskId, boolean loaded) {
+        if (touchedWhileLoading == null) {
+            return true;
+        }
+        if (loaded) {
+            return !touchedWhileLoading.contains(taskId);
+        }
+        touchedWhileLoading.add(taskId);
+        return true;
+    }
+
+    private void cancel(String taskId) {
+        HierarchicalTimingWheel.Timeout<OverdueTask> timeout = timeouts.remove(taskId);
+        if (timeout != null) {
+            wheel.cancel(timeout);
+        }
+        due.remove(taskId);
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                Thread.sleep(tickMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            List<OverdueTask> overdue;
+            List<OverdueTask> expired = new ArrayList<>();
+            synchronized (this) {
+                overdue = new ArrayList<>(due.values());
+                due.clear();
+                wheel.advance(System.currentTimeMillis(), timeout -> {
+                    timeouts.remove(timeout.payload.taskId());
+                    expired.add(timeout.payload);
+                });
+                for (OverdueTask task : overdue) {
+                    escalated.put(task.taskId(), task.deadline().getTime());
+                }
+                for (OverdueTask task : expired) {
+                    escalated.put(task.taskId(), task.deadline().getTime());
+                }
+            }
+            // 在锁外回调，回调中可以安全地操作任务
+            for (OverdueTask task : overdue) {
+                escalate(task, false);
+            }
+            for (OverdueTask task : expired) {
+                escalate(task, true);
+            }
+        }
+    }
+
+    /**
+     * @param onTime 是否由时间轮按时触发，调度前就已超时的任务不计入回调延迟
+     */
+    private void escalate(OverdueTask task, boolean onTime) {
+        fired.incrementAndGet();
+        if (onTime) {
+            long delay = System.currentTimeMillis() - task.deadline().getTime();
+            if (delay > maxFireDelayMillis) {
+                maxFireDelayMillis = delay;
+            }
+        }
+        try {
+            escalationHandler.onOverdue(task);
+        } catch (RuntimeException e) {
+            log.error("任务[%s]的超时回调执行失败".formatted(task.taskId()), e);
+        }
+    }
+
+    /**
+     * @return 任务及其到期时间，没有时限时返回 null
+     */
+    private OverdueTask toOverdueTask(Task task) {
+        String processDefinitionKey = ProcessDefinitionIds.toProcessDefinitionKey(task.getProcessDefinitionId());
+        Date deadline = task.getDueDate();
+        if (deadline == null) {
+            Duration sla = slaPolicy.getSla(processDefinitionKey, task.getName());
+            if (sla == null || task.getCreateTime() == null) {
+                return null;
+            }
+            deadline = new Date(task.getCreateTime().getTime() + sla.toMillis());
+        }
+        return new OverdueTask(task.getId(), task.getName(), task.getProcessInstanceId(), processDefinitionKey,
+                task.getAssignee(), task.getCreateTime(), deadline);
+    }
+}
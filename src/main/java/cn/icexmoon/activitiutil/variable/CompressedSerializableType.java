@@ -0,0 +1,254 @@
+package cn.icexmoon.activitiutil.variable;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.activiti.engine.impl.variable.SerializableType;
+import org.activiti.engine.impl.variable.ValueFields;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * @ClassName CompressedSerializableType
+ * @Description 序列化后超过阈值的变量以 Deflate 压缩后存入 ACT_GE_BYTEARRAY，读取时（访问变量值时才加载字节）解压，
+ * 并统计原始字节数和实际存储的字节数
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 下午8:10
+ * @Version 1.0
+ */
+public class CompressedSerializableType extends SerializableType {
+    public static final String TYPE_NAME = "compressedSerializable";
+    public static final int DEFAULT_THRESHOLD = 4096;
+    /**
+     * 压缩结果缓存的默认容量（按原始字节数计）
+     */
+    public static final long DEFAULT_CACHE_BYTES = 8L * 1024 * 1024;
+    /**
+     * 压缩数据的头部：0x00 + 'Z' + 原始长度（int）。Java 序列化数据总是以 0xAC 开头，不会与之混淆
+     */
+    private static final byte[] MAGIC = {0x00, 'Z'};
+    private static final int HEADER_BYTES = MAGIC.length + Integer.BYTES;
+
+    private final int threshold;
+    private final long cacheBytes;
+    private final AtomicLong rawBytes = new AtomicLong();
+    private final AtomicLong storedBytes = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    /**
+     * 原始字节（按内容比较）-> 压缩后的字节。读取变量后，引擎在命令结束时会重新序列化变量值并与读取的字节比较
+     * 以判断是否需要更新，值没有变化时直接返回读取时的字节，不必再次压缩
+     */
+    private final LinkedHashMap<ByteBuffer, byte[]> compressed = new LinkedHashMap<>(16, 0.75f, true);
+    private long compressedRawBytes;
+
+    public CompressedSerializableType() {
+        this(DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * @param threshold 序列化后达到该字节数的值才使用本类型存储
+     */
+    public CompressedSerializableType(int threshold) {
+        this(threshold, DEFAULT_CACHE_BYTES);
+    }
+
+    /**
+     * @param threshold  序列化后达到该字节数的值才使用本类型存储
+     * @param cacheBytes 压缩结果缓存的容量（按原始字节数计），为 0 时不缓存
+     */
+    public CompressedSerializableType(int threshold, long cacheBytes) {
+        super(true);
+        this.threshold = threshold;
+        this.cacheBytes = cacheBytes;
+    }
+
+    @Override
+    public String getTypeName() {
+        return TYPE_NAME;
+    }
+
+    @Override
+    public boolean isAbleToStore(Object value) {
+        if (!(value instanceof Serializable) || value instanceof byte[] || value instanceof JsonNode) {
+            return false;
+        }
+        // 只需要知道序列化后是否达到阈值，达到后即停止序列化
+        ThresholdOutputStream out = new ThresholdOutputStream(threshold);
+        try (ObjectOutputStream objectOut = new ObjectOutputStream(out)) {
+            objectOut.writeObject(value);
+        } catch (ThresholdReachedException e) {
+            return true;
+        } catch (IOException e) {
+            // 无法序列化，交给其他类型处理
+            return false;
+        }
+        return out.count >= threshold;
+    }
+
+    @Override
+    public void setValue(Object value, ValueFields valueFields) {
+        super.setValue(value, valueFields);
+        // 在这里而不是 serialize 中统计：serialize 在命令结束检查变量是否被修改时也会调用
+        byte[] stored = valueFields.getBytes();
+        if (stored != null) {
+            rawBytes.addAndGet(rawLength(stored));
+            storedBytes.addAndGet(stored.length);
+            writes.incrementAndGet();
+        }
+    }
+
+    @Override
+    public byte[] serialize(Object value, ValueFields valueFields) {
+        if (value == null) {
+            return null;
+        }
+        byte[] raw = super.serialize(value, valueFields);
+        ByteBuffer key = ByteBuffer.wrap(raw);
+        synchronized (compressed) {
+            byte[] stored = compressed.get(key);
+            if (stored != null) {
+                return stored;
+            }
+        }
+        byte[] stored = compress(raw);
+        cache(key, stored);
+        return stored;
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes, ValueFields valueFields) {
+        byte[] raw = decompress(bytes);
+        if (raw != bytes) {
+            cache(ByteBuffer.wrap(raw), bytes);
+        }
+        return super.deserialize(raw, valueFields);
+    }
+
+    /**
+     * @return 写入的原始（序列化后、压缩前）字节数
+     */
+    public long getRawBytes() {
+        return rawBytes.get();
+    }
+
+    /**
+     * @return 实际存储的字节数
+     */
+    public long getStoredBytes() {
+        return storedBytes.get();
+    }
+
+    /**
+     * @return 写入次数
+     */
+    public long getWrites() {
+        return writes.get();
+    }
+
+    /**
+     * @return 存储字节数 / 原始字节数，没有写入时为 1
+     */
+    public double getCompressionRatio() {
+        long raw = rawBytes.get();
+        return raw == 0 ? 1 : (double) storedBytes.get() / raw;
+    }
+
+    static byte[] compress(byte[] raw) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(raw.length / 2 + HEADER_BYTES);
+        bytes.write(MAGIC, 0, MAGIC.length);
+        bytes.write(ByteBuffer.allocate(Integer.BYTES).putInt(raw.length).array(), 0, Integer.BYTES);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DeflaterOutputStream out = new DeflaterOutputStream(bytes, deflater)) {
+            out.write(raw);
+        } catch (IOException e) {
+            throw new RuntimeException("压缩变量失败", e);
+        } finally {
+            // 自行创建的 Deflater 不会随输出流关闭而释放本地内存
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    static byte[] decompress(byte[] stored) {
+        if (stored == null || stored.length < HEADER_BYTES || stored[0] != MAGIC[0] || stored[1] != MAGIC[1]) {
+            // 未压缩的数据原样返回
+            return stored;
+        }
+        int length = ByteBuffer.wrap(stored, MAGIC.length, Integer.BYTES).getInt();
+        try (InflaterInputStream in = new InflaterInputStream(
+                new ByteArrayInputStream(stored, HEADER_BYTES, stored.length - HEADER_BYTES))) {
+            byte[] raw = in.readNBytes(length);
+            if (raw.length != length) {
+                throw new RuntimeException("变量数据已损坏，期望%d字节，实际%d字节".formatted(length, raw.length));
+            }
+            return raw;
+        } catch (IOException e) {
+            throw new RuntimeException("解压变量失败", e);
+        }
+    }
+
+    private void cache(ByteBuffer raw, byte[] stored) {
+        if (raw.capacity() > cacheBytes) {
+            return;
+        }
+        synchronized (compressed) {
+            if (compressed.put(raw, stored) == null) {
+                compressedRawBytes += raw.capacity();
+            }
+            Iterator<ByteBuffer> eldest = compressed.keySet().iterator();
+            while (compressedRawBytes > cacheBytes && eldest.hasNext()) {
+                compressedRawBytes -= eldest.next().capacity();
+                eldest.remove();
+            }
+        }
+    }
+
+    private static int rawLength(byte[] stored) {
+        if (stored.length < HEADER_BYTES || stored[0] != MAGIC[0] || stored[1] != MAGIC[1]) {
+            return stored.length;
+        }
+        return ByteBuffer.wrap(stored, MAGIC.length, Integer.BYTES).getInt();
+    }
+
+    /**
+     * 只计数的输出流，达到阈值时抛出异常中止序列化
+     */
+    private static class ThresholdOutputStream extends OutputStream {
+        private final int threshold;
+        private int count;
+
+        ThresholdOutputStream(int threshold) {
+            this.threshold = threshold;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(null, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            count += len;
+            if (count >= threshold) {
+                throw new ThresholdReachedException();
+            }
+        }
+    }
+
+    private static class ThresholdReachedException extends IOException {
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+}
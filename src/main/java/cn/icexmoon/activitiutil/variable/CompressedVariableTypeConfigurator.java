@@ -0,0 +1,54 @@
+package cn.icexmoon.activitiutil.variable;
+
+import lombok.extern.slf4j.Slf4j;
+import org.activiti.engine.cfg.ProcessEngineConfigurator;
+import org.activiti.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.activiti.engine.impl.variable.SerializableType;
+import org.activiti.engine.impl.variable.VariableTypes;
+
+/**
+ * @ClassName CompressedVariableTypeConfigurator
+ * @Description 在引擎初始化后安装 CompressedSerializableType
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 下午8:40
+ * @Version 1.0
+ */
+@Slf4j
+public class CompressedVariableTypeConfigurator implements ProcessEngineConfigurator {
+    private final CompressedSerializableType variableType;
+
+    public CompressedVariableTypeConfigurator() {
+        this(new CompressedSerializableType());
+    }
+
+    public CompressedVariableTypeConfigurator(CompressedSerializableType variableType) {
+        this.variableType = variableType;
+    }
+
+    @Override
+    public void beforeInit(ProcessEngineConfigurationImpl processEngineConfiguration) {
+    }
+
+    @Override
+    public void configure(ProcessEngineConfigurationImpl processEngineConfiguration) {
+        // 放在 serializable 类型之前（json、longJson 之后）：只接管原本会以 Java 序列化保存的变量，
+        // 以 JSON 保存的 POJO 仍按 JSON 保存，存储格式不变
+        VariableTypes variableTypes = processEngineConfiguration.getVariableTypes();
+        int index = variableTypes.getTypeIndex(SerializableType.TYPE_NAME);
+        if (index < 0) {
+            variableTypes.addType(variableType);
+        } else {
+            variableTypes.addType(variableType, index);
+        }
+        log.info("已安装变量类型[%s]，压缩阈值之上的可序列化变量将压缩存储".formatted(CompressedSerializableType.TYPE_NAME));
+    }
+
+    @Override
+    public int getPriority() {
+        return 0;
+    }
+
+    public CompressedSerializableType getVariableType() {
+        return variableType;
+    }
+}
@@ -0,0 +1,217 @@
+package cn.icexmoon.activitiutil.variable;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.activiti.engine.impl.history.HistoryLevel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * @ClassName VariableDirtyChecker
+ * @Description 变量写入前的脏检查：把要写入的变量与任务当前的局部变量按类型比较，只保留新增或有变化的变量，
+ * 避免未变化的序列化值被重写到 ACT_GE_BYTEARRAY 并复制到历史表
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/20 下午6:20
+ * @Version 1.0
+ */
+public class VariableDirtyChecker {
+    /**
+     * 超过该长度的字符串以字节数组存储（Activiti 的 longString 类型）
+     */
+    private static final int MAX_TEXT_LENGTH = 4000;
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private final HistoryLevel historyLevel;
+    private final Consumer<VariableWriteReport> listener;
+    private final AtomicLong checks = new AtomicLong();
+    private final AtomicLong skippedVariables = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+    private final AtomicLong rowsSaved = new AtomicLong();
+
+    public VariableDirtyChecker(ProcessEngine processEngine) {
+        this(processEngine, null);
+    }
+
+    /**
+     * @param processEngine 流程引擎，用于确定历史级别（影响少写的历史行数）
+     * @param listener      每次检查后的回调，可以为 null
+     */
+    public VariableDirtyChecker(ProcessEngine processEngine, Consumer<VariableWriteReport> listener) {
+        this.historyLevel = ((ProcessEngineConfigurationImpl) processEngine.getProcessEngineConfiguration()).getHistoryLevel();
+        this.listener = listener;
+    }
+
+    /**
+     * 比较要写入的变量与当前变量
+     *
+     * @param taskId   任务id
+     * @param current  任务当前的局部变量
+     * @param incoming 要写入的变量
+     * @return 检查结果，其中 changed 是需要写入的变量
+     */
+    public VariableWriteReport check(String taskId, Map<String, Object> current, Map<String, Object> incoming) {
+        VariableWriteReport report = new VariableWriteReport(taskId);
+        if (incoming != null) {
+            for (Map.Entry<String, Object> entry : incoming.entrySet()) {
+                String name = entry.getKey();
+                Object value = entry.getValue();
+                if (current != null && current.containsKey(name) && isUnchanged(current.get(name), value)) {
+                    report.getSkipped().add(name);
+                    long size = estimateSize(value);
+                    report.setBytesSaved(report.getBytesSaved() + size);
+                    report.setRowsSaved(report.getRowsSaved() + rowsPerWrite(isBinary(value, size)));
+                } else {
+                    report.getChanged().put(name, value);
+                }
+            }
+        }
+        checks.incrementAndGet();
+        skippedVariables.addAndGet(report.getSkipped().size());
+        bytesSaved.addAndGet(report.getBytesSaved());
+        rowsSaved.addAndGet(report.getRowsSaved());
+        if (listener != null) {
+            listener.accept(report);
+        }
+        return report;
+    }
+
+    /**
+     * 按类型比较两个变量值：类型不同视为有变化；字节数组比较内容；
+     * 没有重写 equals 的对象，可序列化的比较序列化结果，否则（以 JSON 存储）比较 JSON 树
+     *
+     * @param current  当前值
+     * @param incoming 要写入的值
+     * @return 是否没有变化
+     */
+    public static boolean isUnchanged(Object current, Object incoming) {
+        if (current == incoming) {
+            return true;
+        }
+        if (current == null || incoming == null || current.getClass() != incoming.getClass()) {
+            return false;
+        }
+        if (incoming instanceof byte[] bytes) {
+            return Arrays.equals((byte[]) current, bytes);
+        }
+        if (incoming instanceof Date date) {
+            // java.sql.Timestamp 等子类的 equals 不对称，统一比较毫秒数
+            return ((Date) current).getTime() == date.getTime();
+        }
+        if (incoming.equals(current)) {
+            return true;
+        }
+        if (overridesEquals(incoming.getClass())) {
+            return false;
+        }
+        if (incoming instanceof Serializable) {
+            byte[] a = serialize(current);
+            return a != null && Arrays.equals(a, serialize(incoming));
+        }
+        JsonNode a = toJson(current);
+        return a != null && a.equals(toJson(incoming));
+    }
+
+    public long getChecks() {
+        return checks.get();
+    }
+
+    public long getSkippedVariables() {
+        return skippedVariables.get();
+    }
+
+    public long getBytesSaved() {
+        return bytesSaved.get();
+    }
+
+    public long getRowsSaved() {
+        return rowsSaved.get();
+    }
+
+    /**
+     * 写入一个变量涉及的行数：运行时变量，历史级别 activity 及以上时的历史变量，full 时的历史明细，
+     * 值以字节数组存储时每一行各多一行 ACT_GE_BYTEARRAY
+     */
+    private long rowsPerWrite(boolean binary) {
+        int tables = 1;
+        if (historyLevel.isAtLeast(HistoryLevel.ACTIVITY)) {
+            tables++;
+        }
+        if (historyLevel.isAtLeast(HistoryLevel.FULL)) {
+            tables++;
+        }
+        return binary ? tables * 2L : tables;
+    }
+
+    private static boolean isBinary(Object value, long size) {
+        if (value == null || value instanceof Number || value instanceof Boolean || value instanceof Date) {
+            return false;
+        }
+        if (value instanceof String || value instanceof JsonNode) {
+            return size > MAX_TEXT_LENGTH;
+        }
+        return true;
+    }
+
+    private static long estimateSize(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof Date) {
+            return Long.BYTES;
+        }
+        if (value instanceof String string) {
+            return string.getBytes(StandardCharsets.UTF_8).length;
+        }
+        if (value instanceof byte[] bytes) {
+            return bytes.length;
+        }
+        if (value instanceof JsonNode jsonNode) {
+            return jsonNode.toString().getBytes(StandardCharsets.UTF_8).length;
+        }
+        if (value instanceof Serializable) {
+            byte[] serialized = serialize(value);
+            return serialized == null ? 0 : serialized.length;
+        }
+        JsonNode json = toJson(value);
+        return json == null ? 0 : json.toString().getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static boolean overridesEquals(Class<?> type) {
+        try {
+            return type.getMethod("equals", Object.class).getDeclaringClass() != Object.class;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static JsonNode toJson(Object value) {
+        try {
+            return OBJECT_MAPPER.valueToTree(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static byte[] serialize(Object value) {
+        if (!(value instanceof Serializable)) {
+            return null;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        } catch (IOException e) {
+            return null;
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,28 @@
+package cn.icexmoon.activitiutil.variable;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @ClassName VariableWriteReport
+ * @Description 一次变量写入的脏检查结果
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/20 下午6:10
+ * @Version 1.0
+ */
+@Data
+public class VariableWriteReport {
+    private final String taskId;
+    // 需要写入的变量（新增或值有变化）
+    private final Map<String, Object> changed = new LinkedHashMap<>();
+    // 值没有变化而跳过的变量名
+    private final List<String> skipped = new ArrayList<>();
+    // 跳过的变量值的估算字节数
+    private long bytesSaved;
+    // 跳过的变量在运行时表、字节数组表和历史表中少写的行数（估算）
+    private long rowsSaved;
+}
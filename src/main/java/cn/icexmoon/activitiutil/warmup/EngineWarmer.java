@@ -0,0 +1,236 @@
+package cn.icexmoon.activitiutil.warmup;
+
+import cn.icexmoon.activitiutil.ActivitiUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.activiti.engine.HistoryService;
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.RepositoryService;
+import org.activiti.engine.history.HistoricProcessInstance;
+import org.activiti.engine.history.HistoricTaskInstance;
+import org.activiti.engine.repository.ProcessDefinition;
+import org.activiti.engine.repository.ProcessDefinitionQuery;
+import org.activiti.engine.task.IdentityLink;
+import org.activiti.engine.task.Task;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * @ClassName EngineWarmer
+ * @Description 引擎预热：加载并解析流程定义到部署缓存，用只读调用预热 ActivitiUtils 的查询和命令路径
+ * （MyBatis 语句、JIT），并记录各阶段耗时，可用于就绪探针
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 下午7:15
+ * @Version 1.0
+ */
+@Slf4j
+public class EngineWarmer {
+    public static final int DEFAULT_ITERATIONS = 20;
+    // 库中没有可用的数据时使用的不存在的用户/实例/任务id
+    private static final String SYNTHETIC_ID = "__warmup__";
+    private final ProcessEngine processEngine;
+    private final ActivitiUtils activitiUtils;
+    private final Set<String> processDefinitionKeys;
+    private final int iterations;
+    private volatile WarmupReport lastReport;
+
+    /**
+     * @param processEngine 流程引擎
+     * @param activitiUtils 应用实际使用的 ActivitiUtils（带有其索引、路由等配置），预热的是它的调用路径
+     */
+    public EngineWarmer(ProcessEngine processEngine, ActivitiUtils activitiUtils) {
+        this(processEngine, activitiUtils, null, DEFAULT_ITERATIONS);
+    }
+
+    /**
+     * @param processEngine         流程引擎
+     * @param activitiUtils         应用实际使用的 ActivitiUtils
+     * @param processDefinitionKeys 需要预热的流程定义 key，为 null 时预热全部流程定义的最新版本
+     * @param iterations            查询路径的重复调用次数
+     */
+    public EngineWarmer(ProcessEngine processEngine, ActivitiUtils activitiUtils,
+                        Set<String> processDefinitionKeys, int iterations) {
+        this.processEngine = processEngine;
+        this.activitiUtils = activitiUtils;
+        this.processDefinitionKeys = processDefinitionKeys;
+        this.iterations = iterations;
+    }
+
+    /**
+     * 执行预热，单个调用失败只记录错误，不中断预热
+     *
+     * @return 预热结果
+     */
+    public WarmupReport warmUp() {
+        WarmupReport report = new WarmupReport();
+        List<ProcessDefinition> definitions = phase(report, "加载流程定义", () -> loadProcessDefinitions(report));
+        Samples samples = phase(report, "预热命令路径", () -> {
+            Samples recent = Samples.load(processEngine);
+            warmUpCommands(report, definitions, recent);
+            return recent;
+        });
+        phase(report, "预热查询路径", () -> {
+            for (int i = 0; i < iterations; i++) {
+                warmUpQueries(report, definitions, samples);
+            }
+            return null;
+        });
+        lastReport = report;
+        log.info("引擎预热完成，耗时%dms，各阶段耗时%s，错误%d个".formatted(
+                report.getTotalMillis(), report.getPhaseMillis(), report.getErrors().size()));
+        return report;
+    }
+
+    /**
+     * @return 是否已完成预热，可用于就绪探针
+     */
+    public boolean isWarmedUp() {
+        return lastReport != null;
+    }
+
+    /**
+     * @return 最近一次预热结果，未预热时为 null
+     */
+    public WarmupReport getLastReport() {
+        return lastReport;
+    }
+
+    private List<ProcessDefinition> loadProcessDefinitions(WarmupReport report) {
+        RepositoryService repositoryService = processEngine.getRepositoryService();
+        ProcessDefinitionQuery query = repositoryService.createProcessDefinitionQuery().latestVersion();
+        if (processDefinitionKeys != null) {
+            if (processDefinitionKeys.isEmpty()) {
+                return Collections.emptyList();
+            }
+            query.processDefinitionKeys(processDefinitionKeys);
+        }
+        List<ProcessDefinition> definitions = query.list();
+        for (ProcessDefinition definition : definitions) {
+            // getBpmnModel 会解析流程定义并放入部署缓存
+            attempt(report, "解析流程定义[%s]".formatted(definition.getId()),
+                    () -> repositoryService.getBpmnModel(definition.getId()));
+            report.getProcessDefinitionIds().add(definition.getId());
+        }
+        return definitions;
+    }
+
+    private void warmUpCommands(WarmupReport report, List<ProcessDefinition> definitions, Samples samples) {
+        RepositoryService repositoryService = processEngine.getRepositoryService();
+        for (ProcessDefinition definition : definitions) {
+            attempt(report, "getProcessDefinition", () -> repositoryService.getProcessDefinition(definition.getId()));
+            attempt(report, "getIdentityLinksForProcessDefinition",
+                    () -> repositoryService.getIdentityLinksForProcessDefinition(definition.getId()));
+        }
+        attempt(report, "getProperties", () -> processEngine.getManagementService().getProperties());
+        // 有现成的任务时，用它预热任务相关的只读命令
+        if (samples.task() != null) {
+            String taskId = samples.task().getId();
+            attempt(report, "listCandidates", () -> activitiUtils.listCandidates(taskId));
+            attempt(report, "getTaskExecutor", () -> activitiUtils.getTaskExecutor(taskId));
+            attempt(report, "canApprovalTask", () -> activitiUtils.canApprovalTask(samples.userId(), taskId));
+        }
+    }
+
+    /**
+     * 用最近的真实数据调用，使方法走完整的路径（用不存在的id时，多数方法在第一个查询没有结果后就返回了）。
+     * 库中没有对应数据时，直接执行后续步骤使用的引擎查询
+     */
+    private void warmUpQueries(WarmupReport report, List<ProcessDefinition> definitions, Samples samples) {
+        HistoryService historyService = processEngine.getHistoryService();
+        String userId = samples.userId();
+        String processInstanceId = samples.processInstanceId();
+        attempt(report, "listCompletableTask", () -> activitiUtils.listCompletableTask(userId));
+        attempt(report, "listPendingApprovalProcessInstances",
+                () -> activitiUtils.listPendingApprovalProcessInstances(userId));
+        if (samples.task() == null) {
+            attempt(report, "processInstanceIds", () -> processEngine.getRuntimeService().createProcessInstanceQuery()
+                    .processInstanceIds(Set.of(SYNTHETIC_ID)).orderByProcessInstanceId().desc().list());
+        }
+        String assignee = samples.historicTask() == null ? SYNTHETIC_ID : samples.historicTask().getAssignee();
+        attempt(report, "listHistoricProcessInstances",
+                () -> activitiUtils.listHistoricProcessInstances(assignee, null, new Date()));
+        if (samples.historicTask() == null) {
+            attempt(report, "historicProcessInstanceIds", () -> historyService.createHistoricProcessInstanceQuery()
+                    .processInstanceIds(Set.of(SYNTHETIC_ID)).orderByProcessInstanceEndTime().desc().list());
+        }
+        attempt(report, "listHistoryTasks", () -> activitiUtils.listHistoryTasks(processInstanceId));
+        attempt(report, "listCurrentTasks", () -> activitiUtils.listCurrentTasks(processInstanceId));
+        attempt(report, "listCurrentTasks", () -> activitiUtils.listCurrentTasks(List.of(processInstanceId)));
+        attempt(report, "getLastTask", () -> activitiUtils.getLastTask(processInstanceId));
+        String taskId = samples.task() == null ? SYNTHETIC_ID : samples.task().getId();
+        attempt(report, "getTaskVariables", () -> activitiUtils.getTaskVariables(taskId));
+        String businessKey = samples.businessKey() == null ? SYNTHETIC_ID : samples.businessKey();
+        attempt(report, "listProcessInstancesByBusinessKeys",
+                () -> activitiUtils.listProcessInstancesByBusinessKeys(List.of(businessKey)));
+        for (ProcessDefinition definition : definitions) {
+            attempt(report, "listCompletableTask", () -> activitiUtils.listCompletableTask(userId, definition.getKey()));
+            attempt(report, "getLastProcessInstance", () -> activitiUtils.getLastProcessInstance(definition.getKey()));
+        }
+    }
+
+    private <T> T phase(WarmupReport report, String name, Supplier<T> supplier) {
+        long start = System.currentTimeMillis();
+        T result = supplier.get();
+        report.getPhaseMillis().put(name, System.currentTimeMillis() - start);
+        return result;
+    }
+
+    private void attempt(WarmupReport report, String name, Runnable call) {
+        try {
+            call.run();
+        } catch (RuntimeException e) {
+            String error = "%s：%s".formatted(name, e.getMessage());
+            if (!report.getErrors().contains(error)) {
+                report.getErrors().add(error);
+                log.warn("预热调用失败，" + error);
+            }
+        }
+    }
+
+    /**
+     * 预热使用的最近数据，没有时为 null
+     *
+     * @param task         最近创建的任务
+     * @param userId       能处理该任务的用户（委托人或候选人），没有时为不存在的用户id
+     * @param historicTask 最近完成的有委托人的历史任务
+     * @param businessKey  最近启动的流程实例的业务 key
+     */
+    private record Samples(Task task, String userId, HistoricTaskInstance historicTask, String businessKey) {
+
+        static Samples load(ProcessEngine processEngine) {
+            Task task = first(processEngine.getTaskService().createTaskQuery()
+                    .orderByTaskCreateTime().desc().listPage(0, 1));
+            String userId = null;
+            if (task != null) {
+                userId = task.getAssignee();
+                if (userId == null) {
+                    userId = processEngine.getTaskService().getIdentityLinksForTask(task.getId()).stream()
+                            .map(IdentityLink::getUserId)
+                            .filter(Objects::nonNull)
+                            .findFirst()
+                            .orElse(null);
+                }
+            }
+            HistoricTaskInstance historicTask = processEngine.getHistoryService().createHistoricTaskInstanceQuery()
+                    .finished().orderByHistoricTaskInstanceEndTime().desc().listPage(0, 20).stream()
+                    .filter(t -> t.getAssignee() != null)
+                    .findFirst()
+                    .orElse(null);
+            HistoricProcessInstance instance = first(processEngine.getHistoryService().createHistoricProcessInstanceQuery()
+                    .orderByProcessInstanceStartTime().desc().listPage(0, 1));
+            return new Samples(task, userId == null ? SYNTHETIC_ID : userId, historicTask,
+                    instance == null ? null : instance.getBusinessKey());
+        }
+
+        String processInstanceId() {
+            if (task != null) {
+                return task.getProcessInstanceId();
+            }
+            return historicTask == null ? SYNTHETIC_ID : historicTask.getProcessInstanceId();
+        }
+
+        private static <T> T first(List<T> list) {
+            return list.isEmpty() ? null : list.get(0);
+        }
+    }
+}
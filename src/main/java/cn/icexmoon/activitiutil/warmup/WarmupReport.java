@@ -0,0 +1,36 @@
+package cn.icexmoon.activitiutil.warmup;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @ClassName WarmupReport
+ * @Description 预热结果：各阶段耗时及出现的错误
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 下午7:10
+ * @Version 1.0
+ */
+@Data
+public class WarmupReport {
+    // 阶段名称 -> 耗时（毫秒），按执行顺序
+    private final Map<String, Long> phaseMillis = new LinkedHashMap<>();
+    // 已加载的流程定义id
+    private final List<String> processDefinitionIds = new ArrayList<>();
+    // 预热过程中出现的错误（不会中断预热）
+    private final List<String> errors = new ArrayList<>();
+
+    public long getTotalMillis() {
+        return phaseMillis.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * @return 是否没有出现错误
+     */
+    public boolean isSuccess() {
+        return errors.isEmpty();
+    }
+}
@@ -0,0 +1,136 @@
+package cn.icexmoon.activitiutil;
+
+import cn.icexmoon.activitiutil.archive.ArchiveReader;
+import cn.icexmoon.activitiutil.archive.ArchivedProcessInstance;
+import cn.icexmoon.activitiutil.archive.HistoryArchiver;
+import cn.icexmoon.activitiutil.support.H2ProcessEngines;
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.history.HistoricProcessInstance;
+import org.activiti.engine.history.HistoricTaskInstance;
+import org.activiti.engine.runtime.ProcessInstance;
+import org.activiti.engine.task.Task;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * @ClassName ArchiveTests
+ * @Description
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 下午5:10
+ * @Version 1.0
+ */
+public class ArchiveTests {
+
+    @Test
+    public void testArchiveAndRead() throws Exception {
+        ProcessEngine processEngine = H2ProcessEngines.build("archive");
+        Path directory = Files.createTempDirectory("archive");
+        try {
+            H2ProcessEngines.deployTravel(processEngine);
+            ActivitiUtils activitiUtils = new ActivitiUtils(processEngine);
+            List<String> processInstanceIds = new ArrayList<>();
+            String managerTaskId = null;
+            for (int i = 0; i < 7; i++) {
+                ProcessInstance instance = activitiUtils.startAndNext("travel_apply", String.valueOf(i), new HashMap<>());
+                processInstanceIds.add(instance.getId());
+                Task task;
+                while ((task = activitiUtils.getLastTask(instance.getId())) != null) {
+                    Map<String, Object> vars = new HashMap<>();
+                    vars.put("opinion", "同意" + i);
+                    activitiUtils.completeTaskWithCheck(task.getAssignee(), task.getId(), vars);
+                    if (managerTaskId == null) {
+                        managerTaskId = task.getId();
+                    }
+                }
+            }
+            List<HistoricProcessInstance> before = activitiUtils.listHistoricProcessInstances("Tom", null, null);
+            Assert.assertEquals(7, before.size());
+
+            ArchiveReader archiveReader = new ArchiveReader(directory);
+            HistoryArchiver archiver = new HistoryArchiver(processEngine, archiveReader, 3);
+            Assert.assertEquals(7, archiver.archive(new Date(System.currentTimeMillis() + 1000)));
+            Assert.assertEquals(3, archiveReader.getSegmentCount());
+            Assert.assertEquals(0, processEngine.getHistoryService().createHistoricProcessInstanceQuery().count());
+
+            // 未设置归档读取器时查不到
+            Assert.assertTrue(activitiUtils.listHistoricProcessInstances("Tom", null, null).isEmpty());
+            activitiUtils.setArchiveReader(archiveReader);
+            List<HistoricProcessInstance> after = activitiUtils.listHistoricProcessInstances("Tom", null, null);
+            Assert.assertEquals(7, after.size());
+            Assert.assertTrue(activitiUtils.listHistoricProcessInstances("Tom", new Date(), null).isEmpty());
+            List<HistoricTaskInstance> tasks = activitiUtils.listHistoryTasks(processInstanceIds.get(0));
+            Assert.assertEquals(4, tasks.size());
+            Assert.assertEquals("创建出差申请", tasks.get(0).getName());
+            Assert.assertEquals("同意0", activitiUtils.getTaskVariables(managerTaskId).get("opinion"));
+
+            // 重新打开归档目录
+            ArchiveReader reopened = new ArchiveReader(directory);
+            Assert.assertEquals(7, reopened.getInstanceCount());
+            Assert.assertEquals("6", reopened.getProcessInstance(processInstanceIds.get(6)).getBusinessKey());
+        } finally {
+            processEngine.close();
+        }
+    }
+
+    @Test
+    public void testArchiveAuditRows() throws Exception {
+        ProcessEngine processEngine = H2ProcessEngines.build("archive-audit", cfg -> cfg.setSerializePOJOsInVariablesToJson(true));
+        Path directory = Files.createTempDirectory("archive-audit");
+        try {
+            H2ProcessEngines.deployTravel(processEngine);
+            ActivitiUtils activitiUtils = new ActivitiUtils(processEngine);
+            ProcessInstance instance = activitiUtils.startAndNext("travel_apply", "1", new HashMap<>());
+            Task task = activitiUtils.getLastTask(instance.getId());
+            processEngine.getTaskService().addComment(task.getId(), instance.getId(), "请补充行程");
+            Map<String, Object> vars = new HashMap<>();
+            // 不能 Java 序列化的对象以 JSON 存储
+            vars.put("trip", new Trip("上海"));
+            activitiUtils.rejectTask(task.getId(), "Tom", "审批未通过", vars);
+
+            ArchiveReader archiveReader = new ArchiveReader(directory);
+            HistoryArchiver archiver = new HistoryArchiver(processEngine, archiveReader);
+            Assert.assertEquals(1, archiver.archive(new Date(System.currentTimeMillis() + 1000)));
+            Assert.assertEquals(0, processEngine.getHistoryService().createHistoricActivityInstanceQuery().count());
+
+            ArchivedProcessInstance archived = archiveReader.getProcessInstance(instance.getId());
+            Map<String, List<Map<String, Object>>> rows = archived.getHistoryRows();
+            String activityTable = processEngine.getManagementService().getTableName(org.activiti.engine.history.HistoricActivityInstance.class);
+            Assert.assertTrue(rows.get(activityTable).size() >= 3);
+            Assert.assertTrue(rows.values().stream().flatMap(List::stream)
+                    .anyMatch(row -> "请补充行程".equals(row.get("MESSAGE_"))));
+            Assert.assertTrue(rows.values().stream().flatMap(List::stream)
+                    .anyMatch(row -> "trip".equals(row.get("NAME_")) && String.valueOf(row.get("TEXT_")).contains("上海")));
+            Assert.assertTrue(archived.getVariables().stream()
+                    .anyMatch(variable -> "trip".equals(variable.getName()) && "json".equals(variable.getTypeName())
+                            && variable.getValue() == null));
+        } finally {
+            processEngine.close();
+        }
+    }
+
+    /**
+     * 没有实现 Serializable 的变量
+     */
+    public static class Trip {
+        private String city;
+
+        public Trip() {
+        }
+
+        public Trip(String city) {
+            this.city = city;
+        }
+
+        public String getCity() {
+            return city;
+        }
+
+        public void setCity(String city) {
+            this.city = city;
+        }
+    }
+}
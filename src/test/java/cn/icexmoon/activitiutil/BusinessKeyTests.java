@@ -0,0 +1,77 @@
+package cn.icexmoon.activitiutil;
+
+import cn.icexmoon.activitiutil.dto.ProcessInstanceTasks;
+import cn.icexmoon.activitiutil.support.H2ProcessEngines;
+import org.activiti.engine.ProcessEngine;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @ClassName BusinessKeyTests
+ * @Description
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 上午11:40
+ * @Version 1.0
+ */
+public class BusinessKeyTests {
+    private static ProcessEngine processEngine;
+    private static ActivitiUtils activitiUtils;
+
+    @BeforeClass
+    public static void init() {
+        processEngine = H2ProcessEngines.build("business-key");
+        H2ProcessEngines.deployTravel(processEngine);
+        activitiUtils = new ActivitiUtils(processEngine);
+        for (long i = 1; i <= 1200; i++) {
+            activitiUtils.start("travel_apply", i, new HashMap<>());
+        }
+    }
+
+    @AfterClass
+    public static void close() {
+        processEngine.close();
+    }
+
+    @Test
+    public void testListByBusinessKeys() {
+        List<Long> businessKeys = new ArrayList<>();
+        for (long i = 1; i <= 1300; i++) {
+            businessKeys.add(i);
+        }
+        Map<Long, ProcessInstanceTasks> result = activitiUtils.listProcessInstancesByLongBusinessKeys(businessKeys, "travel_apply");
+        Assert.assertEquals(1200, result.size());
+        ProcessInstanceTasks instanceTasks = result.get(600L);
+        Assert.assertEquals("600", instanceTasks.getProcessInstance().getBusinessKey());
+        Assert.assertEquals(1, instanceTasks.getCurrentTasks().size());
+        Assert.assertEquals("创建出差申请", instanceTasks.getCurrentTasks().get(0).getName());
+        Assert.assertTrue(activitiUtils.listProcessInstancesByLongBusinessKeys(businessKeys, "candidate").isEmpty());
+    }
+
+    @Test
+    public void testEndedProcessInstance() {
+        String running = activitiUtils.start("travel_apply", 5001L, new HashMap<>()).getId();
+        String ended = activitiUtils.start("travel_apply", 5002L, new HashMap<>()).getId();
+        processEngine.getRuntimeService().deleteProcessInstance(ended, "测试");
+
+        Map<Long, ProcessInstanceTasks> result = activitiUtils.listProcessInstancesByLongBusinessKeys(List.of(5001L, 5002L, 5003L));
+        Assert.assertEquals(2, result.size());
+        ProcessInstanceTasks runningTasks = result.get(5001L);
+        Assert.assertFalse(runningTasks.isEnded());
+        Assert.assertEquals(running, runningTasks.getProcessInstanceId());
+        Assert.assertEquals("travel_apply", runningTasks.getProcessInstance().getProcessDefinitionKey());
+        Assert.assertEquals(1, runningTasks.getCurrentTasks().size());
+        ProcessInstanceTasks endedTasks = result.get(5002L);
+        Assert.assertTrue(endedTasks.isEnded());
+        Assert.assertEquals(ended, endedTasks.getProcessInstanceId());
+        Assert.assertEquals("travel_apply", endedTasks.getHistoricProcessInstance().getProcessDefinitionKey());
+        Assert.assertTrue(endedTasks.getCurrentTasks().isEmpty());
+        Assert.assertTrue(activitiUtils.listProcessInstancesByLongBusinessKeys(List.of(5002L), "candidate").isEmpty());
+    }
+}
@@ -0,0 +1,137 @@
+package cn.icexmoon.activitiutil;
+
+import cn.icexmoon.activitiutil.dto.TravelForm;
+import cn.icexmoon.activitiutil.support.H2ProcessEngines;
+import cn.icexmoon.activitiutil.variable.CompressedSerializableType;
+import cn.icexmoon.activitiutil.variable.CompressedVariableTypeConfigurator;
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.runtime.ProcessInstance;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @ClassName CompressedVariableTests
+ * @Description
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 下午8:55
+ * @Version 1.0
+ */
+public class CompressedVariableTests {
+
+    @Test
+    public void testCompressLargeVariable() {
+        CompressedVariableTypeConfigurator configurator = new CompressedVariableTypeConfigurator(new CompressedSerializableType(1024));
+        ProcessEngine processEngine = H2ProcessEngines.build("compressed-variable",
+                cfg -> {
+                    cfg.setConfigurators(List.of(configurator));
+                    // POJO 和集合按 Java 序列化保存
+                    cfg.setSerializePOJOsInVariablesToJson(false);
+                });
+        try {
+            H2ProcessEngines.deployTravel(processEngine);
+            ActivitiUtils activitiUtils = new ActivitiUtils(processEngine);
+            ArrayList<String> attachments = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                attachments.add("附件-%d.pdf".formatted(i));
+            }
+            Map<String, Object> variables = new HashMap<>();
+            variables.put("form", new TravelForm("ZhangSan", 6));
+            variables.put("attachments", attachments);
+            ProcessInstance instance = activitiUtils.startAndNext("travel_apply", "1", variables);
+
+            CompressedSerializableType type = configurator.getVariableType();
+            // 只有超过阈值的附件列表被压缩，表单仍按默认类型保存
+            Assert.assertEquals(1, type.getWrites());
+            Assert.assertTrue(type.getStoredBytes() < type.getRawBytes());
+            long storedBytes = type.getStoredBytes();
+            Assert.assertEquals(attachments, processEngine.getRuntimeService().getVariable(instance.getId(), "attachments"));
+            // 读取后引擎会检查变量是否被修改，没有修改时不重新写入
+            Assert.assertEquals(1, type.getWrites());
+            Assert.assertEquals(storedBytes, type.getStoredBytes());
+            Object form = processEngine.getRuntimeService().getVariable(instance.getId(), "form");
+            Assert.assertEquals(6, ((TravelForm) form).getDays());
+        } finally {
+            processEngine.close();
+        }
+    }
+
+    @Test
+    public void testUpdateLargeVariable() {
+        CompressedVariableTypeConfigurator configurator = new CompressedVariableTypeConfigurator(new CompressedSerializableType(1024));
+        ProcessEngine processEngine = H2ProcessEngines.build("compressed-variable-update",
+                cfg -> {
+                    cfg.setConfigurators(List.of(configurator));
+                    // POJO 和集合按 Java 序列化保存
+                    cfg.setSerializePOJOsInVariablesToJson(false);
+                });
+        try {
+            H2ProcessEngines.deployTravel(processEngine);
+            ActivitiUtils activitiUtils = new ActivitiUtils(processEngine);
+            ArrayList<String> attachments = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                attachments.add("附件-%d.pdf".formatted(i));
+            }
+            Map<String, Object> variables = new HashMap<>();
+            variables.put("attachments", attachments);
+            ProcessInstance instance = activitiUtils.startAndNext("travel_apply", "1", variables);
+
+            attachments.add("附件-500.pdf");
+            processEngine.getRuntimeService().setVariable(instance.getId(), "attachments", attachments);
+            CompressedSerializableType type = configurator.getVariableType();
+            Assert.assertEquals(2, type.getWrites());
+            Assert.assertEquals(attachments, processEngine.getRuntimeService().getVariable(instance.getId(), "attachments"));
+            Assert.assertEquals(2, type.getWrites());
+        } finally {
+            processEngine.close();
+        }
+    }
+
+    @Test
+    public void testJsonVariablesKeepFormat() {
+        CompressedVariableTypeConfigurator configurator = new CompressedVariableTypeConfigurator(new CompressedSerializableType(1024));
+        ProcessEngine processEngine = H2ProcessEngines.build("compressed-variable-json",
+                cfg -> {
+                    cfg.setConfigurators(List.of(configurator));
+                    cfg.setSerializePOJOsInVariablesToJson(true);
+                });
+        try {
+            H2ProcessEngines.deployTravel(processEngine);
+            ActivitiUtils activitiUtils = new ActivitiUtils(processEngine);
+            Itinerary itinerary = new Itinerary();
+            for (int i = 0; i < 500; i++) {
+                itinerary.getStops().add("站点-%d".formatted(i));
+            }
+            Map<String, Object> variables = new HashMap<>();
+            variables.put("itinerary", itinerary);
+            ProcessInstance instance = activitiUtils.startAndNext("travel_apply", "1", variables);
+
+            // 以 JSON 保存的 POJO 即使超过阈值也不改为压缩存储
+            String typeName = processEngine.getRuntimeService().getVariableInstance(instance.getId(), "itinerary").getTypeName();
+            Assert.assertNotEquals(CompressedSerializableType.TYPE_NAME, typeName);
+            Assert.assertEquals(0, configurator.getVariableType().getWrites());
+        } finally {
+            processEngine.close();
+        }
+    }
+
+    /**
+     * 可以 Java 序列化、也可以 JSON 序列化的 POJO
+     */
+    public static class Itinerary implements Serializable {
+        private List<String> stops = new ArrayList<>();
+
+        public List<String> getStops() {
+            return stops;
+        }
+
+        public void setStops(List<String> stops) {
+            this.stops = stops;
+        }
+    }
+}
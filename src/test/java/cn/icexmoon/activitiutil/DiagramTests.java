@@ -0,0 +1,147 @@
+package cn.icexmoon.activitiutil;
+
+import cn.icexmoon.activitiutil.diagram.DiagramCacheStats;
+import cn.icexmoon.activitiutil.diagram.ProcessDiagramRenderer;
+import cn.icexmoon.activitiutil.support.H2ProcessEngines;
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.TaskService;
+import org.activiti.engine.runtime.ProcessInstance;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @ClassName DiagramTests
+ * @Description
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/20 下午5:00
+ * @Version 1.0
+ */
+public class DiagramTests {
+
+    @Test
+    public void testCachedRendering() {
+        ProcessEngine processEngine = H2ProcessEngines.build("diagram");
+        try {
+            H2ProcessEngines.deployTravel(processEngine);
+            ActivitiUtils activitiUtils = new ActivitiUtils(processEngine);
+            ProcessInstance first = activitiUtils.startAndNext("travel_apply", "1", new HashMap<>());
+            ProcessInstance second = activitiUtils.startAndNext("travel_apply", "2", new HashMap<>());
+
+            ProcessDiagramRenderer renderer = new ProcessDiagramRenderer(processEngine);
+            byte[] image = renderer.render(first.getId());
+            Assert.assertTrue(new String(image, StandardCharsets.UTF_8).contains("<svg"));
+            // 处于相同状态的实例共用缓存
+            Assert.assertArrayEquals(image, renderer.render(second.getId()));
+            DiagramCacheStats stats = renderer.getStats();
+            Assert.assertEquals(1, stats.getHits());
+            Assert.assertEquals(1, stats.getMisses());
+            Assert.assertEquals(1, stats.getEntries());
+            Assert.assertTrue(stats.getBytes() >= image.length);
+
+            // 推进后状态不同，重新渲染
+            activitiUtils.nextActivity(second.getId());
+            renderer.render(second.getId());
+            Assert.assertEquals(2, renderer.getStats().getMisses());
+            Assert.assertEquals(2, renderer.getStats().getEntries());
+
+            // 容量只够一张图时淘汰最久未使用的
+            ProcessDiagramRenderer small = new ProcessDiagramRenderer(processEngine, image.length + 4096, null);
+            small.render(first.getId());
+            small.render(second.getId());
+            Assert.assertEquals(1, small.getStats().getEntries());
+            Assert.assertEquals(1, small.getStats().getEvictions());
+
+            // 直接按流程定义和活动渲染
+            String processDefinitionId = first.getProcessDefinitionId();
+            Assert.assertNotNull(renderer.render(processDefinitionId, List.of()));
+            Assert.assertEquals(3, renderer.getStats().getEntries());
+        } finally {
+            processEngine.close();
+        }
+    }
+
+    @Test
+    public void testTakenFlows() {
+        ProcessEngine processEngine = H2ProcessEngines.build("diagram-flows");
+        try {
+            processEngine.getRepositoryService().createDeployment()
+                    .addClasspathResource("bpmn/diagram-review.bpmn20.xml")
+                    .deploy();
+            TaskService taskService = processEngine.getTaskService();
+            Map<String, Object> vars = new HashMap<>();
+            vars.put("days", 5);
+            ProcessInstance instance = processEngine.getRuntimeService().startProcessInstanceByKey("diagram_review", vars);
+            String processDefinitionId = instance.getProcessDefinitionId();
+            ActivitiUtils activitiUtils = new ActivitiUtils(processEngine);
+            taskService.complete(activitiUtils.getLastTask(instance.getId()).getId());
+            taskService.complete(activitiUtils.getLastTask(instance.getId()).getId());
+
+            ProcessDiagramRenderer renderer = new ProcessDiagramRenderer(processEngine);
+            renderer.render(instance.getId());
+            // 排它网关未选中的分支（flow_short）两端都执行过，但不高亮；财务审批是当前活动
+            renderer.render(processDefinitionId, List.of("start", "apply", "days_gateway", "review"), List.of("finance"),
+                    List.of("flow_start", "flow_apply", "flow_long", "flow_review"));
+            Assert.assertEquals(1, renderer.getStats().getMisses());
+            Assert.assertEquals(1, renderer.getStats().getHits());
+
+            // 退回后只高亮实际经过的退回连线（flow_back），不高亮未经过的通过连线
+            Map<String, Object> rejected = new HashMap<>();
+            rejected.put("passed", false);
+            taskService.complete(activitiUtils.getLastTask(instance.getId()).getId(), rejected);
+            renderer.render(instance.getId());
+            renderer.render(processDefinitionId,
+                    List.of("start", "apply", "days_gateway", "review", "finance", "pass_gateway"), List.of("apply"),
+                    List.of("flow_start", "flow_apply", "flow_long", "flow_review", "flow_finance", "flow_back"));
+            Assert.assertEquals(2, renderer.getStats().getMisses());
+            Assert.assertEquals(2, renderer.getStats().getHits());
+        } finally {
+            processEngine.close();
+        }
+    }
+
+    @Test
+    public void testConcurrentRendering() throws Exception {
+        ProcessEngine processEngine = H2ProcessEngines.build("diagram-concurrent");
+        try {
+            H2ProcessEngines.deployTravel(processEngine);
+            ActivitiUtils activitiUtils = new ActivitiUtils(processEngine);
+            ProcessInstance instance = activitiUtils.startAndNext("travel_apply", "1", new HashMap<>());
+            ProcessDiagramRenderer renderer = new ProcessDiagramRenderer(processEngine);
+            int requests = 32;
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            try {
+                CountDownLatch ready = new CountDownLatch(1);
+                List<Future<byte[]>> futures = new ArrayList<>();
+                for (int i = 0; i < requests; i++) {
+                    futures.add(executor.submit(() -> {
+                        ready.await();
+                        return renderer.render(instance.getProcessDefinitionId(), List.of());
+                    }));
+                }
+                ready.countDown();
+                for (Future<byte[]> future : futures) {
+                    Assert.assertNotNull(future.get(1, TimeUnit.MINUTES));
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+            // 每个请求只计一次，只有实际渲染的请求计为未命中
+            DiagramCacheStats stats = renderer.getStats();
+            Assert.assertEquals(requests, stats.getHits() + stats.getMisses());
+            Assert.assertEquals(1, stats.getMisses());
+        } finally {
+            processEngine.close();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package cn.icexmoon.activitiutil;
+
+import cn.icexmoon.activitiutil.identity.GroupMembershipIndex;
+import cn.icexmoon.activitiutil.support.H2ProcessEngines;
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.TaskService;
+import org.activiti.engine.runtime.ProcessInstance;
+import org.activiti.engine.task.Task;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @ClassName GroupCandidateTests
+ * @Description
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 下午9:40
+ * @Version 1.0
+ */
+public class GroupCandidateTests {
+
+    @Test
+    public void testGroupCandidate() {
+        ProcessEngine processEngine = H2ProcessEngines.build("group-candidate");
+        try {
+            H2ProcessEngines.deployTravel(processEngine);
+            ActivitiUtils activitiUtils = new ActivitiUtils(processEngine);
+            ProcessInstance instance = activitiUtils.startAndNext("travel_apply", "1", new HashMap<>());
+            // 把“经理审批”改为由 manager 组审批
+            TaskService taskService = processEngine.getTaskService();
+            Task task = activitiUtils.getLastTask(instance.getId());
+            taskService.setAssignee(task.getId(), null);
+            taskService.addCandidateGroup(task.getId(), "manager");
+
+            Map<String, Set<String>> memberships = Map.of("Lucy", Set.of("manager"), "Bob", Set.of("finance"));
+            int[] lookups = {0};
+            GroupMembershipIndex index = new GroupMembershipIndex(userId -> {
+                lookups[0]++;
+                return memberships.getOrDefault(userId, Set.of());
+            }, Duration.ofMinutes(1));
+
+            Assert.assertFalse(activitiUtils.canApprovalTask("Lucy", task.getId()));
+            activitiUtils.setGroupMembershipIndex(index);
+            Assert.assertEquals(List.of("manager"), activitiUtils.listCandidateGroups(task.getId()));
+            Assert.assertTrue(activitiUtils.canApprovalTask("Lucy", task.getId()));
+            Assert.assertFalse(activitiUtils.canApprovalTask("Bob", task.getId()));
+            Assert.assertEquals(1, activitiUtils.listCompletableTask("Lucy").size());
+            Assert.assertEquals(1, activitiUtils.listCompletableTask("Lucy", "travel_apply").size());
+            Assert.assertTrue(activitiUtils.listCompletableTask("Bob").isEmpty());
+            // 每个用户只加载一次所属组
+            Assert.assertEquals(2, lookups[0]);
+            index.invalidate("Lucy");
+            Map<String, Object> vars = new HashMap<>();
+            vars.put("opinion", "同意");
+            activitiUtils.completeTaskWithCheck("Lucy", task.getId(), vars);
+            Assert.assertEquals(3, lookups[0]);
+            Assert.assertEquals("Brus", activitiUtils.getLastTask(instance.getId()).getAssignee());
+        } finally {
+            processEngine.close();
+        }
+    }
+}
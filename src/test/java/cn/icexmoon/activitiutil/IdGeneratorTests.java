@@ -0,0 +1,117 @@
+package cn.icexmoon.activitiutil;
+
+import cn.icexmoon.activitiutil.id.SnowflakeIdGenerator;
+import cn.icexmoon.activitiutil.id.SnowflakeIdGeneratorConfigurator;
+import cn.icexmoon.activitiutil.support.H2ProcessEngines;
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.runtime.ProcessInstance;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * @ClassName IdGeneratorTests
+ * @Description
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 上午10:20
+ * @Version 1.0
+ */
+public class IdGeneratorTests {
+
+    @Test
+    public void testMonotonic() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(7);
+        String last = generator.getNextId();
+        for (int i = 0; i < 100000; i++) {
+            String id = generator.getNextId();
+            Assert.assertTrue(id.compareTo(last) > 0);
+            Assert.assertEquals(7, SnowflakeIdGenerator.parseNodeId(id));
+            last = id;
+        }
+    }
+
+    @Test
+    public void testConcurrentUnique() throws Exception {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1);
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(() -> {
+                for (int j = 0; j < 50000; j++) {
+                    ids.add(generator.getNextId());
+                }
+            }));
+        }
+        executor.shutdown();
+        awaitAll(futures, 1);
+        Assert.assertEquals(8 * 50000, ids.size());
+    }
+
+    /**
+     * 对比默认 DbIdGenerator 与 SnowflakeIdGenerator 下的流程启动吞吐量，只输出结果，需要时手动运行
+     */
+    @Ignore("基准测试，手动运行")
+    @Test
+    public void benchmarkStartThroughput() throws Exception {
+        ProcessEngine defaultEngine = H2ProcessEngines.build("bench-default");
+        ProcessEngine snowflakeEngine = H2ProcessEngines.build("bench-snowflake",
+                cfg -> cfg.setConfigurators(List.of(new SnowflakeIdGeneratorConfigurator(1))));
+        try {
+            double defaultTps = startThroughput(defaultEngine);
+            double snowflakeTps = startThroughput(snowflakeEngine);
+            System.out.println("DbIdGenerator：%.1f 实例/秒".formatted(defaultTps));
+            System.out.println("SnowflakeIdGenerator：%.1f 实例/秒".formatted(snowflakeTps));
+        } finally {
+            defaultEngine.close();
+            snowflakeEngine.close();
+        }
+    }
+
+    private double startThroughput(ProcessEngine processEngine) throws Exception {
+        final int threads = 4;
+        final int perThread = 250;
+        H2ProcessEngines.deployTravel(processEngine);
+        ActivitiUtils activitiUtils = new ActivitiUtils(processEngine);
+        // 预热
+        for (int i = 0; i < 50; i++) {
+            activitiUtils.start("travel_apply", "warmup-" + i, new HashMap<>());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    ProcessInstance instance = activitiUtils.start("travel_apply", thread + "-" + i, new HashMap<>());
+                    Assert.assertNotNull(instance.getId());
+                }
+            }));
+        }
+        executor.shutdown();
+        awaitAll(futures, 5);
+        long elapsed = System.nanoTime() - start;
+        return threads * perThread / (elapsed / 1_000_000_000.0);
+    }
+
+    /**
+     * 等待全部任务结束，工作线程中的断言失败或异常会让测试失败
+     */
+    private static void awaitAll(List<Future<?>> futures, long timeoutMinutes) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(timeoutMinutes);
+        for (Future<?> future : futures) {
+            try {
+                future.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Error error) {
+                    throw error;
+                }
+                throw (Exception) e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package cn.icexmoon.activitiutil;
+
+import cn.icexmoon.activitiutil.index.OpenTaskIndex;
+import cn.icexmoon.activitiutil.index.OpenTaskRef;
+import cn.icexmoon.activitiutil.support.H2ProcessEngines;
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.TaskService;
+import org.activiti.engine.runtime.ProcessInstance;
+import org.activiti.engine.task.Task;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @ClassName OpenTaskIndexTests
+ * @Description
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 下午11:40
+ * @Version 1.0
+ */
+public class OpenTaskIndexTests {
+
+    @Test
+    public void testIndexFollowsEngine() {
+        ProcessEngine processEngine = H2ProcessEngines.build("open-task-index");
+        try {
+            H2ProcessEngines.deployTravel(processEngine);
+            ActivitiUtils activitiUtils = new ActivitiUtils(processEngine);
+            // 注册前已存在的任务由首次对账加载
+            ProcessInstance first = activitiUtils.startAndNext("travel_apply", "1", new HashMap<>());
+            OpenTaskIndex index = new OpenTaskIndex(processEngine).register();
+            activitiUtils.setOpenTaskIndex(index);
+            Assert.assertEquals(1, index.getOpenTaskCount());
+            Assert.assertNotNull(index.getLastReconcileTime());
+
+            ProcessInstance second = activitiUtils.startAndNext("travel_apply", "2", new HashMap<>());
+            List<OpenTaskRef> tomTasks = activitiUtils.listCompletableTaskRefs("Tom", "travel_apply");
+            Assert.assertEquals(2, tomTasks.size());
+            Assert.assertEquals("经理审批", tomTasks.get(0).taskName());
+            Assert.assertTrue(index.listTasks("Tom", "other").isEmpty());
+
+            // 改为候选人审批
+            TaskService taskService = processEngine.getTaskService();
+            Task task = activitiUtils.getLastTask(second.getId());
+            taskService.setAssignee(task.getId(), null);
+            taskService.addCandidateUser(task.getId(), "Lucy");
+            Assert.assertEquals(1, index.listTasks("Tom").size());
+            Assert.assertEquals(task.getId(), index.listTasks("Lucy").get(0).taskId());
+
+            // 完成后移出索引，下一个任务进入索引
+            Map<String, Object> vars = new HashMap<>();
+            vars.put("opinion", "同意");
+            activitiUtils.completeTaskWithCheck("Lucy", task.getId(), vars);
+            Assert.assertTrue(index.listTasks("Lucy").isEmpty());
+            Assert.assertEquals(1, index.listTasks("Brus").size());
+            Assert.assertEquals(2, index.getOpenTaskCount());
+
+            // 删除流程实例后任务也应移出
+            processEngine.getRuntimeService().deleteProcessInstance(first.getId(), "测试");
+            Assert.assertTrue(index.listTasks("Tom").isEmpty());
+            Assert.assertTrue(index.getAppliedEvents() > 0);
+            Assert.assertTrue(index.estimateMemoryBytes() > 0);
+
+            // 增量维护正确时对账没有偏差，结果与数据库查询一致
+            Assert.assertEquals(0, index.reconcile());
+            Assert.assertEquals(activitiUtils.listCompletableTask("Brus").size(), index.listTasks("Brus").size());
+            index.close();
+        } finally {
+            processEngine.close();
+        }
+    }
+
+    @Test
+    public void testReconcileRepairsDrift() {
+        ProcessEngine processEngine = H2ProcessEngines.build("open-task-index-drift");
+        try {
+            H2ProcessEngines.deployTravel(processEngine);
+            ActivitiUtils activitiUtils = new ActivitiUtils(processEngine);
+            OpenTaskIndex index = new OpenTaskIndex(processEngine).register();
+            // 监听器注销期间的变更不会进入索引
+            processEngine.getRuntimeService().removeEventListener(index);
+            activitiUtils.startAndNext("travel_apply", "1", new HashMap<>());
+            Assert.assertTrue(index.listTasks("Tom").isEmpty());
+            Assert.assertEquals(1, index.reconcile());
+            Assert.assertEquals(1, index.getLastReconcileDrift());
+            Assert.assertEquals(1, index.listTasks("Tom").size());
+        } finally {
+            processEngine.close();
+        }
+    }
+}
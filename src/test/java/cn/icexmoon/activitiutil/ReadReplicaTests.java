@@ -0,0 +1,157 @@
+package cn.icexmoon.activitiutil;
+
+import cn.icexmoon.activitiutil.routing.HeartbeatLagProbe;
+import cn.icexmoon.activitiutil.routing.ReadReplicaRouter;
+import cn.icexmoon.activitiutil.support.H2ProcessEngines;
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.runtime.ProcessInstance;
+import org.activiti.engine.task.Task;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @ClassName ReadReplicaTests
+ * @Description 主库和副本是两个独立的 H2 内存库，用 SCRIPT/RUNSCRIPT 模拟复制
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/20 下午3:30
+ * @Version 1.0
+ */
+public class ReadReplicaTests {
+
+    @Test
+    public void testRouting() throws Exception {
+        ProcessEngine primary = H2ProcessEngines.build("rw-primary");
+        ProcessEngine replica = null;
+        try {
+            H2ProcessEngines.deployTravel(primary);
+            DataSource primaryDataSource = primary.getProcessEngineConfiguration().getDataSource();
+            JdbcDataSource replicaDataSource = new JdbcDataSource();
+            replicaDataSource.setURL("jdbc:h2:mem:rw-replica;DB_CLOSE_DELAY=-1");
+            replicate(primaryDataSource, replicaDataSource);
+            replica = ReadReplicaRouter.buildReplicaEngine(replicaDataSource, "rw-replica");
+
+            HeartbeatLagProbe lagProbe = new HeartbeatLagProbe(primary, replica);
+            // 心跳还没有复制到副本，延迟未知
+            Assert.assertNull(lagProbe.getLag());
+            lagProbe.beat();
+            replicate(primaryDataSource, replicaDataSource);
+            Assert.assertTrue(lagProbe.getLag().toMillis() < 5000);
+
+            ReadReplicaRouter router = new ReadReplicaRouter(primary, replica, lagProbe,
+                    Duration.ofSeconds(5), Duration.ofMillis(300));
+            ActivitiUtils activitiUtils = new ActivitiUtils(primary);
+            activitiUtils.setReadReplicaRouter(router);
+
+            // 写操作之后读己之写：读主库
+            ProcessInstance instance = activitiUtils.startAndNext("travel_apply", "1", new HashMap<>());
+            Assert.assertEquals(2, activitiUtils.listHistoryTasks(instance.getId()).size());
+            Assert.assertEquals(1, router.getPrimaryReads());
+
+            // 窗口过后读副本，复制之前副本上还没有该实例
+            Thread.sleep(400);
+            Assert.assertTrue(activitiUtils.listHistoryTasks(instance.getId()).isEmpty());
+            Assert.assertEquals(1, router.getReplicaReads());
+            replicate(primaryDataSource, replicaDataSource);
+            Assert.assertEquals(2, activitiUtils.listHistoryTasks(instance.getId()).size());
+            Assert.assertEquals(1, activitiUtils.listHistoricProcessInstances("Jack", null, null).size());
+            Assert.assertEquals(3, router.getReplicaReads());
+
+            // 审批后该用户、任务的读取回到主库
+            Task task = activitiUtils.getLastTask(instance.getId());
+            Map<String, Object> vars = new HashMap<>();
+            vars.put("opinion", "同意");
+            activitiUtils.completeTaskWithCheck("Tom", task.getId(), vars);
+            Assert.assertEquals(1, activitiUtils.listHistoricProcessInstances("Tom", null, null).size());
+            Assert.assertEquals("同意", activitiUtils.getTaskVariables(task.getId()).get("opinion"));
+            Assert.assertEquals(3, router.getPrimaryReads());
+            activitiUtils.printProcessInstance(instance.getId());
+
+            // 复制延迟超出容忍度时读主库
+            Thread.sleep(400);
+            ReadReplicaRouter lagging = new ReadReplicaRouter(primary, replica, () -> Duration.ofMinutes(1),
+                    Duration.ofSeconds(5), Duration.ofMillis(300));
+            activitiUtils.setReadReplicaRouter(lagging);
+            Assert.assertEquals(3, activitiUtils.listHistoryTasks(instance.getId()).size());
+            Assert.assertEquals(1, lagging.getPrimaryReads());
+            Assert.assertEquals(0, lagging.getReplicaReads());
+        } finally {
+            if (replica != null) {
+                replica.close();
+            }
+            primary.close();
+        }
+    }
+
+    @Test
+    public void testHeartbeatTable() throws Exception {
+        ProcessEngine primary = H2ProcessEngines.build("hb-primary");
+        ProcessEngine replica = null;
+        try {
+            DataSource primaryDataSource = primary.getProcessEngineConfiguration().getDataSource();
+            JdbcDataSource replicaDataSource = new JdbcDataSource();
+            replicaDataSource.setURL("jdbc:h2:mem:hb-replica;DB_CLOSE_DELAY=-1");
+            replicate(primaryDataSource, replicaDataSource);
+            replica = ReadReplicaRouter.buildReplicaEngine(replicaDataSource, "hb-replica");
+
+            HeartbeatLagProbe first = new HeartbeatLagProbe(primary, replica, "first");
+            HeartbeatLagProbe second = new HeartbeatLagProbe(primary, replica, "second");
+            long properties = count(primaryDataSource, "SELECT COUNT(*) FROM ACT_GE_PROPERTY");
+            first.beat();
+            first.beat();
+            second.beat();
+            // 心跳写入独立的表，每个探针一行，引擎的属性表不变
+            Assert.assertEquals(2, count(primaryDataSource, "SELECT COUNT(*) FROM " + HeartbeatLagProbe.TABLE_NAME));
+            Assert.assertEquals(properties, count(primaryDataSource, "SELECT COUNT(*) FROM ACT_GE_PROPERTY"));
+            replicate(primaryDataSource, replicaDataSource);
+            Assert.assertNotNull(first.getLag());
+
+            first.removeHeartbeat();
+            Assert.assertEquals(1, count(primaryDataSource, "SELECT COUNT(*) FROM " + HeartbeatLagProbe.TABLE_NAME));
+            replicate(primaryDataSource, replicaDataSource);
+            Assert.assertNull(first.getLag());
+            Assert.assertNotNull(second.getLag());
+        } finally {
+            if (replica != null) {
+                replica.close();
+            }
+            primary.close();
+        }
+    }
+
+    private static long count(DataSource dataSource, String sql) throws Exception {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    /**
+     * 用主库的快照覆盖副本
+     */
+    private static void replicate(DataSource primary, DataSource replica) throws Exception {
+        Path file = Files.createTempFile("replica", ".sql");
+        try {
+            try (Connection connection = primary.getConnection(); Statement statement = connection.createStatement()) {
+                statement.execute("SCRIPT TO '%s'".formatted(file.toAbsolutePath()));
+            }
+            try (Connection connection = replica.getConnection(); Statement statement = connection.createStatement()) {
+                statement.execute("DROP ALL OBJECTS");
+                statement.execute("RUNSCRIPT FROM '%s'".formatted(file.toAbsolutePath()));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package cn.icexmoon.activitiutil;
+
+import cn.icexmoon.activitiutil.event.TaskEventBus;
+import cn.icexmoon.activitiutil.event.TaskEventFilters;
+import cn.icexmoon.activitiutil.event.TaskEventSubscription;
+import cn.icexmoon.activitiutil.event.TaskEventType;
+import cn.icexmoon.activitiutil.index.OpenTaskIndex;
+import cn.icexmoon.activitiutil.reassign.BulkReassigner;
+import cn.icexmoon.activitiutil.reassign.ReassignCriteria;
+import cn.icexmoon.activitiutil.reassign.ReassignReport;
+import cn.icexmoon.activitiutil.support.H2ProcessEngines;
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.TaskService;
+import org.activiti.engine.history.HistoricIdentityLink;
+import org.activiti.engine.history.HistoricTaskInstance;
+import org.activiti.engine.runtime.ProcessInstance;
+import org.activiti.engine.task.IdentityLink;
+import org.activiti.engine.task.Task;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @ClassName ReassignTests
+ * @Description
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/20 上午10:00
+ * @Version 1.0
+ */
+public class ReassignTests {
+
+    @Test
+    public void testReassign() {
+        ProcessEngine processEngine = H2ProcessEngines.build("reassign");
+        try {
+            H2ProcessEngines.deployTravel(processEngine);
+            ActivitiUtils activitiUtils = new ActivitiUtils(processEngine);
+            List<ProcessInstance> instances = new ArrayList<>();
+            for (int i = 0; i < 7; i++) {
+                instances.add(activitiUtils.startAndNext("travel_apply", String.valueOf(i), new HashMap<>()));
+            }
+            // 其中一个任务改为候选人审批，且代理人已是候选人
+            TaskService taskService = processEngine.getTaskService();
+            Task candidateTask = activitiUtils.getLastTask(instances.get(0).getId());
+            taskService.setAssignee(candidateTask.getId(), null);
+            taskService.addCandidateUser(candidateTask.getId(), "Tom");
+            taskService.addCandidateUser(candidateTask.getId(), "Lily");
+
+            ReassignReport dryRun = activitiUtils.reassignTasks(ReassignCriteria.builder()
+                    .fromUserId("Tom").toUserId("Lily").dryRun(true).build());
+            Assert.assertEquals(7, dryRun.getMatchedTasks());
+            Assert.assertEquals(6, dryRun.getAssignedTasks());
+            // 与实际转交时删除的候选人身份数一致
+            Assert.assertEquals(1, dryRun.getCandidateLinks());
+            Assert.assertEquals(7, activitiUtils.listCompletableTask("Tom").size());
+
+            // 按流程定义过滤，不存在的定义不匹配任何任务
+            Assert.assertEquals(0, activitiUtils.reassignTasks(ReassignCriteria.builder()
+                    .fromUserId("Tom").toUserId("Lily").processDefinitionKey("other").build()).getMatchedTasks());
+
+            ReassignReport report = new BulkReassigner(processEngine, 3).reassign(ReassignCriteria.builder()
+                    .fromUserId("Tom").toUserId("Lily").processDefinitionKey("travel_apply").taskName("经理审批").build());
+            Assert.assertEquals(7, report.getMatchedTasks());
+            Assert.assertEquals(6, report.getAssignedTasks());
+            Assert.assertEquals(1, report.getCandidateLinks());
+            Assert.assertEquals(3, report.getChunks());
+            // 代理人在第一个实例中已经是参与者
+            Assert.assertEquals(6, report.getParticipantLinks());
+            Assert.assertTrue(report.getTasksPerSecond() > 0);
+
+            Assert.assertTrue(activitiUtils.listCompletableTask("Tom").isEmpty());
+            Assert.assertEquals(7, activitiUtils.listCompletableTask("Lily").size());
+            // 代理人只保留一个候选人身份
+            long lilyLinks = taskService.getIdentityLinksForTask(candidateTask.getId()).stream()
+                    .filter(link -> "candidate".equals(link.getType()) && "Lily".equals(link.getUserId()))
+                    .count();
+            Assert.assertEquals(1, lilyLinks);
+            List<IdentityLink> participants = processEngine.getRuntimeService()
+                    .getIdentityLinksForProcessInstance(instances.get(1).getId());
+            Assert.assertTrue(participants.stream().anyMatch(link -> "Lily".equals(link.getUserId())));
+            // 历史任务同步修改
+            Task task = activitiUtils.getLastTask(instances.get(1).getId());
+            HistoricTaskInstance historicTask = processEngine.getHistoryService().createHistoricTaskInstanceQuery()
+                    .taskId(task.getId()).singleResult();
+            Assert.assertEquals("Lily", historicTask.getAssignee());
+
+            // 转交后的任务可以由代理人正常完成
+            Map<String, Object> vars = new HashMap<>();
+            vars.put("opinion", "同意");
+            activitiUtils.completeTaskWithCheck("Lily", task.getId(), vars);
+            Assert.assertEquals("Brus", activitiUtils.getLastTask(instances.get(1).getId()).getAssignee());
+        } finally {
+            processEngine.close();
+        }
+    }
+
+    @Test
+    public void testReassignDelegatedTasksAndEvents() {
+        ProcessEngine processEngine = H2ProcessEngines.build("reassign-events");
+        try {
+            H2ProcessEngines.deployTravel(processEngine);
+            ActivitiUtils activitiUtils = new ActivitiUtils(processEngine);
+            OpenTaskIndex index = new OpenTaskIndex(processEngine).register();
+            activitiUtils.setOpenTaskIndex(index);
+            TaskEventBus bus = new TaskEventBus().register(processEngine);
+            TaskEventSubscription lily = bus.subscribe(TaskEventFilters.forUser("Lily"));
+            TaskService taskService = processEngine.getTaskService();
+            List<Task> tasks = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                ProcessInstance instance = activitiUtils.startAndNext("travel_apply", String.valueOf(i), new HashMap<>());
+                tasks.add(activitiUtils.getLastTask(instance.getId()));
+            }
+            // 第一个任务改为候选人审批，第二个任务被原审批人委派给了别人
+            Task candidateTask = tasks.get(0);
+            taskService.setAssignee(candidateTask.getId(), null);
+            taskService.addCandidateUser(candidateTask.getId(), "Tom");
+            Task delegatedTask = tasks.get(1);
+            taskService.delegateTask(delegatedTask.getId(), "Jack");
+
+            ReassignReport report = activitiUtils.reassignTasks(ReassignCriteria.builder()
+                    .fromUserId("Tom").toUserId("Lily").build());
+            Assert.assertEquals(3, report.getMatchedTasks());
+            Assert.assertEquals(1, report.getAssignedTasks());
+            Assert.assertEquals(1, report.getOwnedTasks());
+            Assert.assertEquals(1, report.getCandidateLinks());
+
+            // 委派处理完后任务回到代理人
+            Assert.assertEquals("Jack", taskService.createTaskQuery().taskId(delegatedTask.getId()).singleResult().getAssignee());
+            taskService.resolveTask(delegatedTask.getId());
+            Assert.assertEquals("Lily", taskService.createTaskQuery().taskId(delegatedTask.getId()).singleResult().getAssignee());
+
+            // 原审批人的历史身份关系保留，代理人的作为新记录
+            List<String> historicCandidates = processEngine.getHistoryService()
+                    .getHistoricIdentityLinksForTask(candidateTask.getId()).stream()
+                    .filter(link -> "candidate".equals(link.getType()))
+                    .map(HistoricIdentityLink::getUserId)
+                    .sorted()
+                    .toList();
+            Assert.assertEquals(List.of("Lily", "Tom"), historicCandidates);
+
+            // 监听器通过转交时发布的事件更新
+            List<String> events = lily.poll(10).stream().map(e -> e.getType() + ":" + e.getTaskId()).toList();
+            Assert.assertTrue(events.toString(), events.contains(TaskEventType.CANDIDATE_ADDED + ":" + candidateTask.getId()));
+            Assert.assertTrue(events.toString(), events.contains(TaskEventType.ASSIGNED + ":" + tasks.get(2).getId()));
+            Assert.assertTrue(index.listTasks("Tom").isEmpty());
+            Assert.assertEquals(3, index.listTasks("Lily").size());
+            index.close();
+        } finally {
+            processEngine.close();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package cn.icexmoon.activitiutil;
+
+import cn.icexmoon.activitiutil.sla.OverdueTask;
+import cn.icexmoon.activitiutil.sla.SlaPolicy;
+import cn.icexmoon.activitiutil.sla.SlaWatcher;
+import cn.icexmoon.activitiutil.support.H2ProcessEngines;
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.runtime.ProcessInstance;
+import org.activiti.engine.task.Task;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @ClassName SlaWatcherTests
+ * @Description
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/20 下午12:30
+ * @Version 1.0
+ */
+public class SlaWatcherTests {
+
+    @Test
+    public void testEscalation() throws InterruptedException {
+        ProcessEngine processEngine = H2ProcessEngines.build("sla-watcher");
+        try {
+            H2ProcessEngines.deployTravel(processEngine);
+            ActivitiUtils activitiUtils = new ActivitiUtils(processEngine);
+            // 启动监控前已存在的任务在启动时加载
+            ProcessInstance loaded = activitiUtils.startAndNext("travel_apply", "1", new HashMap<>());
+
+            Queue<OverdueTask> overdue = new ConcurrentLinkedQueue<>();
+            CountDownLatch latch = new CountDownLatch(2);
+            SlaPolicy policy = SlaPolicy.byTaskName(Map.of("经理审批", Duration.ofMillis(800)));
+            SlaWatcher watcher = new SlaWatcher(processEngine, policy, task -> {
+                overdue.add(task);
+                latch.countDown();
+            }, Duration.ofMillis(50)).start();
+            try {
+                ProcessInstance created = activitiUtils.startAndNext("travel_apply", "2", new HashMap<>());
+                // 按时完成的任务不会触发回调
+                ProcessInstance completed = activitiUtils.startAndNext("travel_apply", "3", new HashMap<>());
+                Task completedTask = activitiUtils.getLastTask(completed.getId());
+                Map<String, Object> vars = new HashMap<>();
+                vars.put("opinion", "同意");
+                activitiUtils.completeTaskWithCheck("Tom", completedTask.getId(), vars);
+                // 设置了到期时间的任务以到期时间为准
+                Task dueTask = activitiUtils.getLastTask(completed.getId());
+                dueTask.setDueDate(new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(10)));
+                processEngine.getTaskService().saveTask(dueTask);
+                Assert.assertEquals(3, watcher.getWatchedCount());
+
+                Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+                Set<String> taskIds = new HashSet<>();
+                for (OverdueTask task : overdue) {
+                    taskIds.add(task.taskId());
+                    Assert.assertFalse(task.deadline().after(new Date()));
+                    Assert.assertEquals("travel_apply", task.processDefinitionKey());
+                }
+                Assert.assertEquals(Set.of(activitiUtils.getLastTask(loaded.getId()).getId(),
+                        activitiUtils.getLastTask(created.getId()).getId()), taskIds);
+                // 回调最多晚一个 tick（加上线程调度的误差）
+                Assert.assertTrue(watcher.getMaxFireDelayMillis() < 1000);
+                Thread.sleep(200);
+                Assert.assertEquals(2, watcher.getFired());
+                Assert.assertEquals(1, watcher.getWatchedCount());
+            } finally {
+                watcher.close();
+            }
+        } finally {
+            processEngine.close();
+        }
+    }
+
+    @Test
+    public void testOverdueOnWheelThread() throws InterruptedException {
+        ProcessEngine processEngine = H2ProcessEngines.build("sla-watcher-overdue");
+        try {
+            H2ProcessEngines.deployTravel(processEngine);
+            ActivitiUtils activitiUtils = new ActivitiUtils(processEngine);
+            // 启动前已经超时的任务
+            ProcessInstance loaded = activitiUtils.startAndNext("travel_apply", "1", new HashMap<>());
+            Task loadedTask = activitiUtils.getLastTask(loaded.getId());
+            loadedTask.setDueDate(new Date(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1)));
+            processEngine.getTaskService().saveTask(loadedTask);
+
+            Queue<String> threads = new ConcurrentLinkedQueue<>();
+            Queue<String> keys = new ConcurrentLinkedQueue<>();
+            CountDownLatch latch = new CountDownLatch(2);
+            SlaWatcher watcher = new SlaWatcher(processEngine, SlaPolicy.byTaskName(Map.of()), task -> {
+                threads.add(Thread.currentThread().getName());
+                keys.add(task.escalationKey());
+                latch.countDown();
+            }, Duration.ofMillis(50)).start();
+            try {
+                Assert.assertEquals(1, watcher.getWatchedCount());
+                // 修改后已经超时的任务
+                ProcessInstance updated = activitiUtils.startAndNext("travel_apply", "2", new HashMap<>());
+                Task updatedTask = activitiUtils.getLastTask(updated.getId());
+                updatedTask.setDueDate(new Date(System.currentTimeMillis() - 1000));
+                processEngine.getTaskService().saveTask(updatedTask);
+
+                Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+                // 回调都在时间轮线程中执行，不在启动线程或提交事务的线程中
+                Assert.assertEquals(List.of("sla-watcher", "sla-watcher"), new ArrayList<>(threads));
+                Assert.assertTrue(keys.contains(loadedTask.getId() + "@" + loadedTask.getDueDate().getTime()));
+                // 调度前就已超时的任务不计入回调延迟
+                Assert.assertTrue(watcher.getMaxFireDelayMillis() < 1000);
+                Assert.assertEquals(0, watcher.getWatchedCount());
+            } finally {
+                watcher.close();
+            }
+        } finally {
+            processEngine.close();
+        }
+    }
+}
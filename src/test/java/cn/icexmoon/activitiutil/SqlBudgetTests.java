@@ -0,0 +1,303 @@
+package cn.icexmoon.activitiutil;
+
+import cn.icexmoon.activitiutil.index.OpenTaskIndex;
+import cn.icexmoon.activitiutil.support.H2ProcessEngines;
+import cn.icexmoon.activitiutil.support.SqlCountingDataSource;
+import cn.icexmoon.activitiutil.support.SqlStats;
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.TaskService;
+import org.activiti.engine.runtime.ProcessInstance;
+import org.activiti.engine.task.Task;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @ClassName SqlBudgetTests
+ * @Description 各操作的 SQL 预算，升级 Activiti 或修改实现后语句数超出预算、或随数据量增长（N+1）时失败。
+ * 预算是在当前实现上留有余量的上限，确实需要更多语句时再调整
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/20 下午7:40
+ * @Version 1.0
+ */
+public class SqlBudgetTests {
+    // 写操作的预算是统计的语句数加 10% 左右的余量，引擎升级后多出几条语句就会失败，失败信息中列出执行的语句。
+    // 审批“经理审批”：11 条查询（任务 3、任务变量、子任务、任务身份关系、历史任务、执行、历史活动、流程实例及其身份关系）
+    // + 10 条写入（历史变量，结束任务和历史任务、历史活动，更新执行，创建下个任务及其历史任务、历史活动、参与者身份），共 21 条
+    private static final int COMPLETE_TASK_BUDGET = 24;
+    private static final int PENDING_APPROVAL_BUDGET = 2;
+    private static final int BUSINESS_KEYS_BUDGET = 3;
+    private static final int HISTORIC_PROCESS_INSTANCES_BUDGET = 2;
+    private static final int TASK_VARIABLES_BUDGET = 1;
+    // 2 条查询（最新流程定义、流程实例身份关系）+ 7 条写入（执行、任务、身份关系及其历史，批量插入），共 9 条
+    private static final int START_BUDGET = 11;
+    // start 9 条 + getLastTask 1 条 + 完成第一个任务 17 条（与审批相同，但没有变量），共 27 条
+    private static final int START_AND_NEXT_BUDGET = 30;
+    // 权限检查和任务查询 2 条 + 写入局部变量 4 条 + 签收 5 条（含历史评论）+ 流程实例查询 1 条
+    // + 删除流程实例 37 条（任务、变量、身份关系、两个执行各自的作业和事件订阅查询，结束历史记录），共 49 条
+    private static final int REJECT_TASK_BUDGET = 54;
+    // 委托人只查任务，候选人再查一次身份关系
+    private static final int CAN_APPROVAL_BUDGET = 2;
+    private static final int TASK_EXECUTOR_BUDGET = 2;
+    private static final int SINGLE_QUERY_BUDGET = 1;
+    private ProcessEngine processEngine;
+    private SqlCountingDataSource dataSource;
+    private ActivitiUtils activitiUtils;
+
+    @Before
+    public void init() {
+        processEngine = H2ProcessEngines.buildCounting("sql-budget");
+        H2ProcessEngines.deployBundled(processEngine);
+        dataSource = SqlCountingDataSource.of(processEngine);
+        activitiUtils = new ActivitiUtils(processEngine);
+    }
+
+    @After
+    public void close() {
+        processEngine.close();
+    }
+
+    @Test
+    public void testCompleteTaskWithCheck() {
+        // 预热：第一次执行会加载流程定义缓存
+        complete(startManagerApproval(1).get(0));
+
+        SqlStats smaller = measureComplete(startManagerApproval(1).get(0))
+                .assertWithin("completeTaskWithCheck", COMPLETE_TASK_BUDGET);
+
+        // 其他流程实例、任务增多不影响单个任务的审批
+        startManagerApproval(20);
+        SqlStats larger = measureComplete(startManagerApproval(1).get(0));
+        SqlStats.assertNotGrowing("completeTaskWithCheck", smaller, larger);
+    }
+
+    @Test
+    public void testListPendingApprovalProcessInstances() {
+        startManagerApproval(1);
+        activitiUtils.listPendingApprovalProcessInstances("Tom");
+
+        SqlCountingDataSource.Measured<List<ProcessInstance>> smaller =
+                dataSource.measureCall(() -> activitiUtils.listPendingApprovalProcessInstances("Tom"));
+        Assert.assertEquals(1, smaller.result().size());
+        smaller.stats().assertWithin("listPendingApprovalProcessInstances", PENDING_APPROVAL_BUDGET);
+        // 1 个任务 + 1 个流程实例
+        Assert.assertEquals(2, smaller.stats().rowsFetched());
+
+        startManagerApproval(30);
+        SqlCountingDataSource.Measured<List<ProcessInstance>> larger =
+                dataSource.measureCall(() -> activitiUtils.listPendingApprovalProcessInstances("Tom"));
+        Assert.assertEquals(31, larger.result().size());
+        SqlStats.assertNotGrowing("listPendingApprovalProcessInstances", smaller.stats(), larger.stats());
+        Assert.assertEquals(62, larger.stats().rowsFetched());
+    }
+
+    @Test
+    public void testListProcessInstancesByBusinessKeys() {
+        List<String> businessKeys = new ArrayList<>();
+        for (int i = 1; i <= 300; i++) {
+            activitiUtils.start("travel_apply", String.valueOf(i), new HashMap<>());
+            businessKeys.add(String.valueOf(i));
+        }
+        activitiUtils.listProcessInstancesByBusinessKeys(businessKeys.subList(0, 1));
+
+        SqlStats smaller = dataSource.measure(() -> activitiUtils.listProcessInstancesByBusinessKeys(businessKeys.subList(0, 10)))
+                .assertWithin("listProcessInstancesByBusinessKeys", BUSINESS_KEYS_BUDGET);
+        SqlStats larger = dataSource.measure(() -> activitiUtils.listProcessInstancesByBusinessKeys(businessKeys));
+        SqlStats.assertNotGrowing("listProcessInstancesByBusinessKeys", smaller, larger);
+        // 300 个流程实例 id + 300 个流程实例 + 300 个当前任务
+        Assert.assertEquals(900, larger.rowsFetched());
+    }
+
+    @Test
+    public void testHistoryQueries() {
+        Task first = startManagerApproval(1).get(0);
+        complete(first);
+        activitiUtils.listHistoricProcessInstances("Tom", null, null);
+
+        SqlStats smaller = dataSource.measure(() -> activitiUtils.listHistoricProcessInstances("Tom", null, null))
+                .assertWithin("listHistoricProcessInstances", HISTORIC_PROCESS_INSTANCES_BUDGET);
+        for (Task task : startManagerApproval(15)) {
+            complete(task);
+        }
+        SqlStats larger = dataSource.measure(() -> activitiUtils.listHistoricProcessInstances("Tom", null, null));
+        SqlStats.assertNotGrowing("listHistoricProcessInstances", smaller, larger);
+
+        // 变量数增加不增加语句数（非字节数组存储的变量）
+        SqlStats fewVariables = dataSource.measure(() -> activitiUtils.getTaskVariables(first.getId()))
+                .assertWithin("getTaskVariables", TASK_VARIABLES_BUDGET);
+        Task task = startManagerApproval(1).get(0);
+        Map<String, Object> vars = new HashMap<>();
+        for (int i = 0; i < 20; i++) {
+            vars.put("field" + i, "值" + i);
+        }
+        activitiUtils.completeTaskWithCheck("Tom", task.getId(), vars);
+        SqlCountingDataSource.Measured<Map<String, Object>> manyVariables =
+                dataSource.measureCall(() -> activitiUtils.getTaskVariables(task.getId()));
+        Assert.assertEquals(20, manyVariables.result().size());
+        SqlStats.assertNotGrowing("getTaskVariables", fewVariables, manyVariables.stats());
+    }
+
+    @Test
+    public void testStart() {
+        // 预热：第一次执行会加载流程定义缓存
+        startManagerApproval(1);
+
+        SqlStats smallerStart = dataSource.measure(() -> activitiUtils.start("travel_apply", "1", new HashMap<>()))
+                .assertWithin("start", START_BUDGET);
+        SqlStats smallerStartAndNext = dataSource.measure(() -> activitiUtils.startAndNext("travel_apply", new HashMap<>()))
+                .assertWithin("startAndNext", START_AND_NEXT_BUDGET);
+
+        // 已有的流程实例增多不影响启动新的流程实例
+        startManagerApproval(20);
+        SqlStats largerStart = dataSource.measure(() -> activitiUtils.start("travel_apply", "2", new HashMap<>()));
+        SqlStats.assertNotGrowing("start", smallerStart, largerStart);
+        SqlStats largerStartAndNext = dataSource.measure(() -> activitiUtils.startAndNext("travel_apply", new HashMap<>()));
+        SqlStats.assertNotGrowing("startAndNext", smallerStartAndNext, largerStartAndNext);
+    }
+
+    @Test
+    public void testRejectTask() {
+        // 预热
+        reject(startManagerApproval(1).get(0));
+
+        Task task = startManagerApproval(1).get(0);
+        SqlStats smaller = dataSource.measure(() -> reject(task))
+                .assertWithin("rejectTask", REJECT_TASK_BUDGET);
+
+        // 其他流程实例增多不影响拒绝单个任务
+        startManagerApproval(20);
+        Task other = startManagerApproval(1).get(0);
+        SqlStats larger = dataSource.measure(() -> reject(other));
+        SqlStats.assertNotGrowing("rejectTask", smaller, larger);
+    }
+
+    @Test
+    public void testPermissionAndInboxQueries() {
+        TaskService taskService = processEngine.getTaskService();
+        Task task = startManagerApproval(1).get(0);
+        taskService.addCandidateUser(task.getId(), "Jerry");
+        activitiUtils.canApprovalTask("Tom", task.getId());
+
+        SqlStats assigned = dataSource.measure(() -> Assert.assertTrue(activitiUtils.canApprovalTask("Tom", task.getId())))
+                .assertWithin("canApprovalTask（委托人）", CAN_APPROVAL_BUDGET);
+        SqlStats candidate = dataSource.measure(() -> Assert.assertTrue(activitiUtils.canApprovalTask("Jerry", task.getId())))
+                .assertWithin("canApprovalTask（候选人）", CAN_APPROVAL_BUDGET);
+        SqlStats smallerInbox = dataSource.measure(() -> Assert.assertEquals(1, activitiUtils.listCompletableTask("Tom").size()))
+                .assertWithin("listCompletableTask", SINGLE_QUERY_BUDGET);
+        SqlStats smallerRefs = dataSource.measure(() -> Assert.assertEquals(1, activitiUtils.listCompletableTaskRefs("Tom", null).size()))
+                .assertWithin("listCompletableTaskRefs", SINGLE_QUERY_BUDGET);
+
+        // 任务增多后语句数不变
+        startManagerApproval(30);
+        SqlStats.assertNotGrowing("canApprovalTask（委托人）", assigned,
+                dataSource.measure(() -> activitiUtils.canApprovalTask("Tom", task.getId())));
+        SqlStats.assertNotGrowing("canApprovalTask（候选人）", candidate,
+                dataSource.measure(() -> activitiUtils.canApprovalTask("Jerry", task.getId())));
+        SqlStats.assertNotGrowing("listCompletableTask", smallerInbox,
+                dataSource.measure(() -> Assert.assertEquals(31, activitiUtils.listCompletableTask("Tom").size())));
+        SqlStats.assertNotGrowing("listCompletableTaskRefs", smallerRefs,
+                dataSource.measure(() -> Assert.assertEquals(31, activitiUtils.listCompletableTaskRefs("Tom", null).size())));
+
+        // 设置开放任务索引后完全在内存中查询
+        try (OpenTaskIndex index = new OpenTaskIndex(processEngine).register()) {
+            activitiUtils.setOpenTaskIndex(index);
+            dataSource.measure(() -> Assert.assertEquals(31, activitiUtils.listCompletableTaskRefs("Tom", null).size()))
+                    .assertWithin("listCompletableTaskRefs（开放任务索引）", 0);
+        } finally {
+            activitiUtils.setOpenTaskIndex(null);
+        }
+    }
+
+    @Test
+    public void testListCurrentTasksBatch() {
+        List<String> processInstanceIds = new ArrayList<>();
+        for (Task task : startManagerApproval(100)) {
+            processInstanceIds.add(task.getProcessInstanceId());
+        }
+        activitiUtils.listCurrentTasks(processInstanceIds.subList(0, 1));
+
+        SqlStats smaller = dataSource.measure(() -> activitiUtils.listCurrentTasks(processInstanceIds.subList(0, 1)))
+                .assertWithin("listCurrentTasks(Collection)", SINGLE_QUERY_BUDGET);
+        SqlCountingDataSource.Measured<Map<String, List<Task>>> larger =
+                dataSource.measureCall(() -> activitiUtils.listCurrentTasks(processInstanceIds));
+        Assert.assertEquals(100, larger.result().size());
+        SqlStats.assertNotGrowing("listCurrentTasks(Collection)", smaller, larger.stats());
+        Assert.assertEquals(100, larger.stats().rowsFetched());
+    }
+
+    @Test
+    public void testSingleInstanceQueries() {
+        TaskService taskService = processEngine.getTaskService();
+        Task task = startManagerApproval(1).get(0);
+        String processInstanceId = task.getProcessInstanceId();
+        // 没有委托人、只有候选人的任务，getTaskExecutor 需要再查一次身份关系
+        Task unassigned = startManagerApproval(1).get(0);
+        taskService.setAssignee(unassigned.getId(), null);
+        taskService.addCandidateUser(unassigned.getId(), "Jerry");
+        activitiUtils.getLastTask(processInstanceId);
+
+        Map<String, SqlStats> smaller = measureSingleInstanceQueries(task, unassigned);
+        // 其他流程实例增多不影响针对单个流程实例、任务的查询
+        startManagerApproval(30);
+        Map<String, SqlStats> larger = measureSingleInstanceQueries(task, unassigned);
+        for (Map.Entry<String, SqlStats> entry : smaller.entrySet()) {
+            SqlStats.assertNotGrowing(entry.getKey(), entry.getValue(), larger.get(entry.getKey()));
+        }
+    }
+
+    private Map<String, SqlStats> measureSingleInstanceQueries(Task task, Task unassigned) {
+        String processInstanceId = task.getProcessInstanceId();
+        Map<String, SqlStats> stats = new LinkedHashMap<>();
+        stats.put("getLastTask", dataSource.measure(() -> Assert.assertEquals(task.getId(), activitiUtils.getLastTask(processInstanceId).getId()))
+                .assertWithin("getLastTask", SINGLE_QUERY_BUDGET));
+        stats.put("listCurrentTasks(String)", dataSource.measure(() -> Assert.assertEquals(1, activitiUtils.listCurrentTasks(processInstanceId).size()))
+                .assertWithin("listCurrentTasks(String)", SINGLE_QUERY_BUDGET));
+        // 出差申请已完成，经理审批进行中
+        stats.put("listHistoryTasks", dataSource.measure(() -> Assert.assertEquals(2, activitiUtils.listHistoryTasks(processInstanceId).size()))
+                .assertWithin("listHistoryTasks", SINGLE_QUERY_BUDGET));
+        stats.put("getLastProcessInstance", dataSource.measure(() -> Assert.assertNotNull(activitiUtils.getLastProcessInstance("travel_apply")))
+                .assertWithin("getLastProcessInstance", SINGLE_QUERY_BUDGET));
+        stats.put("listCandidates", dataSource.measure(() -> Assert.assertEquals(List.of("Jerry"), activitiUtils.listCandidates(unassigned.getId())))
+                .assertWithin("listCandidates", SINGLE_QUERY_BUDGET));
+        stats.put("getTaskExecutor（委托人）", dataSource.measure(() -> Assert.assertEquals("Tom", activitiUtils.getTaskExecutor(task.getId())))
+                .assertWithin("getTaskExecutor（委托人）", TASK_EXECUTOR_BUDGET));
+        stats.put("getTaskExecutor（候选人）", dataSource.measure(() -> Assert.assertEquals("Jerry", activitiUtils.getTaskExecutor(unassigned.getId())))
+                .assertWithin("getTaskExecutor（候选人）", TASK_EXECUTOR_BUDGET));
+        return stats;
+    }
+
+    /**
+     * 启动流程实例并推进到经理审批（委托人 Tom）
+     */
+    private List<Task> startManagerApproval(int count) {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ProcessInstance instance = activitiUtils.startAndNext("travel_apply", new HashMap<>());
+            tasks.add(activitiUtils.getLastTask(instance.getId()));
+        }
+        return tasks;
+    }
+
+    private SqlStats measureComplete(Task task) {
+        return dataSource.measure(() -> complete(task));
+    }
+
+    private void complete(Task task) {
+        Map<String, Object> vars = new HashMap<>();
+        vars.put("opinion", "同意");
+        activitiUtils.completeTaskWithCheck("Tom", task.getId(), vars);
+    }
+
+    private void reject(Task task) {
+        Map<String, Object> vars = new HashMap<>();
+        vars.put("opinion", "不同意");
+        activitiUtils.rejectTask(task.getId(), "Tom", "不同意", vars);
+    }
+}
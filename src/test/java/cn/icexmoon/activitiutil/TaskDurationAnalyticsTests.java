@@ -0,0 +1,122 @@
+package cn.icexmoon.activitiutil;
+
+import cn.icexmoon.activitiutil.analytics.FileAnalyticsStore;
+import cn.icexmoon.activitiutil.analytics.QuantileSketch;
+import cn.icexmoon.activitiutil.analytics.TaskDurationAnalytics;
+import cn.icexmoon.activitiutil.support.H2ProcessEngines;
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.history.HistoricTaskInstance;
+import org.activiti.engine.runtime.ProcessInstance;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.Random;
+
+/**
+ * @ClassName TaskDurationAnalyticsTests
+ * @Description
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 下午2:50
+ * @Version 1.0
+ */
+public class TaskDurationAnalyticsTests {
+
+    @Test
+    public void testSketchAccuracy() {
+        QuantileSketch a = new QuantileSketch();
+        QuantileSketch b = new QuantileSketch();
+        Random random = new Random(42);
+        for (int i = 1; i <= 100000; i++) {
+            (random.nextBoolean() ? a : b).add(i);
+        }
+        a.merge(b);
+        Assert.assertEquals(100000, a.getCount());
+        for (double q : new double[]{0.5, 0.95, 0.99}) {
+            double expected = q * 100000;
+            Assert.assertEquals(expected, a.quantile(q), expected * 0.011);
+        }
+        Assert.assertTrue(a.getBucketCount() <= QuantileSketch.DEFAULT_MAX_BUCKETS);
+    }
+
+    @Test
+    public void testSketchBounded() {
+        QuantileSketch sketch = new QuantileSketch(0.01, 64);
+        for (int i = 1; i < 1_000_000; i *= 2) {
+            sketch.add(i);
+        }
+        Assert.assertTrue(sketch.getBucketCount() <= 64);
+        Assert.assertEquals(524288, sketch.quantile(1), 0);
+    }
+
+    @Test
+    public void testIncrementalRefresh() throws Exception {
+        ProcessEngine processEngine = H2ProcessEngines.build("analytics");
+        Path file = Files.createTempDirectory("analytics").resolve("snapshot.bin");
+        try {
+            H2ProcessEngines.deployTravel(processEngine);
+            ActivitiUtils activitiUtils = new ActivitiUtils(processEngine);
+            TaskDurationAnalytics analytics = new TaskDurationAnalytics(processEngine, new FileAnalyticsStore(file), 3);
+            for (int i = 0; i < 10; i++) {
+                ProcessInstance instance = activitiUtils.startAndNext("travel_apply", null);
+                activitiUtils.nextActivity(instance.getId());
+            }
+            // 每个实例完成了“创建出差申请”和“经理审批”两个任务
+            Assert.assertEquals(20, analytics.refresh());
+            Assert.assertEquals(0, analytics.refresh());
+            Assert.assertEquals(10, analytics.count("travel_apply", "经理审批", "Tom"));
+            Assert.assertEquals(10, analytics.count("travel_apply", "经理审批", null));
+            Assert.assertFalse(Double.isNaN(analytics.quantile("travel_apply", "经理审批", null, 0.95)));
+            // 重启后从快照恢复，不重复消费
+            TaskDurationAnalytics restored = new TaskDurationAnalytics(processEngine, new FileAnalyticsStore(file), 3);
+            Assert.assertEquals(0, restored.refresh());
+            Assert.assertEquals(10, restored.count("travel_apply", "创建出差申请", "Jack"));
+        } finally {
+            processEngine.close();
+        }
+    }
+
+    @Test
+    public void testLateCommit() throws Exception {
+        ProcessEngine processEngine = H2ProcessEngines.build("analytics-late");
+        try {
+            H2ProcessEngines.deployTravel(processEngine);
+            ActivitiUtils activitiUtils = new ActivitiUtils(processEngine);
+            TaskDurationAnalytics analytics = new TaskDurationAnalytics(processEngine, null, 2, Duration.ofMinutes(1));
+            ProcessInstance late = activitiUtils.startAndNext("travel_apply", null);
+            Thread.sleep(20);
+            ProcessInstance early = activitiUtils.startAndNext("travel_apply", null);
+            HistoricTaskInstance lateTask = processEngine.getHistoryService().createHistoricTaskInstanceQuery()
+                    .processInstanceId(late.getId())
+                    .finished()
+                    .singleResult();
+            // 模拟结束时间较早、但事务晚于后续任务提交的任务：刷新时还看不到
+            String table = processEngine.getManagementService().getTableName(HistoricTaskInstance.class);
+            setEndTime(processEngine, table, lateTask.getId(), null);
+            Assert.assertEquals(1, analytics.refresh());
+            Assert.assertTrue(analytics.getWatermark().after(lateTask.getEndTime()));
+
+            // 提交后结束时间低于水位线，但在安全延迟内，仍会被消费且只消费一次
+            setEndTime(processEngine, table, lateTask.getId(), new Timestamp(lateTask.getEndTime().getTime()));
+            Assert.assertEquals(1, analytics.refresh());
+            Assert.assertEquals(0, analytics.refresh());
+            Assert.assertEquals(2, analytics.count("travel_apply", "创建出差申请", "Jack"));
+        } finally {
+            processEngine.close();
+        }
+    }
+
+    private static void setEndTime(ProcessEngine processEngine, String table, String taskId, Timestamp endTime) throws Exception {
+        try (Connection connection = processEngine.getProcessEngineConfiguration().getDataSource().getConnection();
+             PreparedStatement statement = connection.prepareStatement("UPDATE %s SET END_TIME_ = ? WHERE ID_ = ?".formatted(table))) {
+            statement.setTimestamp(1, endTime);
+            statement.setString(2, taskId);
+            Assert.assertEquals(1, statement.executeUpdate());
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package cn.icexmoon.activitiutil;
+
+import cn.icexmoon.activitiutil.event.*;
+import cn.icexmoon.activitiutil.identity.GroupMembershipIndex;
+import cn.icexmoon.activitiutil.support.H2ProcessEngines;
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.runtime.ProcessInstance;
+import org.activiti.engine.task.Task;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @ClassName TaskEventBusTests
+ * @Description
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 下午6:40
+ * @Version 1.0
+ */
+public class TaskEventBusTests {
+
+    @Test
+    public void testDropOldest() {
+        TaskEventBus bus = new TaskEventBus(8, 0, TimeUnit.MILLISECONDS);
+        TaskEventSubscription subscription = bus.subscribe(null);
+        for (int i = 0; i < 20; i++) {
+            bus.publish(TaskLifecycleEvent.builder().type(TaskEventType.CREATED).taskId(String.valueOf(i)).build());
+        }
+        List<TaskLifecycleEvent> events = subscription.poll(100);
+        Assert.assertEquals(8, events.size());
+        Assert.assertEquals("12", events.get(0).getTaskId());
+        Assert.assertEquals(12, subscription.getDropped());
+        Assert.assertEquals(0, subscription.getLag());
+    }
+
+    @Test
+    public void testBackpressureWaitIsCapped() {
+        TaskEventBus bus = new TaskEventBus(8, 100, TimeUnit.MILLISECONDS);
+        TaskEventSubscription subscription = bus.subscribe(null, OverflowPolicy.BACKPRESSURE);
+        long start = System.nanoTime();
+        for (int i = 0; i < 40; i++) {
+            bus.publish(TaskLifecycleEvent.builder().type(TaskEventType.CREATED).taskId(String.valueOf(i)).build());
+        }
+        // 订阅者一直不读取，所有发布合计只等待一次 maxPublishWait，而不是每个事件都等待
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Assert.assertTrue(elapsedMillis >= 100);
+        Assert.assertTrue(elapsedMillis < 1000);
+        Assert.assertEquals(8, subscription.poll(100).size());
+        Assert.assertEquals(32, subscription.getDropped());
+    }
+
+    @Test
+    public void testPollWakesOnPublish() throws Exception {
+        TaskEventBus bus = new TaskEventBus(8, 0, TimeUnit.MILLISECONDS);
+        TaskEventSubscription subscription = bus.subscribe(null);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            long start = System.nanoTime();
+            Future<List<TaskLifecycleEvent>> future = executor.submit(() -> subscription.poll(10, 30, TimeUnit.SECONDS));
+            Thread.sleep(50);
+            bus.publish(TaskLifecycleEvent.builder().type(TaskEventType.CREATED).taskId("1").build());
+            Assert.assertEquals(1, future.get(30, TimeUnit.SECONDS).size());
+            Assert.assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 10);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testUserFilter() {
+        TaskEventBus bus = new TaskEventBus(64, 0, TimeUnit.MILLISECONDS);
+        GroupMembershipIndex groups = new GroupMembershipIndex(userId -> "Tom".equals(userId) ? Set.of("manager") : Set.of());
+        TaskEventSubscription tom = bus.subscribe(TaskEventFilters.forUser("Tom", groups));
+        // Tom 是候选人，任务被 Jerry 签收并完成，Tom 也能收到，以便移除该待办
+        bus.publish(event(TaskEventType.CANDIDATE_ADDED, "t1").candidateUserId("Tom").build());
+        bus.publish(event(TaskEventType.ASSIGNED, "t1").assignee("Jerry").build());
+        bus.publish(event(TaskEventType.COMPLETED, "t1").assignee("Jerry").build());
+        // 与 Tom 无关的任务
+        bus.publish(event(TaskEventType.ASSIGNED, "t2").assignee("Jerry").build());
+        bus.publish(event(TaskEventType.COMPLETED, "t2").assignee("Jerry").build());
+        // Tom 所在的候选组
+        bus.publish(event(TaskEventType.CANDIDATE_ADDED, "t3").candidateGroupId("manager").build());
+        bus.publish(event(TaskEventType.CANDIDATE_ADDED, "t4").candidateGroupId("finance").build());
+        bus.publish(event(TaskEventType.ASSIGNED, "t3").assignee("Brus").build());
+
+        List<String> received = tom.poll(100).stream().map(e -> e.getType() + ":" + e.getTaskId()).toList();
+        Assert.assertEquals(List.of("CANDIDATE_ADDED:t1", "ASSIGNED:t1", "COMPLETED:t1",
+                "CANDIDATE_ADDED:t3", "ASSIGNED:t3"), received);
+    }
+
+    private static TaskLifecycleEvent.TaskLifecycleEventBuilder event(TaskEventType type, String taskId) {
+        return TaskLifecycleEvent.builder().type(type).taskId(taskId).processInstanceId("p-" + taskId);
+    }
+
+    @Test
+    public void testEngineEvents() {
+        ProcessEngine processEngine = H2ProcessEngines.build("event-bus");
+        try {
+            H2ProcessEngines.deployTravel(processEngine);
+            TaskEventBus bus = new TaskEventBus().register(processEngine);
+            TaskEventSubscription tom = bus.subscribe(TaskEventFilters.forUser("Tom"));
+            TaskEventSubscription travel = bus.subscribe(TaskEventFilters.forProcessDefinition("travel_apply"));
+            ActivitiUtils activitiUtils = new ActivitiUtils(processEngine);
+            ProcessInstance instance = activitiUtils.startAndNext("travel_apply", "1", new HashMap<>());
+
+            List<TaskLifecycleEvent> events = tom.poll(10, 1, TimeUnit.SECONDS);
+            Assert.assertFalse(events.isEmpty());
+            Assert.assertTrue(events.stream().allMatch(e -> "Tom".equals(e.getAssignee())));
+            Assert.assertTrue(events.stream().anyMatch(e -> e.getType() == TaskEventType.CREATED
+                    || e.getType() == TaskEventType.ASSIGNED));
+
+            Task task = activitiUtils.getLastTask(instance.getId());
+            activitiUtils.rejectTask(task.getId(), "Tom", "审批未通过", new HashMap<>());
+            events = tom.poll(10);
+            Assert.assertTrue(events.stream().anyMatch(e -> e.getType() == TaskEventType.INSTANCE_DELETED
+                    && instance.getId().equals(e.getProcessInstanceId())));
+            Assert.assertTrue(travel.poll(100).size() >= 4);
+            tom.close();
+            Assert.assertEquals(1, bus.getSubscriberCount());
+        } finally {
+            processEngine.close();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package cn.icexmoon.activitiutil;
+
+import cn.icexmoon.activitiutil.support.H2ProcessEngines;
+import cn.icexmoon.activitiutil.variable.VariableDirtyChecker;
+import cn.icexmoon.activitiutil.variable.VariableWriteReport;
+import org.activiti.engine.ActivitiOptimisticLockingException;
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.TaskService;
+import org.activiti.engine.runtime.ProcessInstance;
+import org.activiti.engine.task.Task;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @ClassName VariableDirtyCheckTests
+ * @Description
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/20 下午6:40
+ * @Version 1.0
+ */
+public class VariableDirtyCheckTests {
+
+    @Test
+    public void testSkipUnchanged() {
+        ProcessEngine processEngine = H2ProcessEngines.build("dirty-check");
+        try {
+            H2ProcessEngines.deployTravel(processEngine);
+            List<VariableWriteReport> reports = new ArrayList<>();
+            VariableDirtyChecker checker = new VariableDirtyChecker(processEngine, reports::add);
+            ActivitiUtils activitiUtils = new ActivitiUtils(processEngine);
+            activitiUtils.setVariableDirtyChecker(checker);
+            ProcessInstance instance = activitiUtils.startAndNext("travel_apply", "1", new HashMap<>());
+            Task task = activitiUtils.getLastTask(instance.getId());
+
+            // 模拟表单保存过一次
+            TaskService taskService = processEngine.getTaskService();
+            Map<String, Object> form = new HashMap<>();
+            form.put("opinion", "待定");
+            form.put("days", 3);
+            form.put("attachment", new byte[8192]);
+            HashMap<String, Object> detail = new HashMap<>();
+            detail.put("city", "上海");
+            form.put("detail", detail);
+            taskService.setVariablesLocal(task.getId(), form);
+
+            // 原样提交，只有审批意见有变化
+            Map<String, Object> vars = new HashMap<>(form);
+            vars.put("attachment", new byte[8192]);
+            vars.put("opinion", "同意");
+            vars.put("remark", "新增");
+            activitiUtils.completeTaskWithCheck("Tom", task.getId(), vars);
+
+            Assert.assertEquals(1, reports.size());
+            VariableWriteReport report = reports.get(0);
+            Assert.assertEquals(task.getId(), report.getTaskId());
+            Assert.assertEquals(2, report.getChanged().size());
+            Assert.assertTrue(report.getChanged().containsKey("opinion"));
+            Assert.assertTrue(report.getChanged().containsKey("remark"));
+            Assert.assertEquals(3, report.getSkipped().size());
+            Assert.assertTrue(report.getBytesSaved() >= 8192);
+            Assert.assertTrue(report.getRowsSaved() >= 3);
+            Assert.assertEquals(3, checker.getSkippedVariables());
+
+            // 跳过的变量保持原值，变化的已写入
+            Map<String, Object> saved = activitiUtils.getTaskVariables(task.getId());
+            Assert.assertEquals("同意", saved.get("opinion"));
+            Assert.assertEquals("新增", saved.get("remark"));
+            Assert.assertEquals(3, saved.get("days"));
+            Assert.assertEquals(detail, saved.get("detail"));
+        } finally {
+            processEngine.close();
+        }
+    }
+
+    @Test
+    public void testIsUnchanged() {
+        Assert.assertTrue(VariableDirtyChecker.isUnchanged(null, null));
+        Assert.assertFalse(VariableDirtyChecker.isUnchanged(null, "a"));
+        Assert.assertTrue(VariableDirtyChecker.isUnchanged(new byte[]{1, 2}, new byte[]{1, 2}));
+        Assert.assertFalse(VariableDirtyChecker.isUnchanged(new byte[]{1, 2}, new byte[]{1, 3}));
+        // 类型不同视为有变化（存储类型会变）
+        Assert.assertFalse(VariableDirtyChecker.isUnchanged(1, 1L));
+        Assert.assertTrue(VariableDirtyChecker.isUnchanged(new Date(1000), new Date(1000)));
+        Assert.assertFalse(VariableDirtyChecker.isUnchanged(new Date(1000), new Timestamp(1000)));
+        Assert.assertTrue(VariableDirtyChecker.isUnchanged(new Form("上海", 3), new Form("上海", 3)));
+        Assert.assertFalse(VariableDirtyChecker.isUnchanged(new Form("上海", 3), new Form("北京", 3)));
+    }
+
+    /**
+     * 没有重写 equals 的可序列化对象
+     */
+    public static class Form implements java.io.Serializable {
+        private final String city;
+        private final int days;
+
+        public Form(String city, int days) {
+            this.city = city;
+            this.days = days;
+        }
+    }
+
+    @Test
+    public void testConcurrentWriteAfterCheck() throws InterruptedException {
+        ProcessEngine processEngine = H2ProcessEngines.build("dirty-check-concurrent");
+        try {
+            H2ProcessEngines.deployTravel(processEngine);
+            TaskService taskService = processEngine.getTaskService();
+            AtomicReference<String> concurrentTaskId = new AtomicReference<>();
+            // 比较之后、写入之前，另一个事务修改了同一个变量
+            VariableDirtyChecker checker = new VariableDirtyChecker(processEngine, report -> {
+                String taskId = concurrentTaskId.getAndSet(null);
+                if (taskId == null) {
+                    return;
+                }
+                Thread writer = new Thread(() -> taskService.setVariableLocal(taskId, "opinion", "驳回"));
+                writer.start();
+                try {
+                    writer.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            ActivitiUtils activitiUtils = new ActivitiUtils(processEngine);
+            activitiUtils.setVariableDirtyChecker(checker);
+            ProcessInstance instance = activitiUtils.startAndNext("travel_apply", "1", new HashMap<>());
+            Task task = activitiUtils.getLastTask(instance.getId());
+            taskService.setVariableLocal(task.getId(), "opinion", "待定");
+
+            concurrentTaskId.set(task.getId());
+            Map<String, Object> vars = new HashMap<>();
+            vars.put("opinion", "同意");
+            try {
+                activitiUtils.completeTaskWithCheck("Tom", task.getId(), vars);
+                Assert.fail("比较后被并发修改的变量不应被覆盖");
+            } catch (ActivitiOptimisticLockingException e) {
+                // 预期：写入时版本号冲突
+            }
+            // 整个操作回滚，并发写入的值保留
+            Assert.assertNotNull(taskService.createTaskQuery().taskId(task.getId()).singleResult());
+            Assert.assertEquals("驳回", taskService.getVariableLocal(task.getId(), "opinion"));
+        } finally {
+            processEngine.close();
+        }
+    }
+}
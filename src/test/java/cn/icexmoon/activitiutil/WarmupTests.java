@@ -0,0 +1,61 @@
+package cn.icexmoon.activitiutil;
+
+import cn.icexmoon.activitiutil.support.H2ProcessEngines;
+import cn.icexmoon.activitiutil.warmup.EngineWarmer;
+import cn.icexmoon.activitiutil.warmup.WarmupReport;
+import org.activiti.engine.ProcessEngine;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * @ClassName WarmupTests
+ * @Description
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 下午7:40
+ * @Version 1.0
+ */
+public class WarmupTests {
+
+    @Test
+    public void testWarmUp() {
+        ProcessEngine processEngine = H2ProcessEngines.build("warmup");
+        try {
+            H2ProcessEngines.deployTravel(processEngine);
+            ActivitiUtils activitiUtils = new ActivitiUtils(processEngine);
+            activitiUtils.start("travel_apply", "1", new HashMap<>());
+            EngineWarmer warmer = new EngineWarmer(processEngine, activitiUtils);
+            Assert.assertFalse(warmer.isWarmedUp());
+            Assert.assertNull(warmer.getLastReport());
+            WarmupReport report = warmer.warmUp();
+            Assert.assertTrue(warmer.isWarmedUp());
+            Assert.assertSame(report, warmer.getLastReport());
+            Assert.assertTrue(report.getErrors().toString(), report.isSuccess());
+            Assert.assertEquals(1, report.getProcessDefinitionIds().size());
+            Assert.assertEquals(List.of("加载流程定义", "预热命令路径", "预热查询路径"),
+                    new ArrayList<>(report.getPhaseMillis().keySet()));
+            Assert.assertTrue(report.getPhaseMillis().values().stream().allMatch(millis -> millis >= 0));
+            Assert.assertEquals(report.getPhaseMillis().values().stream().mapToLong(Long::longValue).sum(),
+                    report.getTotalMillis());
+        } finally {
+            processEngine.close();
+        }
+    }
+
+    @Test
+    public void testWarmUpEmptyEngine() {
+        ProcessEngine processEngine = H2ProcessEngines.build("warmup-empty");
+        try {
+            EngineWarmer warmer = new EngineWarmer(processEngine, new ActivitiUtils(processEngine));
+            WarmupReport report = warmer.warmUp();
+            Assert.assertTrue(report.getErrors().toString(), report.isSuccess());
+            Assert.assertTrue(report.getProcessDefinitionIds().isEmpty());
+            Assert.assertEquals(3, report.getPhaseMillis().size());
+        } finally {
+            processEngine.close();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package cn.icexmoon.activitiutil.support;
+
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.ProcessEngineConfiguration;
+import org.activiti.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.activiti.engine.repository.DeploymentBuilder;
+import org.h2.jdbcx.JdbcDataSource;
+
+import java.util.function.Consumer;
+
+/**
+ * @ClassName H2ProcessEngines
+ * @Description 基于 H2 内存数据库构建相互独立的流程引擎，供测试使用
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/19 上午10:05
+ * @Version 1.0
+ */
+public class H2ProcessEngines {
+    private static final String[] BUNDLED_BPMN = {
+            "travel.bpmn20.xml", "travel-condition.bpmn20.xml", "travel-uel.bpmn20.xml", "travel-listen.bpmn20.xml",
+            "candidate.bpmn20.xml", "exclusion.bpmn20.xml", "inclusive.bpmn20.xml", "parallel.bpmn20.xml"};
+
+    /**
+     * 构建一个使用独立 H2 内存库的流程引擎
+     *
+     * @param name 引擎名称，同时作为 H2 数据库名
+     * @return 流程引擎
+     */
+    public static ProcessEngine build(String name) {
+        return build(name, null);
+    }
+
+    /**
+     * 构建一个使用独立 H2 内存库的流程引擎
+     *
+     * @param name       引擎名称，同时作为 H2 数据库名
+     * @param customizer 构建前对引擎配置的定制，可以为 null
+     * @return 流程引擎
+     */
+    public static ProcessEngine build(String name, Consumer<ProcessEngineConfigurationImpl> customizer) {
+        ProcessEngineConfigurationImpl configuration = (ProcessEngineConfigurationImpl) ProcessEngineConfiguration
+                .createStandaloneInMemProcessEngineConfiguration();
+        configuration.setProcessEngineName(name);
+        configuration.setJdbcUrl("jdbc:h2:mem:%s;DB_CLOSE_DELAY=-1".formatted(name));
+        configuration.setDatabaseSchemaUpdate(ProcessEngineConfiguration.DB_SCHEMA_UPDATE_CREATE_DROP);
+        if (customizer != null) {
+            customizer.accept(configuration);
+        }
+        return configuration.buildProcessEngine();
+    }
+
+    /**
+     * 构建一个通过 {@link SqlCountingDataSource} 访问 H2 内存库的流程引擎，
+     * 用 {@link SqlCountingDataSource#of(ProcessEngine)} 获取数据源统计 SQL
+     *
+     * @param name 引擎名称，同时作为 H2 数据库名
+     * @return 流程引擎
+     */
+    public static ProcessEngine buildCounting(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:%s;DB_CLOSE_DELAY=-1".formatted(name));
+        dataSource.setUser("sa");
+        return build(name, configuration -> {
+            configuration.setDataSource(new SqlCountingDataSource(dataSource));
+            // id 号段用完时会多出读写 ACT_GE_PROPERTY 的语句，调大号段让统计结果稳定
+            configuration.setIdBlockSize(1_000_000);
+        });
+    }
+
+    /**
+     * 部署 bpmn 目录下的全部测试流程
+     *
+     * @param processEngine 流程引擎
+     */
+    public static void deployBundled(ProcessEngine processEngine) {
+        DeploymentBuilder builder = processEngine.getRepositoryService().createDeployment().name("测试流程");
+        for (String resource : BUNDLED_BPMN) {
+            builder.addClasspathResource("bpmn/" + resource);
+        }
+        builder.deploy();
+    }
+
+    /**
+     * 部署测试用的出差申请流程（travel_apply，无监听器）
+     *
+     * @param processEngine 流程引擎
+     */
+    public static void deployTravel(ProcessEngine processEngine) {
+        processEngine.getRepositoryService().createDeployment()
+                .addClasspathResource("bpmn/travel.bpmn20.xml")
+                .name("出差申请")
+                .deploy();
+    }
+}
@@ -0,0 +1,209 @@
+package cn.icexmoon.activitiutil.support;
+
+import org.activiti.engine.ProcessEngine;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * @ClassName SqlCountingDataSource
+ * @Description 统计经过的 SQL 语句数和读取行数的 JDBC 代理数据源，用于检查操作的查询次数是否超出预算。
+ * 连接、语句和结果集都是动态代理，不依赖具体驱动
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/20 下午7:10
+ * @Version 1.0
+ */
+public class SqlCountingDataSource implements DataSource {
+    private final DataSource delegate;
+    private final AtomicLong statements = new AtomicLong();
+    private final AtomicLong rowsFetched = new AtomicLong();
+    private final List<String> sql = Collections.synchronizedList(new ArrayList<>());
+
+    public SqlCountingDataSource(DataSource delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * 获取流程引擎使用的计数数据源
+     *
+     * @param processEngine 用 {@link H2ProcessEngines#buildCounting(String)} 构建的流程引擎
+     * @return 计数数据源
+     */
+    public static SqlCountingDataSource of(ProcessEngine processEngine) {
+        DataSource dataSource = processEngine.getProcessEngineConfiguration().getDataSource();
+        if (!(dataSource instanceof SqlCountingDataSource countingDataSource)) {
+            throw new RuntimeException("流程引擎（%s）没有使用计数数据源".formatted(processEngine.getName()));
+        }
+        return countingDataSource;
+    }
+
+    /**
+     * 执行操作并统计期间的 SQL
+     *
+     * @param operation 操作
+     * @return 期间执行的 SQL 统计
+     */
+    public SqlStats measure(Runnable operation) {
+        return measureCall(() -> {
+            operation.run();
+            return null;
+        }).stats();
+    }
+
+    /**
+     * 执行有返回值的操作并统计期间的 SQL
+     *
+     * @param operation 操作
+     * @return 操作的返回值和期间执行的 SQL 统计
+     */
+    public synchronized <T> Measured<T> measureCall(Supplier<T> operation) {
+        reset();
+        T result = operation.get();
+        List<String> executed;
+        synchronized (sql) {
+            executed = List.copyOf(sql);
+        }
+        return new Measured<>(result, new SqlStats(statements.get(), rowsFetched.get(), executed));
+    }
+
+    public void reset() {
+        statements.set(0);
+        rowsFetched.set(0);
+        sql.clear();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return (Connection) wrap(Connection.class, delegate.getConnection(), null);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return (Connection) wrap(Connection.class, delegate.getConnection(username, password), null);
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return delegate.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        delegate.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        delegate.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return delegate.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return delegate.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return iface.isInstance(this) ? iface.cast(this) : delegate.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || delegate.isWrapperFor(iface);
+    }
+
+    private void record(String statement) {
+        statements.incrementAndGet();
+        sql.add(statement == null ? "<unknown>" : statement.replaceAll("\\s+", " ").trim());
+    }
+
+    private Object wrap(Class<?> type, Object target, String preparedSql) {
+        if (target == null) {
+            return null;
+        }
+        return Proxy.newProxyInstance(SqlCountingDataSource.class.getClassLoader(), new Class<?>[]{type},
+                new Handler(target, preparedSql));
+    }
+
+    /**
+     * 操作的返回值和期间执行的 SQL 统计
+     */
+    public record Measured<T>(T result, SqlStats stats) {
+    }
+
+    private class Handler implements InvocationHandler {
+        private final Object target;
+        // PreparedStatement 的 SQL，普通 Statement 为 null
+        private final String preparedSql;
+        // 当前批次的 SQL
+        private final List<String> batch = new ArrayList<>();
+
+        Handler(Object target, String preparedSql) {
+            this.target = target;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (target instanceof ResultSet && "next".equals(name)) {
+                boolean hasNext = (boolean) call(method, args);
+                if (hasNext) {
+                    rowsFetched.incrementAndGet();
+                }
+                return hasNext;
+            }
+            if (target instanceof Statement) {
+                switch (name) {
+                    case "addBatch" -> batch.add(args == null ? preparedSql : (String) args[0]);
+                    case "clearBatch" -> batch.clear();
+                    case "executeBatch", "executeLargeBatch" -> {
+                        // 批量执行按批次中的语句数计数
+                        for (String statement : batch) {
+                            record(statement);
+                        }
+                        batch.clear();
+                    }
+                    case "execute", "executeQuery", "executeUpdate", "executeLargeUpdate" ->
+                            record(args == null || args.length == 0 ? preparedSql : (String) args[0]);
+                    default -> {
+                    }
+                }
+            }
+            Object result = call(method, args);
+            Class<?> returnType = method.getReturnType();
+            if (result instanceof ResultSet resultSet && returnType == ResultSet.class) {
+                return wrap(ResultSet.class, resultSet, null);
+            }
+            if (result instanceof Statement && Statement.class.isAssignableFrom(returnType) && target instanceof Connection) {
+                String statementSql = args != null && args.length > 0 && args[0] instanceof String s ? s : null;
+                return wrap(returnType, result, statementSql);
+            }
+            return result;
+        }
+
+        private Object call(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package cn.icexmoon.activitiutil.support;
+
+import org.junit.Assert;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * @ClassName SqlStats
+ * @Description 一次操作执行的 SQL 统计，提供查询预算和 N+1 检查的断言
+ * @Author icexmoon@qq.com
+ * @Date 2026/10/20 下午7:20
+ * @Version 1.0
+ * @param statements  执行的语句数
+ * @param rowsFetched 从结果集读取的行数
+ * @param sql         执行的语句（按执行顺序，空白已规整）
+ */
+public record SqlStats(long statements, long rowsFetched, List<String> sql) {
+
+    /**
+     * 断言语句数不超过预算
+     *
+     * @param operation 操作名称，用于失败信息
+     * @param budget    允许的最大语句数
+     * @return 自身
+     */
+    public SqlStats assertWithin(String operation, int budget) {
+        if (statements > budget) {
+            Assert.fail("%s 执行了 %d 条 SQL，超出预算 %d：%n%s".formatted(operation, statements, budget, describe()));
+        }
+        return this;
+    }
+
+    /**
+     * 断言语句数不随数据量增长：larger 是在更多数据上执行同一操作的统计，语句数不能多于 smaller，
+     * 否则通常是按行逐条查询（N+1）
+     *
+     * @param operation 操作名称，用于失败信息
+     * @param smaller   较少数据时的统计
+     * @param larger    较多数据时的统计
+     */
+    public static void assertNotGrowing(String operation, SqlStats smaller, SqlStats larger) {
+        if (larger.statements > smaller.statements) {
+            Assert.fail("%s 的 SQL 数随数据量增长（%d -> %d），可能存在 N+1 查询：%n%s"
+                    .formatted(operation, smaller.statements, larger.statements, larger.describe()));
+        }
+    }
+
+    /**
+     * 按语句分组的执行次数，按首次执行的顺序
+     */
+    public Map<String, Long> countBySql() {
+        return sql.stream().collect(Collectors.groupingBy(Function.identity(), LinkedHashMap::new, Collectors.counting()));
+    }
+
+    private String describe() {
+        return countBySql().entrySet().stream()
+                .map(entry -> "%4d × %s".formatted(entry.getValue(), entry.getKey()))
+                .collect(Collectors.joining(System.lineSeparator()));
+    }
+}